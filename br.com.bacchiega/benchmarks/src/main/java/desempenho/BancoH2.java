@@ -0,0 +1,75 @@
+package desempenho;
+
+import infra.DAOCliente;
+import infra.DAOEmpresa;
+import infra.Sessao;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import usuarios.Cliente;
+import usuarios.Empresa;
+
+import java.util.Random;
+
+/**
+ * Banco de dados H2 em memória, populado uma vez por execução, compartilhado pelos benchmarks que acessam o banco.
+ *
+ * A unidade de persistência é redirecionada para o H2 por propriedades de sistema, que precisam estar definidas antes
+ * do primeiro uso de {@link infra.DAO}.
+ */
+@State(Scope.Benchmark)
+public class BancoH2 {
+
+    /**
+     * Quantidade de clientes incluídos.
+     */
+    public static final int CLIENTES = 10_000;
+
+    /**
+     * Quantidade de empresas incluídas.
+     */
+    public static final int EMPRESAS = 100;
+
+    long[] idsClientes;
+    long[] idsEmpresas;
+
+    @Setup(Level.Trial)
+    public void preparar() {
+        System.setProperty("javax.persistence.jdbc.driver", "org.h2.Driver");
+        System.setProperty("javax.persistence.jdbc.url", "jdbc:h2:mem:benchmarks;DB_CLOSE_DELAY=-1");
+        System.setProperty("javax.persistence.jdbc.user", "sa");
+        System.setProperty("javax.persistence.jdbc.password", "");
+        System.setProperty("hibernate.dialect", "org.hibernate.dialect.H2Dialect");
+        System.setProperty("hibernate.hbm2ddl.auto", "create");
+        System.setProperty("hibernate.show_sql", "false");
+        System.setProperty("hibernate.format_sql", "false");
+
+        Random aleatorio = new Random(42);
+        idsClientes = new long[CLIENTES];
+        idsEmpresas = new long[EMPRESAS];
+        try (Sessao sessao = Sessao.abrir()) {
+            DAOCliente clientes = sessao.clientes();
+            DAOEmpresa empresas = sessao.empresas();
+            sessao.abrirTransacao();
+            Cliente[] novosClientes = new Cliente[CLIENTES];
+            for (int i = 0; i < CLIENTES; i++) {
+                novosClientes[i] = new Cliente("Cliente " + i, Documentos.cpf(aleatorio), 1_000_000_00L);
+                clientes.incluir(novosClientes[i]);
+            }
+            Empresa[] novasEmpresas = new Empresa[EMPRESAS];
+            for (int i = 0; i < EMPRESAS; i++) {
+                novasEmpresas[i] = new Empresa("Empresa " + i, Documentos.cnpj(aleatorio), 150, 1_000_000_000_00L);
+                empresas.incluir(novasEmpresas[i]);
+            }
+            sessao.confirmar();
+
+            for (int i = 0; i < CLIENTES; i++) {
+                idsClientes[i] = novosClientes[i].getId();
+            }
+            for (int i = 0; i < EMPRESAS; i++) {
+                idsEmpresas[i] = novasEmpresas[i].getId();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package desempenho;
+
+import infra.DAOCliente;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import usuarios.Cliente;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede as leituras do {@link infra.DAO} sobre o H2 em memória.
+ *
+ * O contexto de persistência é limpo a cada leitura, para que todas cheguem ao banco de dados em vez de serem
+ * atendidas pelo cache de primeiro nível.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class DAOBenchmark {
+
+    private DAOCliente dao;
+    private long[] ids;
+    private int posicao;
+
+    @Setup
+    public void preparar(BancoH2 banco) {
+        dao = new DAOCliente();
+        ids = banco.idsClientes;
+    }
+
+    @TearDown
+    public void encerrar() {
+        dao.fechar();
+    }
+
+    @Benchmark
+    public Cliente obterPorID() {
+        posicao = (posicao + 1) % ids.length;
+        Cliente cliente = dao.obterPorID(ids[posicao]);
+        dao.sincronizar();
+        return cliente;
+    }
+
+    @Benchmark
+    public List<Cliente> obterTodos() {
+        List<Cliente> clientes = dao.obterTodos();
+        dao.sincronizar();
+        return clientes;
+    }
+}
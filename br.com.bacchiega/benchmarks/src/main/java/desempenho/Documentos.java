@@ -0,0 +1,81 @@
+package desempenho;
+
+import java.util.Random;
+
+/**
+ * Gera CPFs e CNPJs com dígitos verificadores corretos para os dados dos benchmarks.
+ */
+final class Documentos {
+
+    private static final int[] PESOS_CNPJ = {6, 5, 4, 3, 2, 9, 8, 7, 6, 5, 4, 3, 2};
+
+    private Documentos() {
+    }
+
+    /**
+     * Gera um CPF válido, com 11 dígitos.
+     */
+    static String cpf(Random aleatorio) {
+        int[] digitos = new int[11];
+        do {
+            for (int i = 0; i < 9; i++) {
+                digitos[i] = aleatorio.nextInt(10);
+            }
+        } while (repetido(digitos, 9));
+        for (int d = 9; d < 11; d++) {
+            int soma = 0;
+            for (int i = 0; i < d; i++) {
+                soma += digitos[i] * (d + 1 - i);
+            }
+            int resto = soma % 11;
+            digitos[d] = resto < 2 ? 0 : 11 - resto;
+        }
+        return texto(digitos);
+    }
+
+    /**
+     * Gera um CNPJ válido, com 14 dígitos.
+     */
+    static String cnpj(Random aleatorio) {
+        int[] digitos = new int[14];
+        do {
+            for (int i = 0; i < 12; i++) {
+                digitos[i] = aleatorio.nextInt(10);
+            }
+        } while (repetido(digitos, 12));
+        for (int d = 12; d < 14; d++) {
+            int soma = 0;
+            for (int i = 0; i < d; i++) {
+                soma += digitos[i] * PESOS_CNPJ[i + 13 - d];
+            }
+            int resto = soma % 11;
+            digitos[d] = resto < 2 ? 0 : 11 - resto;
+        }
+        return texto(digitos);
+    }
+
+    /**
+     * Altera o último dígito verificador, tornando o documento inválido.
+     */
+    static String invalidar(String documento) {
+        char ultimo = documento.charAt(documento.length() - 1);
+        return documento.substring(0, documento.length() - 1) + (char) ('0' + (ultimo - '0' + 1) % 10);
+    }
+
+    private static boolean repetido(int[] digitos, int quantidade) {
+        for (int i = 1; i < quantidade; i++) {
+            if (digitos[i] != digitos[0]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static String texto(int[] digitos) {
+        StringBuilder texto = new StringBuilder(digitos.length);
+        for (int digito : digitos) {
+            texto.append((char) ('0' + digito));
+        }
+        return texto.toString();
+    }
+}
@@ -0,0 +1,60 @@
+package desempenho;
+
+import financeiro.Dinheiro;
+import financeiro.TabelaTaxas;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede o cálculo da taxa por uma tabela compilada de oito faixas, comparado com a taxa fixa, sobre valores
+ * aleatórios espalhados por todas as faixas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TaxasBenchmark {
+
+    private static final int QUANTIDADE = 1024;
+
+    private final long[] valores = new long[QUANTIDADE];
+    private TabelaTaxas tabela;
+    private int posicao;
+
+    @Setup
+    public void preparar() {
+        tabela = TabelaTaxas.compilar("0=250;10000=200;50000=180;100000=150;500000=120;1000000=100;"
+                + "5000000=80;10000000=50;min=100;max=100000");
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < QUANTIDADE; i++) {
+            valores[i] = 1 + (long) (aleatorio.nextDouble() * aleatorio.nextDouble() * 20_000_000);
+        }
+    }
+
+    @Benchmark
+    public long tabela() {
+        return tabela.calcular(valores[proximo()]);
+    }
+
+    @Benchmark
+    public long fixa() {
+        return Dinheiro.taxa(valores[proximo()], 150);
+    }
+
+    private int proximo() {
+        return posicao = (posicao + 1) & (QUANTIDADE - 1);
+    }
+}
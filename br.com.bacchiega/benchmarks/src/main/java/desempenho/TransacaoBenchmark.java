@@ -0,0 +1,63 @@
+package desempenho;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import transacao.Deposito;
+import transacao.Saque;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede {@link Saque#exec()} e {@link Deposito#exec()} de ponta a ponta sobre o H2 em memória: leitura das contas,
+ * aplicação da taxa e confirmação da transação.
+ *
+ * Cada chamada usa o próximo cliente e a próxima empresa, de modo que chamadas seguidas não disputam as mesmas linhas.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransacaoBenchmark {
+
+    private static final long VALOR = 100_00L;
+
+    private long[] idsClientes;
+    private long[] idsEmpresas;
+    private int posicao;
+
+    @Setup
+    public void preparar(BancoH2 banco) {
+        idsClientes = banco.idsClientes;
+        idsEmpresas = banco.idsEmpresas;
+    }
+
+    @Benchmark
+    public boolean saque() {
+        posicao++;
+        return new Saque(VALOR, cliente(), empresa()).exec();
+    }
+
+    @Benchmark
+    public boolean deposito() {
+        posicao++;
+        return new Deposito(VALOR, cliente(), empresa()).exec();
+    }
+
+    private Long cliente() {
+        return idsClientes[posicao % idsClientes.length];
+    }
+
+    private Long empresa() {
+        return idsEmpresas[posicao % idsEmpresas.length];
+    }
+}
@@ -0,0 +1,60 @@
+package desempenho;
+
+import Validator.Cnpj;
+import Validator.Cpf;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mede a validação de CPF e CNPJ sobre um conjunto fixo de documentos, três quartos deles válidos.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ValidadoresBenchmark {
+
+    private static final int QUANTIDADE = 1024;
+
+    private final String[] cpfs = new String[QUANTIDADE];
+    private final String[] cnpjs = new String[QUANTIDADE];
+    private int posicao;
+
+    @Setup
+    public void preparar() {
+        Random aleatorio = new Random(42);
+        for (int i = 0; i < QUANTIDADE; i++) {
+            String cpf = Documentos.cpf(aleatorio);
+            String cnpj = Documentos.cnpj(aleatorio);
+            cpfs[i] = i % 4 == 0 ? Documentos.invalidar(cpf) : cpf;
+            cnpjs[i] = i % 4 == 0 ? Documentos.invalidar(cnpj) : cnpj;
+        }
+    }
+
+    @Benchmark
+    public boolean cpfValidateFinal() {
+        return new Cpf(cpfs[proximo()]).validateFinal();
+    }
+
+    @Benchmark
+    public boolean cnpjIsCNPJ() {
+        return Cnpj.isCNPJ(cnpjs[proximo()]);
+    }
+
+    private int proximo() {
+        return posicao = (posicao + 1) & (QUANTIDADE - 1);
+    }
+}
@@ -1,6 +1,11 @@
+import financeiro.Dinheiro;
+import infra.Inicializacao;
+import servico.ServidorTransacoes;
 import transacao.Deposito;
 import transacao.Saque;
 
+import java.io.IOException;
+import java.util.Arrays;
 import java.util.Scanner;
 
 /**
@@ -17,9 +22,20 @@ public class Main {
      * Permite ao usuário escolher entre realizar um saque ou um depósito. Solicita os dados necessários
      * (valor, IDs do cliente e da empresa) e executa a transação correspondente.
      *
-     * @param args Argumentos da linha de comando (não utilizados neste caso).
+     * Com o argumento {@code --servico [porta]}, inicia o {@link ServidorTransacoes} em vez do modo interativo.
+     *
+     * @param args Argumentos da linha de comando, opcionalmente {@code --servico [porta]}.
+     * @throws IOException Se não for possível iniciar o serviço.
      */
-    public static void main(String[] args) {
+    public static void main(String[] args) throws IOException {
+
+        // Cria as fábricas do JPA em segundo plano enquanto o programa lê a entrada
+        Inicializacao.iniciar();
+
+        if (args.length > 0 && args[0].equals("--servico")) {
+            ServidorTransacoes.main(Arrays.copyOfRange(args, 1, args.length));
+            return;
+        }
 
         Scanner sc = new Scanner(System.in);
 
@@ -30,7 +46,7 @@ public class Main {
             // Opção de saque selecionada
             System.out.println("Opção selecionada: Saque");
             System.out.println("Digite o valor do saque: ");
-            double valor = sc.nextDouble();
+            long valor = Dinheiro.centavos(sc.next());
 
             System.out.println("Digite o ID do Cliente: ");
             Long id_cliente = sc.nextLong();
@@ -46,7 +62,7 @@ public class Main {
             // Opção de depósito selecionada
             System.out.println("Opção selecionada: Depósito");
             System.out.println("Digite o valor do depósito: ");
-            double valor = sc.nextDouble();
+            long valor = Dinheiro.centavos(sc.next());
 
             System.out.println("Digite o ID do Cliente: ");
             Long id_cliente = sc.nextLong();
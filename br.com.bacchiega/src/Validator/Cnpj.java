@@ -1,88 +1,179 @@
 package Validator;
 
-import java.util.InputMismatchException;
-
 /**
  * Classe responsável pela validação de números de CNPJ (Cadastro Nacional da Pessoa Jurídica).
  *
- * Esta classe fornece um método estático para verificar a validade de um CNPJ. O CNPJ deve ter 14 dígitos e
+ * Esta classe fornece métodos estáticos para verificar a validade de um CNPJ. O CNPJ deve ter 14 dígitos e
  * os dois últimos dígitos são dígitos verificadores calculados com base nos 12 primeiros dígitos.
  */
 public class Cnpj {
 
+    /**
+     * Quantidade de dígitos de um CNPJ.
+     */
+    private static final int DIGITOS = 14;
+
+    /**
+     * Tamanho de um CNPJ formatado, no padrão {@code 00.000.000/0000-00}.
+     */
+    private static final int TAMANHO_FORMATADO = 18;
+
     /**
      * Verifica se o CNPJ fornecido é válido.
      *
      * O método realiza as seguintes verificações:
-     * - O CNPJ deve ter exatamente 14 dígitos.
+     * - O CNPJ deve ter exatamente 14 dígitos, opcionalmente no formato {@code 00.000.000/0000-00}.
      * - O CNPJ não pode ser uma sequência de dígitos iguais (ex: "11111111111111").
      * - O método calcula os dígitos verificadores com base nos 12 primeiros dígitos e compara com os dígitos fornecidos.
      *
-     * @param cnpj O CNPJ a ser validado, deve estar no formato de 14 dígitos.
+     * @param cnpj O CNPJ a ser validado.
      * @return {@code true} se o CNPJ for válido; {@code false} caso contrário.
      */
     public static boolean isCNPJ(String cnpj) {
+        return isValid(cnpj);
+    }
 
-        // Verifica se o CNPJ é uma sequência de dígitos iguais ou se o comprimento é diferente de 14
-        char caracter = cnpj.charAt(0);
-        String firstDigit = String.valueOf(caracter);
-
-        int tamanho = cnpj.length();
-        StringBuilder sb = new StringBuilder();
+    /**
+     * Verifica se o CNPJ informado é válido, sem criar nenhum objeto.
+     *
+     * @param cnpj O CNPJ a ser validado, com 14 dígitos ou no formato {@code 00.000.000/0000-00}.
+     * @return {@code true} se o CNPJ for válido; {@code false} caso contrário, inclusive para {@code null}.
+     */
+    public static boolean isValid(CharSequence cnpj) {
+        return cnpj != null && isValid(cnpj, 0, cnpj.length());
+    }
 
-        for (int i = 0; i < tamanho; i++) {
-            sb.append(firstDigit);
-        }
-        String resposta = sb.toString();
-        if (cnpj.equals(resposta) || (tamanho != 14))
+    /**
+     * Verifica se o trecho {@code [inicio, fim)} da sequência informada é um CNPJ válido, sem criar nenhum objeto.
+     *
+     * @param texto A sequência que contém o CNPJ.
+     * @param inicio A posição do primeiro caractere do CNPJ.
+     * @param fim A posição seguinte ao último caractere do CNPJ.
+     * @return {@code true} se o trecho for um CNPJ válido; {@code false} caso contrário.
+     */
+    public static boolean isValid(CharSequence texto, int inicio, int fim) {
+        int tamanho = fim - inicio;
+        boolean formatado = tamanho == TAMANHO_FORMATADO;
+        if (!formatado && tamanho != DIGITOS) {
             return false;
+        }
+
+        int soma13 = 0;
+        int soma14 = 0;
+        int primeiro = -1;
+        boolean repetido = true;
+        int digito13 = 0;
+        int digito14 = 0;
+        int n = 0;
 
-        char dig13, dig14;
-        int sm, i, r, num, peso;
-
-        try {
-            // Calcula o primeiro dígito verificador
-            sm = 0;
-            peso = 2;
-            for (i = 11; i >= 0; i--) {
-                num = (int) (cnpj.charAt(i) - 48);
-                sm = sm + (num * peso);
-                peso = peso + 1;
-                if (peso == 10)
-                    peso = 2;
+        for (int i = 0; i < tamanho; i++) {
+            char c = texto.charAt(inicio + i);
+            if (formatado) {
+                char separador = separador(i);
+                if (separador != 0) {
+                    if (c != separador) {
+                        return false;
+                    }
+                    continue;
+                }
             }
 
-            r = sm % 11;
-            if ((r == 0) || (r == 1))
-                dig13 = '0';
-            else
-                dig13 = (char) ((11 - r) + 48);
-
-            // Calcula o segundo dígito verificador
-            sm = 0;
-            peso = 2;
-            for (i = 12; i >= 0; i--) {
-                num = (int) (cnpj.charAt(i) - 48);
-                sm = sm + (num * peso);
-                peso = peso + 1;
-                if (peso == 10)
-                    peso = 2;
+            int d = c - '0';
+            if (d < 0 || d > 9) {
+                return false;
+            }
+            if (n == 0) {
+                primeiro = d;
+            } else if (d != primeiro) {
+                repetido = false;
             }
 
-            r = sm % 11;
-            if ((r == 0) || (r == 1))
-                dig14 = '0';
-            else
-                dig14 = (char) ((11 - r) + 48);
+            // Pesos de 5 a 2 e de 9 a 2 para o primeiro verificador; de 6 a 2 e de 9 a 2 para o segundo
+            if (n < 12) {
+                soma13 += d * peso(n, 12);
+                soma14 += d * peso(n, 13);
+            } else if (n == 12) {
+                digito13 = d;
+                soma14 += d * 2;
+            } else {
+                digito14 = d;
+            }
+            n++;
+        }
 
-            // Compara os dígitos verificadores calculados com os fornecidos
-            if ((dig13 == cnpj.charAt(12)) && (dig14 == cnpj.charAt(13)))
-                return true;
-            else
-                return false;
-        } catch (InputMismatchException erro) {
-            // Retorna false se ocorrer qualquer exceção durante o processo de validação
+        if (repetido) {
             return false;
         }
+        return digitoVerificador(soma13) == digito13 && digitoVerificador(soma14) == digito14;
+    }
+
+    /**
+     * Obtém o valor numérico do CNPJ, formado pelos seus 14 dígitos, sem criar nenhum objeto.
+     *
+     * O mesmo CNPJ com e sem formatação tem o mesmo valor, que pode ser usado como chave primitiva.
+     *
+     * @param cnpj O CNPJ, com 14 dígitos ou no formato {@code 00.000.000/0000-00}.
+     * @return O valor numérico do CNPJ, ou {@code -1} se o CNPJ for inválido.
+     */
+    public static long numero(CharSequence cnpj) {
+        if (!isValid(cnpj)) {
+            return -1;
+        }
+        long numero = 0;
+        for (int i = 0; i < cnpj.length(); i++) {
+            char c = cnpj.charAt(i);
+            if (c >= '0' && c <= '9') {
+                numero = numero * 10 + (c - '0');
+            }
+        }
+        return numero;
+    }
+
+    /**
+     * Formata o valor numérico de um CNPJ no padrão {@code 00.000.000/0000-00}.
+     *
+     * @param numero O valor numérico obtido por {@link #numero(CharSequence)}.
+     * @return O CNPJ formatado.
+     */
+    public static String formatar(long numero) {
+        String digitos = String.format("%014d", numero);
+        return digitos.substring(0, 2) + '.' + digitos.substring(2, 5) + '.' + digitos.substring(5, 8) + '/'
+                + digitos.substring(8, 12) + '-' + digitos.substring(12);
+    }
+
+    /**
+     * Obtém o separador esperado em cada posição do formato {@code 00.000.000/0000-00}.
+     *
+     * @return O separador esperado, ou {@code 0} se a posição deve conter um dígito.
+     */
+    private static char separador(int posicao) {
+        switch (posicao) {
+            case 2:
+            case 6:
+                return '.';
+            case 10:
+                return '/';
+            case 15:
+                return '-';
+            default:
+                return 0;
+        }
+    }
+
+    /**
+     * Calcula o peso do dígito na posição {@code n}, para um cálculo sobre os {@code quantidade} primeiros dígitos.
+     *
+     * Os pesos começam em 2 no último dígito considerado, crescem até 9 e voltam para 2.
+     */
+    private static int peso(int n, int quantidade) {
+        return (quantidade - 1 - n) % 8 + 2;
+    }
+
+    /**
+     * Calcula um dígito verificador a partir da soma ponderada dos dígitos.
+     */
+    private static int digitoVerificador(int soma) {
+        int r = soma % 11;
+        return r < 2 ? 0 : 11 - r;
     }
 }
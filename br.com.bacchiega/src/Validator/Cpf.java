@@ -1,33 +1,38 @@
 package Validator;
 
-import java.util.ArrayList;
-import java.util.Arrays;
-import java.util.List;
+import java.nio.CharBuffer;
 
 /**
  * Classe responsável pela validação de números de CPF (Cadastro de Pessoas Físicas).
  *
  * Esta classe oferece funcionalidades para verificar se um CPF é válido com base nas regras de cálculo dos dígitos verificadores.
+ * Além da validação por instância, disponibiliza métodos estáticos que percorrem os caracteres diretamente, sem criar
+ * objetos, adequados para validar grandes volumes de documentos.
  */
 public class Cpf {
 
+    /**
+     * Quantidade de dígitos de um CPF.
+     */
+    private static final int DIGITOS = 11;
+
+    /**
+     * Tamanho de um CPF formatado, no padrão {@code 000.000.000-00}.
+     */
+    private static final int TAMANHO_FORMATADO = 14;
+
     private String cpf;
-    private int tamanho;
-    List<Integer> cpfNum;
-    int lastNum;
-    int penultimateNumb;
 
     /**
      * Construtor para a criação de uma instância da classe {@link Cpf}.
      *
-     * @param cpf O CPF a ser validado, deve estar no formato de 11 dígitos numéricos.
+     * Entradas com caracteres inválidos ou tamanho incorreto não lançam exceção: são apenas consideradas inválidas
+     * por {@link #validateFinal()}.
+     *
+     * @param cpf O CPF a ser validado, com 11 dígitos numéricos ou no formato {@code 000.000.000-00}.
      */
     public Cpf(String cpf) {
         this.cpf = cpf;
-        tamanho = cpf.length();
-        cpfNum = Arrays.stream(cpf.split("")).map(n -> Integer.parseInt(n)).toList();
-        lastNum = cpfNum.get(cpfNum.size() - 1);
-        penultimateNumb = cpfNum.get(cpfNum.size() - 2);
     }
 
     /**
@@ -36,65 +41,202 @@ public class Cpf {
      * @return {@code true} se o CPF for uma repetição de dígitos; {@code false} caso contrário.
      */
     public boolean numberRepeat() {
-        StringBuilder sb = new StringBuilder();
-
-        for (int i = 0; i < tamanho; i++) {
-            sb.append(firstDigit());
+        if (cpf == null || cpf.isEmpty()) {
+            return false;
         }
-        String resposta = sb.toString();
+        char primeiro = cpf.charAt(0);
+        for (int i = 1; i < cpf.length(); i++) {
+            if (cpf.charAt(i) != primeiro) {
+                return false;
+            }
+        }
+        return true;
+    }
 
-        return cpf.equals(resposta);
+    /**
+     * Valida o CPF verificando a repetição de dígitos e os dígitos verificadores.
+     *
+     * @return {@code true} se o CPF for válido; {@code false} caso contrário.
+     */
+    public boolean validateFinal() {
+        return isValid(cpf);
     }
 
     /**
-     * Obtém o primeiro dígito do CPF.
+     * Verifica se o CPF informado é válido, sem criar nenhum objeto.
      *
-     * @return O primeiro dígito do CPF como uma string.
+     * Aceita 11 dígitos numéricos ou o formato {@code 000.000.000-00}. Sequências de um único dígito repetido
+     * (ex: "111.111.111-11") são consideradas inválidas.
+     *
+     * @param cpf O CPF a ser validado.
+     * @return {@code true} se o CPF for válido; {@code false} caso contrário, inclusive para {@code null}.
      */
-    private String firstDigit() {
-        char caracter = cpf.charAt(0);
-        return String.valueOf(caracter);
+    public static boolean isValid(CharSequence cpf) {
+        return cpf != null && isValid(cpf, 0, cpf.length());
     }
 
     /**
-     * Valida um dos dígitos verificadores do CPF.
+     * Verifica se o trecho {@code [inicio, fim)} da sequência informada é um CPF válido, sem criar nenhum objeto.
      *
-     * @param contador O valor inicial do peso para o cálculo do dígito verificador.
-     * @return O dígito verificador calculado.
+     * @param texto A sequência que contém o CPF.
+     * @param inicio A posição do primeiro caractere do CPF.
+     * @param fim A posição seguinte ao último caractere do CPF.
+     * @return {@code true} se o trecho for um CPF válido; {@code false} caso contrário.
      */
-    private int validate(int contador) {
-        List<Integer> cpfNumCopy = new ArrayList<>(cpfNum);
-        cpfNumCopy.remove(cpfNumCopy.size() - 1);
-        cpfNumCopy.remove(cpfNumCopy.size() - 1);
-        int resultado = 0;
-        for (int n : cpfNumCopy) {
-            int num_peso = n * contador;
-            resultado += num_peso;
-            contador -= 1;
+    public static boolean isValid(CharSequence texto, int inicio, int fim) {
+        int tamanho = fim - inicio;
+        boolean formatado = tamanho == TAMANHO_FORMATADO;
+        if (!formatado && tamanho != DIGITOS) {
+            return false;
         }
-        resultado *= 10;
-        resultado %= 11;
 
-        return resultado > 9 ? 0 : resultado;
+        int soma1 = 0;
+        int soma2 = 0;
+        int primeiro = -1;
+        boolean repetido = true;
+        int digito10 = 0;
+        int digito11 = 0;
+        int n = 0;
+
+        for (int i = 0; i < tamanho; i++) {
+            char c = texto.charAt(inicio + i);
+            if (formatado) {
+                if (i == 3 || i == 7) {
+                    if (c != '.') {
+                        return false;
+                    }
+                    continue;
+                }
+                if (i == 11) {
+                    if (c != '-') {
+                        return false;
+                    }
+                    continue;
+                }
+            }
+
+            int d = c - '0';
+            if (d < 0 || d > 9) {
+                return false;
+            }
+            if (n == 0) {
+                primeiro = d;
+            } else if (d != primeiro) {
+                repetido = false;
+            }
+
+            // Pesos de 10 a 2 para o primeiro verificador e de 11 a 2 para o segundo
+            if (n < 9) {
+                soma1 += d * (10 - n);
+                soma2 += d * (11 - n);
+            } else if (n == 9) {
+                digito10 = d;
+                soma2 += d * 2;
+            } else {
+                digito11 = d;
+            }
+            n++;
+        }
+
+        if (repetido) {
+            return false;
+        }
+        return digitoVerificador(soma1) == digito10 && digitoVerificador(soma2) == digito11;
     }
 
     /**
-     * Valida o CPF verificando a repetição de dígitos e os dígitos verificadores.
+     * Obtém o valor numérico do CPF, formado pelos seus 11 dígitos, sem criar nenhum objeto.
      *
-     * @return {@code true} se o CPF for válido; {@code false} caso contrário.
+     * O mesmo CPF com e sem formatação tem o mesmo valor, que pode ser usado como chave primitiva.
+     *
+     * @param cpf O CPF, com 11 dígitos numéricos ou no formato {@code 000.000.000-00}.
+     * @return O valor numérico do CPF, ou {@code -1} se o CPF for inválido.
      */
-    public boolean validateFinal() {
-        if (numberRepeat()) {
-            return false;
+    public static long numero(CharSequence cpf) {
+        if (!isValid(cpf)) {
+            return -1;
         }
-        if (cpfNum.size() != 11) {
-            return false;
+        long numero = 0;
+        for (int i = 0; i < cpf.length(); i++) {
+            char c = cpf.charAt(i);
+            if (c >= '0' && c <= '9') {
+                numero = numero * 10 + (c - '0');
+            }
         }
-        int validation1 = validate(10);
-        int validation2 = validate(11);
-        if (validation1 == penultimateNumb && validation2 == lastNum) {
-            return true;
+        return numero;
+    }
+
+    /**
+     * Formata o valor numérico de um CPF no padrão {@code 000.000.000-00}.
+     *
+     * @param numero O valor numérico obtido por {@link #numero(CharSequence)}.
+     * @return O CPF formatado.
+     */
+    public static String formatar(long numero) {
+        String digitos = String.format("%011d", numero);
+        return digitos.substring(0, 3) + '.' + digitos.substring(3, 6) + '.' + digitos.substring(6, 9) + '-'
+                + digitos.substring(9);
+    }
+
+    /**
+     * Valida um conjunto de CPFs, gravando o resultado de cada um na posição correspondente do vetor de resultados.
+     *
+     * Como {@link CharBuffer} implementa {@link CharSequence}, o método também aceita vetores de buffers.
+     *
+     * @param cpfs Os CPFs a serem validados.
+     * @param resultados O vetor que recebe os resultados; deve ter ao menos o mesmo tamanho de {@code cpfs}.
+     * @return A quantidade de CPFs válidos.
+     * @throws IllegalArgumentException Se o vetor de resultados for menor que o vetor de CPFs.
+     */
+    public static int validarTodos(CharSequence[] cpfs, boolean[] resultados) {
+        if (resultados.length < cpfs.length) {
+            throw new IllegalArgumentException("Vetor de resultados menor que o vetor de CPFs");
         }
-            return false;
+        int validos = 0;
+        for (int i = 0; i < cpfs.length; i++) {
+            boolean valido = isValid(cpfs[i]);
+            resultados[i] = valido;
+            if (valido) {
+                validos++;
+            }
+        }
+        return validos;
+    }
+
+    /**
+     * Valida os CPFs contidos no buffer, um por linha, entre a posição e o limite atuais do buffer.
+     *
+     * Linhas terminadas em {@code \r\n} são aceitas. A posição do buffer não é alterada. A validação termina quando
+     * o buffer acaba ou quando o vetor de resultados fica cheio.
+     *
+     * @param linhas O buffer com um CPF por linha.
+     * @param resultados O vetor que recebe o resultado de cada linha, na ordem em que aparecem.
+     * @return A quantidade de linhas validadas.
+     */
+    public static int validarLinhas(CharBuffer linhas, boolean[] resultados) {
+        int tamanho = linhas.remaining();
+        int inicio = 0;
+        int quantidade = 0;
+        while (inicio < tamanho && quantidade < resultados.length) {
+            int fim = inicio;
+            while (fim < tamanho && linhas.charAt(fim) != '\n') {
+                fim++;
+            }
+            int fimLinha = fim > inicio && linhas.charAt(fim - 1) == '\r' ? fim - 1 : fim;
+            resultados[quantidade++] = isValid(linhas, inicio, fimLinha);
+            inicio = fim + 1;
+        }
+        return quantidade;
+    }
+
+    /**
+     * Calcula um dígito verificador a partir da soma ponderada dos dígitos.
+     *
+     * @param soma A soma ponderada.
+     * @return O dígito verificador calculado.
+     */
+    private static int digitoVerificador(int soma) {
+        int resultado = soma * 10 % 11;
+        return resultado > 9 ? 0 : resultado;
     }
 }
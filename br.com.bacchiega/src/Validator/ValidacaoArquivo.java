@@ -0,0 +1,420 @@
+package Validator;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Valida arquivos com um CPF ou CNPJ por linha, separando as linhas válidas das inválidas.
+ *
+ * O arquivo de entrada é dividido em blocos que terminam sempre em uma quebra de linha. Os blocos são mapeados em
+ * memória e validados em paralelo por um {@link ForkJoinPool}; cada bloco acumula suas linhas em buffers pequenos
+ * que são descarregados nos arquivos de saída quando enchem. Assim, o consumo de memória depende apenas do tamanho
+ * dos blocos e do paralelismo, e não do tamanho do arquivo. A ordem das linhas nos arquivos de saída não é preservada.
+ */
+public class ValidacaoArquivo {
+
+    /**
+     * Tipos de documento suportados.
+     */
+    public enum TipoDocumento {
+        CPF,
+        CNPJ
+    }
+
+    /**
+     * Tamanho padrão dos blocos validados por cada tarefa, em bytes.
+     */
+    public static final int TAMANHO_BLOCO_PADRAO = 8 * 1024 * 1024;
+
+    /**
+     * Tamanho dos buffers de saída de cada tarefa, em bytes.
+     */
+    private static final int TAMANHO_BUFFER_SAIDA = 64 * 1024;
+
+    private final TipoDocumento tipo;
+    private final int tamanhoBloco;
+    private final int paralelismo;
+
+    /**
+     * Construtor que utiliza o tamanho de bloco padrão e todos os processadores disponíveis.
+     *
+     * @param tipo O tipo de documento contido no arquivo.
+     */
+    public ValidacaoArquivo(TipoDocumento tipo) {
+        this(tipo, TAMANHO_BLOCO_PADRAO, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link ValidacaoArquivo}.
+     *
+     * @param tipo O tipo de documento contido no arquivo.
+     * @param tamanhoBloco O tamanho aproximado, em bytes, dos blocos validados por cada tarefa.
+     * @param paralelismo A quantidade de tarefas executadas ao mesmo tempo.
+     * @throws IllegalArgumentException Se o tamanho do bloco ou o paralelismo não forem positivos.
+     */
+    public ValidacaoArquivo(TipoDocumento tipo, int tamanhoBloco, int paralelismo) {
+        if (tamanhoBloco <= 0 || paralelismo <= 0) {
+            throw new IllegalArgumentException("Configuração de validação inválida");
+        }
+        this.tipo = tipo;
+        this.tamanhoBloco = tamanhoBloco;
+        this.paralelismo = paralelismo;
+    }
+
+    /**
+     * Valida o arquivo de entrada, gravando as linhas válidas e inválidas em arquivos separados.
+     *
+     * Os arquivos de saída são criados ou sobrescritos. Linhas vazias são ignoradas.
+     *
+     * @param entrada O arquivo com um documento por linha.
+     * @param validos O arquivo que receberá as linhas válidas.
+     * @param invalidos O arquivo que receberá as linhas inválidas.
+     * @return O resumo da validação.
+     * @throws IOException Se ocorrer um erro de leitura ou gravação.
+     */
+    public Resumo validar(Path entrada, Path validos, Path invalidos) throws IOException {
+        long inicio = System.nanoTime();
+        try (FileChannel in = FileChannel.open(entrada, StandardOpenOption.READ);
+             FileChannel outValidos = abrirSaida(validos);
+             FileChannel outInvalidos = abrirSaida(invalidos)) {
+
+            long[] limites = limitesBlocos(in);
+            Contadores contadores = new Contadores();
+            ForkJoinPool pool = new ForkJoinPool(paralelismo);
+            try {
+                pool.invoke(new Tarefa(in, outValidos, outInvalidos, limites, 0, limites.length - 1, contadores));
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            } finally {
+                pool.shutdown();
+            }
+            return new Resumo(contadores.validos.sum(), contadores.invalidos.sum(), System.nanoTime() - inicio);
+        }
+    }
+
+    /**
+     * Abre um arquivo de saída, criando-o ou truncando-o.
+     */
+    private static FileChannel abrirSaida(Path caminho) throws IOException {
+        return FileChannel.open(caminho, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    /**
+     * Calcula as posições que delimitam os blocos, ajustando cada limite para logo após uma quebra de linha.
+     *
+     * @return Um vetor com as posições de início de cada bloco, seguidas do tamanho do arquivo.
+     */
+    private long[] limitesBlocos(FileChannel in) throws IOException {
+        long tamanho = in.size();
+        List<Long> limites = new ArrayList<>();
+        limites.add(0L);
+
+        ByteBuffer leitura = ByteBuffer.allocate(4096);
+        long posicao = 0;
+        while (posicao + tamanhoBloco < tamanho) {
+            long candidato = posicao + tamanhoBloco;
+            long ajustado = tamanho;
+
+            // Avança até a próxima quebra de linha para não cortar um documento ao meio
+            busca:
+            while (candidato < tamanho) {
+                leitura.clear();
+                int lidos = in.read(leitura, candidato);
+                if (lidos <= 0) {
+                    break;
+                }
+                for (int i = 0; i < lidos; i++) {
+                    if (leitura.get(i) == '\n') {
+                        ajustado = candidato + i + 1;
+                        break busca;
+                    }
+                }
+                candidato += lidos;
+            }
+
+            if (ajustado >= tamanho) {
+                break;
+            }
+            limites.add(ajustado);
+            posicao = ajustado;
+        }
+        limites.add(tamanho);
+
+        long[] resultado = new long[limites.size()];
+        for (int i = 0; i < resultado.length; i++) {
+            resultado[i] = limites.get(i);
+        }
+        return resultado;
+    }
+
+    /**
+     * Contadores compartilhados entre as tarefas.
+     */
+    private static final class Contadores {
+        private final LongAdder validos = new LongAdder();
+        private final LongAdder invalidos = new LongAdder();
+    }
+
+    /**
+     * Tarefa que divide o intervalo de blocos ao meio até restar um único bloco, que é então validado.
+     */
+    private final class Tarefa extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        // A tarefa nunca é serializada; os canais e os contadores, que não são serializáveis, ficam de fora
+        private final transient FileChannel in;
+        private final transient FileChannel outValidos;
+        private final transient FileChannel outInvalidos;
+        private final long[] limites;
+        private final int primeiro;
+        private final int ultimo;
+        private final transient Contadores contadores;
+
+        private Tarefa(FileChannel in, FileChannel outValidos, FileChannel outInvalidos, long[] limites,
+                       int primeiro, int ultimo, Contadores contadores) {
+            this.in = in;
+            this.outValidos = outValidos;
+            this.outInvalidos = outInvalidos;
+            this.limites = limites;
+            this.primeiro = primeiro;
+            this.ultimo = ultimo;
+            this.contadores = contadores;
+        }
+
+        @Override
+        protected void compute() {
+            if (ultimo - primeiro > 1) {
+                int meio = (primeiro + ultimo) >>> 1;
+                invokeAll(new Tarefa(in, outValidos, outInvalidos, limites, primeiro, meio, contadores),
+                        new Tarefa(in, outValidos, outInvalidos, limites, meio, ultimo, contadores));
+                return;
+            }
+            try {
+                validarBloco(limites[primeiro], limites[ultimo]);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /**
+         * Valida as linhas do bloco {@code [inicio, fim)} do arquivo de entrada.
+         */
+        private void validarBloco(long inicio, long fim) throws IOException {
+            if (fim <= inicio) {
+                return;
+            }
+            MappedByteBuffer bloco = in.map(FileChannel.MapMode.READ_ONLY, inicio, fim - inicio);
+            ByteBuffer bufferValidos = ByteBuffer.allocate(TAMANHO_BUFFER_SAIDA);
+            ByteBuffer bufferInvalidos = ByteBuffer.allocate(TAMANHO_BUFFER_SAIDA);
+            LinhaBytes linha = new LinhaBytes(bloco);
+            long validos = 0;
+            long invalidos = 0;
+
+            int tamanho = bloco.limit();
+            int posicao = 0;
+            while (posicao < tamanho) {
+                int quebra = posicao;
+                while (quebra < tamanho && bloco.get(quebra) != '\n') {
+                    quebra++;
+                }
+                int fimLinha = quebra > posicao && bloco.get(quebra - 1) == '\r' ? quebra - 1 : quebra;
+
+                if (fimLinha > posicao) {
+                    linha.delimitar(posicao, fimLinha);
+                    boolean valido = tipo == TipoDocumento.CPF ? Cpf.isValid(linha) : Cnpj.isValid(linha);
+                    if (valido) {
+                        validos++;
+                        anexar(bloco, posicao, fimLinha, bufferValidos, outValidos);
+                    } else {
+                        invalidos++;
+                        anexar(bloco, posicao, fimLinha, bufferInvalidos, outInvalidos);
+                    }
+                }
+                posicao = quebra + 1;
+            }
+
+            descarregar(bufferValidos, outValidos);
+            descarregar(bufferInvalidos, outInvalidos);
+            contadores.validos.add(validos);
+            contadores.invalidos.add(invalidos);
+        }
+
+        /**
+         * Copia a linha {@code [inicio, fim)} do bloco para o buffer de saída, seguida de uma quebra de linha.
+         */
+        private void anexar(ByteBuffer bloco, int inicio, int fim, ByteBuffer saida, FileChannel destino)
+                throws IOException {
+            int tamanho = fim - inicio + 1;
+            if (saida.remaining() < tamanho) {
+                descarregar(saida, destino);
+            }
+            if (saida.remaining() < tamanho) {
+                // Linha maior que o buffer: grava diretamente
+                destino.write(bloco.slice(inicio, fim - inicio));
+                destino.write(ByteBuffer.wrap(new byte[]{'\n'}));
+                return;
+            }
+            for (int i = inicio; i < fim; i++) {
+                saida.put(bloco.get(i));
+            }
+            saida.put((byte) '\n');
+        }
+
+        /**
+         * Grava o conteúdo do buffer no arquivo de saída e o esvazia.
+         *
+         * As gravações de um mesmo buffer são sincronizadas no canal, para que as linhas de tarefas diferentes
+         * não se misturem.
+         */
+        private void descarregar(ByteBuffer saida, FileChannel destino) throws IOException {
+            saida.flip();
+            synchronized (destino) {
+                while (saida.hasRemaining()) {
+                    destino.write(saida);
+                }
+            }
+            saida.clear();
+        }
+    }
+
+    /**
+     * Visão de um trecho de bytes ASCII como {@link CharSequence}, reaproveitada para todas as linhas de um bloco.
+     */
+    private static final class LinhaBytes implements CharSequence {
+
+        private final ByteBuffer bytes;
+        private int inicio;
+        private int fim;
+
+        private LinhaBytes(ByteBuffer bytes) {
+            this.bytes = bytes;
+        }
+
+        private void delimitar(int inicio, int fim) {
+            this.inicio = inicio;
+            this.fim = fim;
+        }
+
+        @Override
+        public int length() {
+            return fim - inicio;
+        }
+
+        @Override
+        public char charAt(int index) {
+            return (char) (bytes.get(inicio + index) & 0xFF);
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            LinhaBytes sub = new LinhaBytes(bytes);
+            sub.delimitar(inicio + start, inicio + end);
+            return sub;
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder(length());
+            for (int i = 0; i < length(); i++) {
+                sb.append(charAt(i));
+            }
+            return sb.toString();
+        }
+    }
+
+    /**
+     * Resumo de uma validação de arquivo.
+     */
+    public static class Resumo {
+
+        private final long validos;
+        private final long invalidos;
+        private final long duracaoNanos;
+
+        /**
+         * Construtor para a criação de uma nova instância da classe {@link Resumo}.
+         *
+         * @param validos A quantidade de linhas válidas.
+         * @param invalidos A quantidade de linhas inválidas.
+         * @param duracaoNanos A duração da validação, em nanossegundos.
+         */
+        public Resumo(long validos, long invalidos, long duracaoNanos) {
+            this.validos = validos;
+            this.invalidos = invalidos;
+            this.duracaoNanos = duracaoNanos;
+        }
+
+        /**
+         * Obtém a quantidade de linhas válidas.
+         *
+         * @return A quantidade de linhas válidas.
+         */
+        public long getValidos() {
+            return validos;
+        }
+
+        /**
+         * Obtém a quantidade de linhas inválidas.
+         *
+         * @return A quantidade de linhas inválidas.
+         */
+        public long getInvalidos() {
+            return invalidos;
+        }
+
+        /**
+         * Obtém a quantidade total de linhas validadas.
+         *
+         * @return A soma das linhas válidas e inválidas.
+         */
+        public long getTotal() {
+            return validos + invalidos;
+        }
+
+        /**
+         * Obtém a duração da validação.
+         *
+         * @return A duração em nanossegundos.
+         */
+        public long getDuracaoNanos() {
+            return duracaoNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Total: %d | Válidos: %d | Inválidos: %d | Tempo: %d ms",
+                    getTotal(), validos, invalidos, duracaoNanos / 1_000_000);
+        }
+    }
+
+    /**
+     * Valida um arquivo pela linha de comando.
+     *
+     * Uso: {@code ValidacaoArquivo <cpf|cnpj> <entrada> <validos> <invalidos>}
+     *
+     * @param args O tipo de documento e os caminhos dos arquivos de entrada e saída.
+     * @throws IOException Se ocorrer um erro de leitura ou gravação.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 4) {
+            System.out.println("Uso: ValidacaoArquivo <cpf|cnpj> <entrada> <validos> <invalidos>");
+            return;
+        }
+        TipoDocumento tipo = TipoDocumento.valueOf(args[0].toUpperCase());
+        Resumo resumo = new ValidacaoArquivo(tipo).validar(Paths.get(args[1]), Paths.get(args[2]), Paths.get(args[3]));
+        System.out.println(resumo);
+    }
+}
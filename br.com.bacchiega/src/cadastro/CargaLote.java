@@ -0,0 +1,433 @@
+package cadastro;
+
+import financeiro.Dinheiro;
+import infra.DAO;
+import infra.IndiceDocumentos;
+import infra.Inicializacao;
+import infra.Sessao;
+import usuarios.Cliente;
+import usuarios.Empresa;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+import java.util.stream.IntStream;
+
+/**
+ * Carga em massa de clientes ou empresas a partir de arquivos CSV.
+ *
+ * O arquivo é lido em blocos. As linhas de cada bloco são convertidas e têm o CPF ou CNPJ validado em paralelo,
+ * enquanto o bloco anterior é gravado no banco de dados. Cada bloco é gravado em uma única transação, com as
+ * inclusões agrupadas em lotes JDBC; se a transação de um bloco falhar, as suas linhas são gravadas de novo em lotes
+ * menores e, por fim, uma a uma. Linhas inválidas, linhas cujo CPF ou CNPJ já está cadastrado (recusadas pelo DAO na
+ * inclusão ou pelo banco de dados) e linhas que não puderam ser gravadas são copiadas para um arquivo de rejeitados
+ * junto com o motivo.
+ *
+ * As cargas de clientes e de empresas preparam antes o filtro de documentos do {@link IndiceDocumentos}, lido do seu
+ * arquivo se ainda corresponder à tabela ou reconstruído a partir do banco de dados, de modo que apenas os documentos
+ * que talvez já estejam cadastrados sejam procurados no banco de dados. Ao final, o filtro é gravado de volta com os
+ * documentos incluídos, se nenhum outro processo tiver incluído entidades durante a carga.
+ *
+ * Formatos aceitos, com campos separados por ponto e vírgula:
+ * - Clientes: {@code nome;cpf;saldo}
+ * - Empresas: {@code nome;cnpj;taxa;saldo}
+ *
+ * O saldo é informado em reais (ex: "1234,56") e a taxa como fração do valor (ex: "0,015" para 1,5%). Uma primeira
+ * linha cujos campos são exatamente os nomes das colunas do formato, sem diferenciar maiúsculas e minúsculas, é
+ * tratada como cabeçalho e ignorada; qualquer outra primeira linha é carregada.
+ *
+ * @param <E> O tipo da entidade carregada.
+ */
+public class CargaLote<E> {
+
+    /**
+     * Quantidade padrão de linhas gravadas em cada transação.
+     */
+    public static final int TAMANHO_BLOCO_PADRAO = 5000;
+
+    /**
+     * Quantidade de inclusões enviadas ao banco de uma só vez; acompanha {@code hibernate.jdbc.batch_size}.
+     */
+    private static final int LOTE_JDBC = 50;
+
+    private static final String SEPARADOR = ";";
+
+    private final Function<String, E> conversor;
+    private final Function<Sessao, ? extends DAO<E>> dao;
+    private final Function<Sessao, IndiceDocumentos> preparacao;
+    private final String[] cabecalho;
+    private final int tamanhoBloco;
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link CargaLote}, para arquivos sem cabeçalho.
+     *
+     * @param conversor A função que converte uma linha na entidade, lançando {@link IllegalArgumentException}
+     *                  quando a linha é inválida.
+     * @param dao A função que obtém, da sessão, o DAO usado para incluir a entidade.
+     * @param tamanhoBloco A quantidade de linhas gravadas em cada transação.
+     * @throws IllegalArgumentException Se o tamanho do bloco não for positivo.
+     */
+    public CargaLote(Function<String, E> conversor, Function<Sessao, ? extends DAO<E>> dao, int tamanhoBloco) {
+        this(conversor, dao, null, null, tamanhoBloco);
+    }
+
+    /**
+     * Construtor que prepara um {@link IndiceDocumentos} antes da carga e grava o seu filtro ao final.
+     *
+     * @param conversor A função que converte uma linha na entidade, lançando {@link IllegalArgumentException}
+     *                  quando a linha é inválida.
+     * @param dao A função que obtém, da sessão, o DAO usado para incluir a entidade.
+     * @param preparacao A função que prepara o filtro de documentos e devolve o índice, ou {@code null} para não
+     *                   preparar nenhum.
+     * @param cabecalho Os nomes das colunas, separados por ponto e vírgula, de um cabeçalho opcional na primeira
+     *                  linha, ou {@code null} se o arquivo não tiver cabeçalho.
+     * @param tamanhoBloco A quantidade de linhas gravadas em cada transação.
+     * @throws IllegalArgumentException Se o tamanho do bloco não for positivo.
+     */
+    public CargaLote(Function<String, E> conversor, Function<Sessao, ? extends DAO<E>> dao,
+                     Function<Sessao, IndiceDocumentos> preparacao, String cabecalho, int tamanhoBloco) {
+        if (tamanhoBloco <= 0) {
+            throw new IllegalArgumentException("Tamanho de bloco inválido");
+        }
+        this.conversor = conversor;
+        this.dao = dao;
+        this.preparacao = preparacao;
+        this.cabecalho = cabecalho == null ? null : cabecalho.split(SEPARADOR, -1);
+        this.tamanhoBloco = tamanhoBloco;
+    }
+
+    /**
+     * Cria uma carga de clientes no formato {@code nome;cpf;saldo}.
+     *
+     * @return A carga de clientes.
+     */
+    public static CargaLote<Cliente> clientes() {
+        return new CargaLote<>(CargaLote::converterCliente, Sessao::clientes,
+                sessao -> sessao.clientes().prepararFiltro(), "nome;cpf;saldo", TAMANHO_BLOCO_PADRAO);
+    }
+
+    /**
+     * Cria uma carga de empresas no formato {@code nome;cnpj;taxa;saldo}.
+     *
+     * @return A carga de empresas.
+     */
+    public static CargaLote<Empresa> empresas() {
+        return new CargaLote<>(CargaLote::converterEmpresa, Sessao::empresas,
+                sessao -> sessao.empresas().prepararFiltro(), "nome;cnpj;taxa;saldo", TAMANHO_BLOCO_PADRAO);
+    }
+
+    /**
+     * Carrega o arquivo informado.
+     *
+     * @param entrada O arquivo CSV a ser carregado, em UTF-8.
+     * @param rejeitados O arquivo que receberá as linhas rejeitadas, no formato {@code linha;motivo}.
+     * @return O resumo da carga.
+     * @throws IOException Se ocorrer um erro de leitura ou gravação dos arquivos.
+     */
+    public Resumo carregar(Path entrada, Path rejeitados) throws IOException {
+        long inicio = System.nanoTime();
+        long incluidos = 0;
+        long rejeitadas = 0;
+
+        IndiceDocumentos indice = null;
+        if (preparacao != null) {
+            try (Sessao sessao = Sessao.abrir()) {
+                indice = preparacao.apply(sessao);
+            }
+        }
+
+        try (BufferedReader leitor = Files.newBufferedReader(entrada, StandardCharsets.UTF_8);
+             BufferedWriter saidaRejeitados = Files.newBufferedWriter(rejeitados, StandardCharsets.UTF_8)) {
+
+            List<String> primeiro = lerBloco(leitor, true);
+            CompletableFuture<Bloco<E>> proximo = CompletableFuture.supplyAsync(() -> converter(primeiro));
+
+            while (true) {
+                Bloco<E> bloco = proximo.join();
+                if (bloco.linhas.isEmpty()) {
+                    break;
+                }
+
+                // Converte o próximo bloco enquanto o atual é gravado
+                List<String> seguinte = lerBloco(leitor, false);
+                proximo = CompletableFuture.supplyAsync(() -> converter(seguinte));
+
+                // A gravação pode recusar linhas duplicadas, então os erros só são copiados depois dela
+                if (bloco.validos > 0) {
+                    gravar(bloco, 0, bloco.linhas.size());
+                }
+                for (int i = 0; i < bloco.linhas.size(); i++) {
+                    if (bloco.erros[i] != null) {
+                        rejeitar(saidaRejeitados, bloco.linhas.get(i), bloco.erros[i]);
+                        rejeitadas++;
+                    }
+                }
+                incluidos += bloco.validos;
+            }
+        }
+        if (indice != null) {
+            try (Sessao sessao = Sessao.abrir()) {
+                indice.gravarFiltro(dao.apply(sessao).obterReferencia());
+            }
+        }
+        return new Resumo(incluidos, rejeitadas, System.nanoTime() - inicio);
+    }
+
+    /**
+     * Lê até {@link #tamanhoBloco} linhas não vazias do arquivo.
+     */
+    private List<String> lerBloco(BufferedReader leitor, boolean primeiroBloco) throws IOException {
+        List<String> linhas = new ArrayList<>(tamanhoBloco);
+        String linha;
+        while (linhas.size() < tamanhoBloco && (linha = leitor.readLine()) != null) {
+            if (linha.isBlank()) {
+                continue;
+            }
+            if (primeiroBloco && linhas.isEmpty()) {
+                primeiroBloco = false;
+                if (cabecalho(linha)) {
+                    continue;
+                }
+            }
+            linhas.add(linha);
+        }
+        return linhas;
+    }
+
+    /**
+     * Verifica se a linha é o cabeçalho esperado: os mesmos campos, na mesma ordem, sem diferenciar maiúsculas e
+     * minúsculas nem considerar espaços em volta.
+     */
+    private boolean cabecalho(String linha) {
+        if (cabecalho == null) {
+            return false;
+        }
+        String[] campos = linha.split(SEPARADOR, -1);
+        if (campos.length != cabecalho.length) {
+            return false;
+        }
+        for (int i = 0; i < campos.length; i++) {
+            if (!campos[i].trim().equalsIgnoreCase(cabecalho[i].trim())) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Converte e valida as linhas do bloco em paralelo.
+     */
+    @SuppressWarnings("unchecked")
+    private Bloco<E> converter(List<String> linhas) {
+        Object[] entidades = new Object[linhas.size()];
+        String[] erros = new String[linhas.size()];
+        IntStream.range(0, linhas.size()).parallel().forEach(i -> {
+            try {
+                entidades[i] = conversor.apply(linhas.get(i));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                erros[i] = e.getMessage() == null ? e.getClass().getSimpleName() : e.getMessage();
+            }
+        });
+
+        int validos = 0;
+        for (String erro : erros) {
+            if (erro == null) {
+                validos++;
+            }
+        }
+        return new Bloco<>(linhas, (E[]) entidades, erros, validos);
+    }
+
+    /**
+     * Grava as entidades válidas das linhas {@code [de, ate)} do bloco em uma única transação.
+     *
+     * Se a transação falhar, por exemplo por um duplicado recusado apenas pela restrição única do banco de dados, as
+     * linhas são gravadas de novo em lotes de {@link #LOTE_JDBC} e, dentro de um lote que falhar, uma a uma, de modo
+     * que apenas as linhas que de fato não podem ser gravadas sejam rejeitadas.
+     */
+    private void gravar(Bloco<E> bloco, int de, int ate) {
+        try {
+            incluir(bloco, de, ate);
+        } catch (RuntimeException e) {
+            if (ate - de == 1) {
+                if (bloco.erros[de] == null) {
+                    bloco.erros[de] = "Falha ao gravar: " + e.getMessage();
+                    bloco.validos--;
+                }
+                return;
+            }
+            // As entidades da transação desfeita já receberam identificadores, por isso são convertidas de novo
+            for (int i = de; i < ate; i++) {
+                if (bloco.erros[i] == null) {
+                    bloco.entidades[i] = conversor.apply(bloco.linhas.get(i));
+                }
+            }
+            int passo = ate - de > LOTE_JDBC ? LOTE_JDBC : 1;
+            for (int i = de; i < ate; i += passo) {
+                gravar(bloco, i, Math.min(i + passo, ate));
+            }
+        }
+    }
+
+    /**
+     * Inclui as entidades válidas das linhas {@code [de, ate)} do bloco em uma única transação. As linhas recusadas
+     * pelo DAO, como as de documento já cadastrado, são marcadas como rejeitadas sem interromper as demais.
+     */
+    private void incluir(Bloco<E> bloco, int de, int ate) {
+        try (Sessao sessao = Sessao.abrir()) {
+            DAO<E> daoEntidade = dao.apply(sessao);
+            sessao.abrirTransacao();
+            int pendentes = 0;
+            for (int i = de; i < ate; i++) {
+                if (bloco.erros[i] != null) {
+                    continue;
+                }
+                try {
+                    daoEntidade.incluir(bloco.entidades[i]);
+                } catch (IllegalArgumentException e) {
+                    bloco.erros[i] = e.getMessage();
+                    bloco.validos--;
+                    continue;
+                }
+                if (++pendentes == LOTE_JDBC) {
+                    daoEntidade.sincronizar();
+                    pendentes = 0;
+                }
+            }
+            sessao.confirmar();
+        }
+    }
+
+    private static void rejeitar(BufferedWriter saida, String linha, String motivo) throws IOException {
+        saida.write(linha);
+        saida.write(SEPARADOR);
+        saida.write(motivo);
+        saida.newLine();
+    }
+
+    /**
+     * Converte uma linha {@code nome;cpf;saldo} em um {@link Cliente}.
+     */
+    private static Cliente converterCliente(String linha) {
+        String[] campos = campos(linha, 3);
+        return new Cliente(campos[0], campos[1], Dinheiro.centavos(campos[2]));
+    }
+
+    /**
+     * Converte uma linha {@code nome;cnpj;taxa;saldo} em uma {@link Empresa}.
+     */
+    private static Empresa converterEmpresa(String linha) {
+        String[] campos = campos(linha, 4);
+        return new Empresa(campos[0], campos[1], Dinheiro.pontosBase(campos[2]), Dinheiro.centavos(campos[3]));
+    }
+
+    private static String[] campos(String linha, int quantidade) {
+        String[] campos = linha.split(SEPARADOR, -1);
+        if (campos.length != quantidade) {
+            throw new IllegalArgumentException("Esperados " + quantidade + " campos, encontrados " + campos.length);
+        }
+        for (int i = 0; i < campos.length; i++) {
+            campos[i] = campos[i].trim();
+        }
+        return campos;
+    }
+
+    /**
+     * Bloco de linhas já convertidas: cada posição tem a entidade ou o motivo da rejeição.
+     */
+    private static final class Bloco<E> {
+        private final List<String> linhas;
+        private final E[] entidades;
+        private final String[] erros;
+        private int validos;
+
+        private Bloco(List<String> linhas, E[] entidades, String[] erros, int validos) {
+            this.linhas = linhas;
+            this.entidades = entidades;
+            this.erros = erros;
+            this.validos = validos;
+        }
+    }
+
+    /**
+     * Resumo de uma carga.
+     */
+    public static class Resumo {
+
+        private final long incluidos;
+        private final long rejeitados;
+        private final long duracaoNanos;
+
+        /**
+         * Construtor para a criação de uma nova instância da classe {@link Resumo}.
+         *
+         * @param incluidos A quantidade de registros incluídos.
+         * @param rejeitados A quantidade de linhas rejeitadas.
+         * @param duracaoNanos A duração da carga, em nanossegundos.
+         */
+        public Resumo(long incluidos, long rejeitados, long duracaoNanos) {
+            this.incluidos = incluidos;
+            this.rejeitados = rejeitados;
+            this.duracaoNanos = duracaoNanos;
+        }
+
+        /**
+         * Obtém a quantidade de registros incluídos.
+         *
+         * @return A quantidade de registros incluídos.
+         */
+        public long getIncluidos() {
+            return incluidos;
+        }
+
+        /**
+         * Obtém a quantidade de linhas rejeitadas.
+         *
+         * @return A quantidade de linhas rejeitadas.
+         */
+        public long getRejeitados() {
+            return rejeitados;
+        }
+
+        /**
+         * Obtém a duração da carga.
+         *
+         * @return A duração em nanossegundos.
+         */
+        public long getDuracaoNanos() {
+            return duracaoNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("Incluídos: %d | Rejeitados: %d | Tempo: %d ms",
+                    incluidos, rejeitados, duracaoNanos / 1_000_000);
+        }
+    }
+
+    /**
+     * Executa uma carga pela linha de comando.
+     *
+     * Uso: {@code CargaLote <clientes|empresas> <entrada.csv> <rejeitados.csv>}
+     *
+     * @param args O tipo de carga e os caminhos dos arquivos de entrada e de rejeitados.
+     * @throws IOException Se ocorrer um erro de leitura ou gravação dos arquivos.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3 || !(args[0].equals("clientes") || args[0].equals("empresas"))) {
+            System.out.println("Uso: CargaLote <clientes|empresas> <entrada.csv> <rejeitados.csv>");
+            return;
+        }
+        Inicializacao.iniciar();
+        CargaLote<?> carga = args[0].equals("clientes") ? clientes() : empresas();
+        System.out.println(carga.carregar(Paths.get(args[1]), Paths.get(args[2])));
+    }
+}
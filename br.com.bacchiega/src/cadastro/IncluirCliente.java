@@ -1,6 +1,9 @@
 package cadastro;
 
+import financeiro.Dinheiro;
 import infra.DAOCliente;
+import infra.Inicializacao;
+import infra.Sessao;
 import usuarios.Cliente;
 
 import java.util.Scanner;
@@ -24,6 +27,9 @@ public class IncluirCliente {
      */
     public static void main(String[] args) {
 
+        // Cria as fábricas do JPA em segundo plano enquanto o programa lê a entrada
+        Inicializacao.iniciar();
+
         Scanner sc = new Scanner(System.in);
 
         // Solicita e lê o nome do cliente
@@ -36,16 +42,17 @@ public class IncluirCliente {
 
         // Solicita e lê o saldo do cliente
         System.out.println("Informe o saldo do cliente: ");
-        double saldo = sc.nextDouble();
+        long saldo = Dinheiro.centavos(sc.next());
 
         // Criação de uma nova instância de Cliente com dados fornecidos.
         Cliente cliente = new Cliente(nome, cpf, saldo);
 
-        // Criação do DAOCliente para gerenciar a persistência do cliente.
-        DAOCliente dao = new DAOCliente();
+        // Abertura de uma sessão, cujo DAOCliente gerencia a persistência do cliente.
+        try (Sessao sessao = Sessao.abrir()) {
 
-        // Inclusão do cliente no banco de dados de forma atômica.
-        dao.incluirAtomico(cliente);
+            // Inclusão do cliente no banco de dados de forma atômica.
+            sessao.clientes().incluirAtomico(cliente);
+        }
 
         // Fecha o Scanner
         sc.close();
@@ -1,6 +1,9 @@
 package cadastro;
 
+import financeiro.Dinheiro;
 import infra.DAOEmpresa;
+import infra.Inicializacao;
+import infra.Sessao;
 import usuarios.Empresa;
 
 import java.util.Scanner;
@@ -24,6 +27,9 @@ public class IncluirEmpresa {
      * @param args Argumentos da linha de comando (não utilizados neste caso).
      */
     public static void main(String[] args) {
+        // Cria as fábricas do JPA em segundo plano enquanto o programa lê a entrada
+        Inicializacao.iniciar();
+
         Scanner sc = new Scanner(System.in);
 
         // Solicita e lê o nome da empresa
@@ -34,22 +40,23 @@ public class IncluirEmpresa {
         System.out.println("Informe o CNPJ da empresa: ");
         String cnpj = sc.nextLine();
 
-        // Solicita e lê a taxa da empresa
+        // Solicita e lê a taxa da empresa, como fração do valor (ex: 0.015 para 1,5%)
         System.out.println("Informe a taxa da empresa: ");
-        double taxa = sc.nextDouble();
+        int taxa = Dinheiro.pontosBase(sc.next());
 
         // Solicita e lê o saldo da empresa
         System.out.println("Informe o saldo da empresa: ");
-        double saldo = sc.nextDouble();
+        long saldo = Dinheiro.centavos(sc.next());
 
         // Cria uma nova instância de Empresa com os dados fornecidos
         Empresa empresa = new Empresa(nomeEmpresa, cnpj, taxa, saldo);
 
-        // Cria uma instância do DAOEmpresa para gerenciar a persistência da empresa
-        DAOEmpresa dao = new DAOEmpresa();
+        // Abre uma sessão, cujo DAOEmpresa gerencia a persistência da empresa
+        try (Sessao sessao = Sessao.abrir()) {
 
-        // Inclui a empresa no banco de dados de forma atômica
-        dao.incluirAtomico(empresa);
+            // Inclui a empresa no banco de dados de forma atômica
+            sessao.empresas().incluirAtomico(empresa);
+        }
 
         // Fecha o Scanner
         sc.close();
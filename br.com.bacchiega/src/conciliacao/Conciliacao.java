@@ -0,0 +1,556 @@
+package conciliacao;
+
+import diario.Diario;
+import diario.Saldos;
+import infra.Inicializacao;
+import infra.PoolSessoes;
+import infra.Sessao;
+import util.MapaLongLong;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Conciliação dos saldos de clientes e empresas gravados no banco de dados.
+ *
+ * Cada tipo de conta é dividido em faixas de identificador, processadas em paralelo por um {@link ForkJoinPool}; cada
+ * faixa é lida em uma {@link Sessao} própria, apenas com o identificador e o saldo, em páginas ordenadas por
+ * identificador. Para cada tipo são calculados a quantidade de contas, a soma dos saldos e uma soma de verificação
+ * que não depende da ordem de leitura nem da divisão em faixas, de modo que duas execuções, ou o banco principal e
+ * uma réplica, podem ser comparados apenas por esses totais.
+ *
+ * Opcionalmente, os saldos do banco de dados são conferidos com os saldos esperados reconstruídos do {@link Diario}
+ * por {@link Diario#recuperar(Path)}. As contas que não constam do diário não são conferidas; as que constam do
+ * diário e não existem no banco de dados são informadas como divergências. O {@code transacao.LivroRazao} deve ter
+ * gravado os seus saldos no banco de dados antes da conciliação.
+ *
+ * As faixas são lidas em momentos diferentes, sem um instantâneo único do banco de dados: a conciliação deve ser
+ * executada sem operações em andamento, como em uma janela de manutenção. As leituras usam a unidade somente
+ * leitura quando ela está configurada, a não ser que a conciliação seja criada para ler do banco principal.
+ */
+public class Conciliacao {
+
+    /**
+     * Tamanho padrão, em identificadores, da faixa lida por cada tarefa.
+     */
+    public static final long TAMANHO_FAIXA_PADRAO = 250_000;
+
+    /**
+     * Quantidade máxima de divergências listadas em cada tipo de conta; as demais são apenas contadas.
+     */
+    public static final int LIMITE_DIVERGENCIAS = 1000;
+
+    /**
+     * Tipo de conta conciliado.
+     */
+    public enum Tipo {
+        CLIENTE, EMPRESA
+    }
+
+    private final long tamanhoFaixa;
+    private final int paralelismo;
+    private final boolean lerDaPrimaria;
+
+    /**
+     * Construtor que usa o tamanho de faixa padrão, uma tarefa por processador, limitada ao tamanho do
+     * {@link PoolSessoes}, e a unidade somente leitura quando ela está configurada.
+     */
+    public Conciliacao() {
+        this(TAMANHO_FAIXA_PADRAO,
+                Math.min(Runtime.getRuntime().availableProcessors(), PoolSessoes.global().getTamanhoMaximo()), false);
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link Conciliacao}.
+     *
+     * @param tamanhoFaixa O tamanho, em identificadores, da faixa lida por cada tarefa.
+     * @param paralelismo A quantidade de faixas lidas ao mesmo tempo, cada uma com uma sessão do
+     *                    {@link PoolSessoes}.
+     * @param lerDaPrimaria Se as leituras devem ser feitas no banco principal mesmo com a unidade somente leitura
+     *                      configurada.
+     * @throws IllegalArgumentException Se o tamanho da faixa ou o paralelismo não forem positivos.
+     */
+    public Conciliacao(long tamanhoFaixa, int paralelismo, boolean lerDaPrimaria) {
+        if (tamanhoFaixa <= 0 || paralelismo <= 0) {
+            throw new IllegalArgumentException("Configuração de conciliação inválida");
+        }
+        this.tamanhoFaixa = tamanhoFaixa;
+        this.paralelismo = paralelismo;
+        this.lerDaPrimaria = lerDaPrimaria;
+    }
+
+    /**
+     * Calcula os totais dos saldos gravados no banco de dados, sem conferi-los.
+     *
+     * @return O resultado da conciliação.
+     */
+    public Resultado conciliar() {
+        return conciliar(null);
+    }
+
+    /**
+     * Calcula os totais dos saldos gravados no banco de dados e os confere com os saldos esperados.
+     *
+     * @param esperados Os saldos esperados, por exemplo os reconstruídos do diário, ou {@code null} para não conferir.
+     * @return O resultado da conciliação.
+     */
+    public Resultado conciliar(Saldos esperados) {
+        long inicio = System.nanoTime();
+        ForkJoinPool pool = new ForkJoinPool(paralelismo);
+        try {
+            Totais clientes = conciliar(pool, Tipo.CLIENTE, esperados == null ? null : esperados.getClientes());
+            Totais empresas = conciliar(pool, Tipo.EMPRESA, esperados == null ? null : esperados.getEmpresas());
+            return new Resultado(clientes, empresas, System.nanoTime() - inicio);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Concilia um tipo de conta, dividindo em faixas o intervalo de identificadores que cobre o banco de dados e os
+     * saldos esperados.
+     */
+    private Totais conciliar(ForkJoinPool pool, Tipo tipo, MapaLongLong esperados) {
+        long[] ids = idsOrdenados(esperados);
+        long[] faixa;
+        try (Sessao sessao = abrirSessao()) {
+            faixa = tipo == Tipo.CLIENTE ? sessao.clientes().obterFaixaIds() : sessao.empresas().obterFaixaIds();
+        }
+        if (ids.length > 0) {
+            faixa = faixa == null
+                    ? new long[] {ids[0], ids[ids.length - 1]}
+                    : new long[] {Math.min(faixa[0], ids[0]), Math.max(faixa[1], ids[ids.length - 1])};
+        }
+        if (faixa == null) {
+            return new Parcial().totais(tipo);
+        }
+        return pool.invoke(new Tarefa(tipo, esperados, ids, faixa[0], faixa[1] + 1)).totais(tipo);
+    }
+
+    /**
+     * Obtém os identificadores dos saldos esperados, em ordem crescente.
+     */
+    private static long[] idsOrdenados(MapaLongLong esperados) {
+        if (esperados == null) {
+            return new long[0];
+        }
+        long[] ids = new long[esperados.tamanho()];
+        int[] posicao = new int[1];
+        esperados.paraCada((id, saldo) -> ids[posicao[0]++] = id);
+        Arrays.parallelSort(ids);
+        return ids;
+    }
+
+    /**
+     * Abre uma sessão, fixando as leituras no banco principal quando configurado.
+     */
+    private Sessao abrirSessao() {
+        Sessao sessao = Sessao.abrir();
+        return lerDaPrimaria ? sessao.lerDaPrimaria() : sessao;
+    }
+
+    /**
+     * Tarefa que divide a faixa de identificadores {@code [de, ate)} ao meio até que ela caiba em
+     * {@link #tamanhoFaixa}, e então lê e confere os saldos da faixa.
+     */
+    private final class Tarefa extends RecursiveTask<Parcial> {
+
+        private static final long serialVersionUID = 1L;
+
+        // A tarefa nunca é serializada; o mapa, que não é serializável, fica de fora
+        private final Tipo tipo;
+        private final transient MapaLongLong esperados;
+        private final long[] ids;
+        private final long de;
+        private final long ate;
+
+        private Tarefa(Tipo tipo, MapaLongLong esperados, long[] ids, long de, long ate) {
+            this.tipo = tipo;
+            this.esperados = esperados;
+            this.ids = ids;
+            this.de = de;
+            this.ate = ate;
+        }
+
+        @Override
+        protected Parcial compute() {
+            if (ate - de > tamanhoFaixa) {
+                long meio = de + (ate - de) / 2;
+                Tarefa direita = new Tarefa(tipo, esperados, ids, meio, ate);
+                direita.fork();
+                Parcial parcial = new Tarefa(tipo, esperados, ids, de, meio).compute();
+                return parcial.somar(direita.join());
+            }
+            return lerFaixa();
+        }
+
+        /**
+         * Lê os saldos da faixa e os confere com os esperados, percorrendo ao mesmo tempo os identificadores
+         * esperados da faixa, também em ordem.
+         */
+        private Parcial lerFaixa() {
+            Parcial parcial = new Parcial();
+            int[] proximo = {primeiroIndice(de)};
+            int fim = primeiroIndice(ate);
+            try (Sessao sessao = abrirSessao()) {
+                MapaLongLong.Consumidor consumidor = (id, saldo) -> {
+                    parcial.adicionar(id, saldo);
+                    while (proximo[0] < fim && ids[proximo[0]] < id) {
+                        parcial.divergir(new Divergencia(tipo, ids[proximo[0]], null,
+                                esperados.obter(ids[proximo[0]], 0)));
+                        proximo[0]++;
+                    }
+                    if (proximo[0] < fim && ids[proximo[0]] == id) {
+                        long esperado = esperados.obter(id, 0);
+                        parcial.conferidas++;
+                        if (esperado != saldo) {
+                            parcial.divergir(new Divergencia(tipo, id, saldo, esperado));
+                        }
+                        proximo[0]++;
+                    }
+                };
+                if (tipo == Tipo.CLIENTE) {
+                    sessao.clientes().percorrerSaldos(de, ate, consumidor);
+                } else {
+                    sessao.empresas().percorrerSaldos(de, ate, consumidor);
+                }
+            }
+            for (; proximo[0] < fim; proximo[0]++) {
+                parcial.divergir(new Divergencia(tipo, ids[proximo[0]], null, esperados.obter(ids[proximo[0]], 0)));
+            }
+            return parcial;
+        }
+
+        /**
+         * Obtém o índice do primeiro identificador esperado maior ou igual ao informado.
+         */
+        private int primeiroIndice(long id) {
+            int posicao = Arrays.binarySearch(ids, id);
+            return posicao >= 0 ? posicao : -posicao - 1;
+        }
+    }
+
+    /**
+     * Totais acumulados por uma tarefa.
+     */
+    private static final class Parcial {
+        private long quantidade;
+        private long soma;
+        private long verificacao;
+        private long conferidas;
+        private long divergentes;
+        private final List<Divergencia> divergencias = new ArrayList<>();
+
+        private void adicionar(long id, long saldo) {
+            quantidade++;
+            soma += saldo;
+            verificacao += espalhar(espalhar(id) ^ saldo);
+        }
+
+        private void divergir(Divergencia divergencia) {
+            divergentes++;
+            if (divergencias.size() < LIMITE_DIVERGENCIAS) {
+                divergencias.add(divergencia);
+            }
+        }
+
+        private Parcial somar(Parcial outra) {
+            quantidade += outra.quantidade;
+            soma += outra.soma;
+            verificacao += outra.verificacao;
+            conferidas += outra.conferidas;
+            divergentes += outra.divergentes;
+            for (Divergencia divergencia : outra.divergencias) {
+                if (divergencias.size() >= LIMITE_DIVERGENCIAS) {
+                    break;
+                }
+                divergencias.add(divergencia);
+            }
+            return this;
+        }
+
+        private Totais totais(Tipo tipo) {
+            return new Totais(tipo, quantidade, soma, verificacao, conferidas, divergentes,
+                    Collections.unmodifiableList(divergencias));
+        }
+    }
+
+    /**
+     * Espalha os bits do valor (finalizador de 64 bits do MurmurHash3).
+     */
+    private static long espalhar(long valor) {
+        long h = valor;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * Saldo de uma conta que difere do esperado.
+     */
+    public static class Divergencia {
+
+        private final Tipo tipo;
+        private final long id;
+        private final Long saldoBanco;
+        private final long saldoEsperado;
+
+        /**
+         * Construtor para a criação de uma nova instância da classe {@link Divergencia}.
+         *
+         * @param tipo O tipo da conta.
+         * @param id O identificador da conta.
+         * @param saldoBanco O saldo gravado no banco de dados, em centavos, ou {@code null} se a conta não existe.
+         * @param saldoEsperado O saldo esperado, em centavos.
+         */
+        public Divergencia(Tipo tipo, long id, Long saldoBanco, long saldoEsperado) {
+            this.tipo = tipo;
+            this.id = id;
+            this.saldoBanco = saldoBanco;
+            this.saldoEsperado = saldoEsperado;
+        }
+
+        /**
+         * Obtém o tipo da conta.
+         *
+         * @return O tipo da conta.
+         */
+        public Tipo getTipo() {
+            return tipo;
+        }
+
+        /**
+         * Obtém o identificador da conta.
+         *
+         * @return O identificador.
+         */
+        public long getId() {
+            return id;
+        }
+
+        /**
+         * Obtém o saldo gravado no banco de dados.
+         *
+         * @return O saldo em centavos, ou {@code null} se a conta não existe no banco de dados.
+         */
+        public Long getSaldoBanco() {
+            return saldoBanco;
+        }
+
+        /**
+         * Obtém o saldo esperado.
+         *
+         * @return O saldo em centavos.
+         */
+        public long getSaldoEsperado() {
+            return saldoEsperado;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s %d: banco %s | esperado %d", tipo, id,
+                    saldoBanco == null ? "ausente" : saldoBanco.toString(), saldoEsperado);
+        }
+    }
+
+    /**
+     * Totais de um tipo de conta.
+     */
+    public static class Totais {
+
+        private final Tipo tipo;
+        private final long quantidade;
+        private final long soma;
+        private final long verificacao;
+        private final long conferidas;
+        private final long divergentes;
+        private final List<Divergencia> divergencias;
+
+        /**
+         * Construtor para a criação de uma nova instância da classe {@link Totais}.
+         *
+         * @param tipo O tipo de conta.
+         * @param quantidade A quantidade de contas no banco de dados.
+         * @param soma A soma dos saldos, em centavos.
+         * @param verificacao A soma de verificação dos identificadores e saldos.
+         * @param conferidas A quantidade de contas conferidas com um saldo esperado.
+         * @param divergentes A quantidade de divergências encontradas.
+         * @param divergencias As primeiras divergências encontradas, até {@link #LIMITE_DIVERGENCIAS}.
+         */
+        public Totais(Tipo tipo, long quantidade, long soma, long verificacao, long conferidas, long divergentes,
+                      List<Divergencia> divergencias) {
+            this.tipo = tipo;
+            this.quantidade = quantidade;
+            this.soma = soma;
+            this.verificacao = verificacao;
+            this.conferidas = conferidas;
+            this.divergentes = divergentes;
+            this.divergencias = divergencias;
+        }
+
+        /**
+         * Obtém o tipo de conta.
+         *
+         * @return O tipo de conta.
+         */
+        public Tipo getTipo() {
+            return tipo;
+        }
+
+        /**
+         * Obtém a quantidade de contas no banco de dados.
+         *
+         * @return A quantidade de contas.
+         */
+        public long getQuantidade() {
+            return quantidade;
+        }
+
+        /**
+         * Obtém a soma dos saldos.
+         *
+         * @return A soma em centavos.
+         */
+        public long getSoma() {
+            return soma;
+        }
+
+        /**
+         * Obtém a soma de verificação dos identificadores e saldos, que é a mesma para os mesmos saldos
+         * independentemente da ordem de leitura e do tamanho das faixas.
+         *
+         * @return A soma de verificação.
+         */
+        public long getVerificacao() {
+            return verificacao;
+        }
+
+        /**
+         * Obtém a quantidade de contas conferidas com um saldo esperado.
+         *
+         * @return A quantidade de contas conferidas.
+         */
+        public long getConferidas() {
+            return conferidas;
+        }
+
+        /**
+         * Obtém a quantidade de divergências encontradas, incluindo as que não foram listadas.
+         *
+         * @return A quantidade de divergências.
+         */
+        public long getDivergentes() {
+            return divergentes;
+        }
+
+        /**
+         * Obtém as primeiras divergências encontradas, até {@link #LIMITE_DIVERGENCIAS}.
+         *
+         * @return As divergências listadas.
+         */
+        public List<Divergencia> getDivergencias() {
+            return divergencias;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s: %d contas | Soma: %d | Verificação: %016x | Conferidas: %d | Divergentes: %d",
+                    tipo, quantidade, soma, verificacao, conferidas, divergentes);
+        }
+    }
+
+    /**
+     * Resultado de uma conciliação.
+     */
+    public static class Resultado {
+
+        private final Totais clientes;
+        private final Totais empresas;
+        private final long duracaoNanos;
+
+        /**
+         * Construtor para a criação de uma nova instância da classe {@link Resultado}.
+         *
+         * @param clientes Os totais dos clientes.
+         * @param empresas Os totais das empresas.
+         * @param duracaoNanos A duração da conciliação, em nanossegundos.
+         */
+        public Resultado(Totais clientes, Totais empresas, long duracaoNanos) {
+            this.clientes = clientes;
+            this.empresas = empresas;
+            this.duracaoNanos = duracaoNanos;
+        }
+
+        /**
+         * Obtém os totais dos clientes.
+         *
+         * @return Os totais dos clientes.
+         */
+        public Totais getClientes() {
+            return clientes;
+        }
+
+        /**
+         * Obtém os totais das empresas.
+         *
+         * @return Os totais das empresas.
+         */
+        public Totais getEmpresas() {
+            return empresas;
+        }
+
+        /**
+         * Obtém a duração da conciliação.
+         *
+         * @return A duração em nanossegundos.
+         */
+        public long getDuracaoNanos() {
+            return duracaoNanos;
+        }
+
+        /**
+         * Verifica se nenhuma divergência foi encontrada.
+         *
+         * @return {@code true} se os saldos conferidos estão todos de acordo com os esperados.
+         */
+        public boolean isConciliado() {
+            return clientes.getDivergentes() == 0 && empresas.getDivergentes() == 0;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s%n%s%nTempo: %d ms", clientes, empresas, duracaoNanos / 1_000_000);
+        }
+    }
+
+    /**
+     * Executa uma conciliação pela linha de comando.
+     *
+     * Uso: {@code Conciliacao [diretorio-do-diario]}
+     *
+     * @param args O diretório do diário, opcional, cujos saldos são conferidos com os do banco de dados.
+     * @throws IOException Se ocorrer um erro de leitura do diário.
+     */
+    public static void main(String[] args) throws IOException {
+        Inicializacao.iniciar();
+        Saldos esperados = args.length > 0 ? Diario.recuperar(Paths.get(args[0])) : null;
+        Resultado resultado = new Conciliacao().conciliar(esperados);
+        System.out.println(resultado);
+        for (Divergencia divergencia : resultado.getClientes().getDivergencias()) {
+            System.out.println(divergencia);
+        }
+        for (Divergencia divergencia : resultado.getEmpresas().getDivergencias()) {
+            System.out.println(divergencia);
+        }
+    }
+}
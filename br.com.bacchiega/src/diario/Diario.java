@@ -0,0 +1,398 @@
+package diario;
+
+import transacao.TipoOperacao;
+import util.Arquivos;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Diário de operações, gravado em arquivos mapeados em memória com registros binários de tamanho fixo.
+ *
+ * Cada operação aplicada recebe um número de sequência e é anexada ao segmento atual como um registro de
+ * {@value #TAMANHO_REGISTRO} bytes. Gravar um registro é apenas uma cópia para a memória mapeada; a descarga em disco
+ * é feita em grupo por uma thread de fundo, em intervalos fixos, e quem precisa da garantia de durabilidade pode
+ * aguardá-la com {@link #aguardarDurabilidade(long)}. Quando um segmento enche, um novo é criado.
+ *
+ * Instantâneos periódicos dos saldos ({@link #gravarInstantaneo(Saldos)}) permitem descartar os segmentos antigos e
+ * reconstruir o estado rapidamente com {@link #recuperar(Path)}, reaplicando apenas as operações posteriores ao último
+ * instantâneo.
+ *
+ * Cada registro guarda também os saldos resultantes do cliente e da empresa, de modo que reaplicar uma operação
+ * apenas define saldos e o resultado não depende de quais contas estavam no instantâneo.
+ *
+ * Layout do registro, em bytes:
+ * - 0: sequência ({@code long})
+ * - 8: instante, em milissegundos desde a época ({@code long})
+ * - 16: identificador do cliente ({@code long})
+ * - 24: identificador da empresa ({@code long})
+ * - 32: valor, em centavos ({@code long})
+ * - 40: taxa, em centavos ({@code long})
+ * - 48: saldo do cliente após a operação, em centavos ({@code long})
+ * - 56: saldo da empresa após a operação, em centavos ({@code long})
+ * - 64: tipo da operação ({@code int})
+ * - 68: CRC32C dos 68 bytes anteriores ({@code int})
+ */
+public class Diario implements AutoCloseable {
+
+    /**
+     * Tamanho de cada registro, em bytes.
+     */
+    public static final int TAMANHO_REGISTRO = 72;
+
+    /**
+     * Tamanho padrão de cada segmento, em bytes, suficiente para um milhão de registros.
+     */
+    public static final int TAMANHO_SEGMENTO_PADRAO = TAMANHO_REGISTRO * 1_000_000;
+
+    /**
+     * Intervalo padrão entre descargas em disco, em milissegundos.
+     */
+    public static final long INTERVALO_SINCRONIZACAO_PADRAO_MS = 10;
+
+    private static final int POSICAO_CRC = 68;
+    private static final String PREFIXO_SEGMENTO = "diario-";
+    private static final String SUFIXO_SEGMENTO = ".seg";
+    private static final String PREFIXO_INSTANTANEO = "instantaneo-";
+    private static final String SUFIXO_INSTANTANEO = ".snap";
+
+    private static final Logger logger = Logger.getLogger(Diario.class.getName());
+
+    private final Path diretorio;
+    private final int tamanhoSegmento;
+    private final long intervaloSincronizacaoMs;
+    private final CRC32C crc = new CRC32C();
+    private final ScheduledExecutorService sincronizador;
+
+    private MappedByteBuffer segmento;
+    private long sequencia;
+
+    private final Object travaDuravel = new Object();
+    private long sequenciaDuravel;
+
+    /**
+     * Construtor que utiliza o tamanho de segmento e o intervalo de sincronização padrões.
+     *
+     * @param diretorio O diretório dos segmentos e instantâneos, criado se não existir.
+     * @throws IOException Se não for possível abrir o diário.
+     */
+    public Diario(Path diretorio) throws IOException {
+        this(diretorio, TAMANHO_SEGMENTO_PADRAO, INTERVALO_SINCRONIZACAO_PADRAO_MS);
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link Diario}.
+     *
+     * Se o diretório já contiver segmentos, a gravação continua depois do último registro válido.
+     *
+     * @param diretorio O diretório dos segmentos e instantâneos, criado se não existir.
+     * @param tamanhoSegmento O tamanho de cada segmento, em bytes; deve ser múltiplo de {@value #TAMANHO_REGISTRO}.
+     * @param intervaloSincronizacaoMs O intervalo entre descargas em disco, em milissegundos; com {@code 0}, cada
+     *                                 registro é descarregado antes de {@link #registrar} retornar.
+     * @throws IOException Se não for possível abrir o diário.
+     * @throws IllegalArgumentException Se o tamanho do segmento ou o intervalo forem inválidos.
+     */
+    public Diario(Path diretorio, int tamanhoSegmento, long intervaloSincronizacaoMs) throws IOException {
+        if (tamanhoSegmento < TAMANHO_REGISTRO || tamanhoSegmento % TAMANHO_REGISTRO != 0 || intervaloSincronizacaoMs < 0) {
+            throw new IllegalArgumentException("Configuração de diário inválida");
+        }
+        this.diretorio = Files.createDirectories(diretorio);
+        this.tamanhoSegmento = tamanhoSegmento;
+        this.intervaloSincronizacaoMs = intervaloSincronizacaoMs;
+
+        List<Path> segmentos = segmentos(diretorio);
+        if (segmentos.isEmpty()) {
+            abrirSegmento(1);
+        } else {
+            Path ultimo = segmentos.get(segmentos.size() - 1);
+            segmento = mapear(ultimo, FileChannel.MapMode.READ_WRITE, tamanhoSegmento);
+            sequencia = primeiraSequencia(ultimo) - 1;
+            int posicao = 0;
+            while (posicao + TAMANHO_REGISTRO <= segmento.capacity() && registroValido(segmento, posicao, crc)) {
+                sequencia = segmento.getLong(posicao);
+                posicao += TAMANHO_REGISTRO;
+            }
+            segmento.position(posicao);
+        }
+        sequenciaDuravel = sequencia;
+
+        if (intervaloSincronizacaoMs > 0) {
+            sincronizador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "diario-sincronizacao");
+                t.setDaemon(true);
+                return t;
+            });
+            sincronizador.scheduleWithFixedDelay(this::sincronizarAgendado,
+                    intervaloSincronizacaoMs, intervaloSincronizacaoMs, TimeUnit.MILLISECONDS);
+        } else {
+            sincronizador = null;
+        }
+    }
+
+    /**
+     * Anexa uma operação aplicada ao diário.
+     *
+     * @param tipo O tipo da operação.
+     * @param idCliente O identificador do cliente.
+     * @param idEmpresa O identificador da empresa.
+     * @param valor O valor da operação, em centavos.
+     * @param taxa A taxa cobrada, em centavos.
+     * @param saldoCliente O saldo do cliente após a operação, em centavos.
+     * @param saldoEmpresa O saldo da empresa após a operação, em centavos.
+     * @return A sequência atribuída à operação.
+     * @throws UncheckedIOException Se não for possível criar um novo segmento.
+     */
+    public synchronized long registrar(TipoOperacao tipo, long idCliente, long idEmpresa, long valor, long taxa,
+                                   long saldoCliente, long saldoEmpresa) {
+        if (segmento.remaining() < TAMANHO_REGISTRO) {
+            rolar();
+        }
+        long seq = ++sequencia;
+        int inicio = segmento.position();
+        segmento.putLong(seq)
+                .putLong(System.currentTimeMillis())
+                .putLong(idCliente)
+                .putLong(idEmpresa)
+                .putLong(valor)
+                .putLong(taxa)
+                .putLong(saldoCliente)
+                .putLong(saldoEmpresa)
+                .putInt(tipo.ordinal());
+
+        crc.reset();
+        crc.update(segmento.slice(inicio, POSICAO_CRC));
+        segmento.putInt((int) crc.getValue());
+
+        if (sincronizador == null) {
+            segmento.force();
+            marcarDuravel(seq);
+        }
+        return seq;
+    }
+
+    /**
+     * Aguarda até que a operação com a sequência informada esteja descarregada em disco.
+     *
+     * @param seq A sequência devolvida por {@link #registrar}.
+     * @throws InterruptedException Se a espera for interrompida.
+     */
+    public void aguardarDurabilidade(long seq) throws InterruptedException {
+        synchronized (travaDuravel) {
+            while (sequenciaDuravel < seq) {
+                travaDuravel.wait();
+            }
+        }
+    }
+
+    /**
+     * Descarrega em disco todos os registros anexados até agora.
+     */
+    public void sincronizar() {
+        MappedByteBuffer atual;
+        long seq;
+        synchronized (this) {
+            atual = segmento;
+            seq = sequencia;
+        }
+        atual.force();
+        marcarDuravel(seq);
+    }
+
+    /**
+     * Obtém a sequência da última operação anexada.
+     *
+     * @return A última sequência, ou {@code 0} se o diário estiver vazio.
+     */
+    public synchronized long getUltimaSequencia() {
+        return sequencia;
+    }
+
+    /**
+     * Grava um instantâneo dos saldos e descarta os segmentos e instantâneos que ele torna desnecessários.
+     *
+     * Os saldos devem refletir exatamente as operações até {@link Saldos#getSequencia()}. O instantâneo e a entrada
+     * do diretório são descarregados em disco antes que qualquer arquivo seja descartado, para que uma queda do
+     * sistema não leve o instantâneo junto com os segmentos necessários para reconstruí-lo.
+     *
+     * @param saldos Os saldos a serem gravados.
+     * @throws IOException Se ocorrer um erro de gravação.
+     */
+    public void gravarInstantaneo(Saldos saldos) throws IOException {
+        sincronizar();
+        saldos.gravar(diretorio.resolve(nome(PREFIXO_INSTANTANEO, saldos.getSequencia(), SUFIXO_INSTANTANEO)));
+
+        for (Path instantaneo : instantaneos(diretorio)) {
+            if (sequenciaDoNome(instantaneo, PREFIXO_INSTANTANEO, SUFIXO_INSTANTANEO) < saldos.getSequencia()) {
+                Files.deleteIfExists(instantaneo);
+            }
+        }
+
+        // Um segmento pode ser descartado quando o seguinte começa depois da sequência do instantâneo
+        List<Path> segmentos = segmentos(diretorio);
+        for (int i = 0; i + 1 < segmentos.size(); i++) {
+            if (primeiraSequencia(segmentos.get(i + 1)) - 1 <= saldos.getSequencia()) {
+                Files.deleteIfExists(segmentos.get(i));
+            }
+        }
+    }
+
+    /**
+     * Encerra a sincronização periódica e descarrega em disco os registros pendentes.
+     */
+    @Override
+    public void close() {
+        if (sincronizador != null) {
+            sincronizador.shutdown();
+        }
+        sincronizar();
+    }
+
+    /**
+     * Reconstrói os saldos a partir do último instantâneo e das operações registradas depois dele.
+     *
+     * O resultado contém os saldos de todas as contas presentes no instantâneo ou alteradas depois dele.
+     *
+     * A leitura termina no primeiro registro incompleto ou corrompido, que corresponde a uma gravação interrompida.
+     *
+     * @param diretorio O diretório do diário.
+     * @return Os saldos reconstruídos.
+     * @throws IOException Se ocorrer um erro de leitura.
+     */
+    public static Saldos recuperar(Path diretorio) throws IOException {
+        Saldos saldos = new Saldos();
+        List<Path> instantaneos = instantaneos(diretorio);
+        if (!instantaneos.isEmpty()) {
+            saldos = Saldos.ler(instantaneos.get(instantaneos.size() - 1));
+        }
+
+        CRC32C crc = new CRC32C();
+        for (Path arquivo : segmentos(diretorio)) {
+            MappedByteBuffer registros = mapear(arquivo, FileChannel.MapMode.READ_ONLY, Files.size(arquivo));
+            for (int posicao = 0; posicao + TAMANHO_REGISTRO <= registros.capacity(); posicao += TAMANHO_REGISTRO) {
+                if (!registroValido(registros, posicao, crc)) {
+                    return saldos;
+                }
+                long seq = registros.getLong(posicao);
+                if (seq <= saldos.getSequencia()) {
+                    continue;
+                }
+                saldos.getClientes().colocar(registros.getLong(posicao + 16), registros.getLong(posicao + 48));
+                saldos.getEmpresas().colocar(registros.getLong(posicao + 24), registros.getLong(posicao + 56));
+                saldos.setSequencia(seq);
+            }
+        }
+        return saldos;
+    }
+
+    /**
+     * Fecha o segmento atual, descarregando-o em disco, e abre o próximo.
+     */
+    private void rolar() {
+        segmento.force();
+        marcarDuravel(sequencia);
+        try {
+            abrirSegmento(sequencia + 1);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Erro ao criar segmento do diário", e);
+        }
+    }
+
+    private void abrirSegmento(long primeiraSequencia) throws IOException {
+        Path arquivo = diretorio.resolve(nome(PREFIXO_SEGMENTO, primeiraSequencia, SUFIXO_SEGMENTO));
+        segmento = mapear(arquivo, FileChannel.MapMode.READ_WRITE, tamanhoSegmento);
+        // Sem a entrada do diretório em disco, os registros descarregados no segmento novo se perderiam em uma queda
+        Arquivos.sincronizarDiretorio(diretorio);
+        sequencia = primeiraSequencia - 1;
+    }
+
+    private void marcarDuravel(long seq) {
+        synchronized (travaDuravel) {
+            if (seq > sequenciaDuravel) {
+                sequenciaDuravel = seq;
+                travaDuravel.notifyAll();
+            }
+        }
+    }
+
+    private void sincronizarAgendado() {
+        try {
+            sincronizar();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Erro ao sincronizar o diário", e);
+        }
+    }
+
+    /**
+     * Verifica se a posição contém um registro gravado por completo.
+     */
+    private static boolean registroValido(MappedByteBuffer registros, int posicao, CRC32C crc) {
+        if (registros.getLong(posicao) == 0) {
+            return false;
+        }
+        crc.reset();
+        crc.update(registros.slice(posicao, POSICAO_CRC));
+        return (int) crc.getValue() == registros.getInt(posicao + POSICAO_CRC);
+    }
+
+    private static MappedByteBuffer mapear(Path arquivo, FileChannel.MapMode modo, long tamanho) throws IOException {
+        StandardOpenOption[] opcoes = modo == FileChannel.MapMode.READ_ONLY
+                ? new StandardOpenOption[]{StandardOpenOption.READ}
+                : new StandardOpenOption[]{StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE};
+        // O mapeamento continua válido depois que o canal é fechado
+        try (FileChannel canal = FileChannel.open(arquivo, opcoes)) {
+            return canal.map(modo, 0, tamanho);
+        }
+    }
+
+    private static List<Path> segmentos(Path diretorio) throws IOException {
+        return listar(diretorio, PREFIXO_SEGMENTO, SUFIXO_SEGMENTO);
+    }
+
+    private static List<Path> instantaneos(Path diretorio) throws IOException {
+        return listar(diretorio, PREFIXO_INSTANTANEO, SUFIXO_INSTANTANEO);
+    }
+
+    /**
+     * Lista os arquivos com o prefixo e o sufixo informados, em ordem crescente de sequência.
+     */
+    private static List<Path> listar(Path diretorio, String prefixo, String sufixo) throws IOException {
+        if (!Files.isDirectory(diretorio)) {
+            return new ArrayList<>();
+        }
+        try (Stream<Path> arquivos = Files.list(diretorio)) {
+            // Os nomes têm a sequência com zeros à esquerda, então a ordem alfabética é a ordem numérica
+            return new ArrayList<>(arquivos
+                    .filter(p -> p.getFileName().toString().startsWith(prefixo)
+                            && p.getFileName().toString().endsWith(sufixo))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private static long primeiraSequencia(Path segmento) {
+        return sequenciaDoNome(segmento, PREFIXO_SEGMENTO, SUFIXO_SEGMENTO);
+    }
+
+    private static long sequenciaDoNome(Path arquivo, String prefixo, String sufixo) {
+        String nome = arquivo.getFileName().toString();
+        return Long.parseLong(nome.substring(prefixo.length(), nome.length() - sufixo.length()));
+    }
+
+    private static String nome(String prefixo, long sequencia, String sufixo) {
+        return String.format("%s%020d%s", prefixo, sequencia, sufixo);
+    }
+}
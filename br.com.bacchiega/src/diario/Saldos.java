@@ -0,0 +1,149 @@
+package diario;
+
+import util.Arquivos;
+import util.MapaLongLong;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Saldos de clientes e empresas, em centavos, correspondentes a uma posição do {@link Diario}.
+ *
+ * É o conteúdo de um instantâneo: todas as operações com sequência até {@link #getSequencia()} já estão refletidas
+ * nos saldos. Também é o resultado de {@link Diario#recuperar(Path)}, que parte do último instantâneo e reaplica as
+ * operações registradas depois dele.
+ */
+public class Saldos {
+
+    /**
+     * Identificação do formato do arquivo de instantâneo.
+     */
+    private static final int MARCA = 0x534E4150;
+
+    private final MapaLongLong clientes;
+    private final MapaLongLong empresas;
+    private long sequencia;
+
+    /**
+     * Construtor que cria um conjunto de saldos vazio, anterior a qualquer operação.
+     */
+    public Saldos() {
+        this(new MapaLongLong(), new MapaLongLong(), 0);
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link Saldos}.
+     *
+     * @param clientes Os saldos dos clientes, por identificador.
+     * @param empresas Os saldos das empresas, por identificador.
+     * @param sequencia A sequência da última operação refletida nos saldos.
+     */
+    public Saldos(MapaLongLong clientes, MapaLongLong empresas, long sequencia) {
+        this.clientes = clientes;
+        this.empresas = empresas;
+        this.sequencia = sequencia;
+    }
+
+    /**
+     * Obtém os saldos dos clientes, por identificador.
+     *
+     * @return Os saldos dos clientes.
+     */
+    public MapaLongLong getClientes() {
+        return clientes;
+    }
+
+    /**
+     * Obtém os saldos das empresas, por identificador.
+     *
+     * @return Os saldos das empresas.
+     */
+    public MapaLongLong getEmpresas() {
+        return empresas;
+    }
+
+    /**
+     * Obtém a sequência da última operação refletida nos saldos.
+     *
+     * @return A sequência da última operação.
+     */
+    public long getSequencia() {
+        return sequencia;
+    }
+
+    /**
+     * Define a sequência da última operação refletida nos saldos.
+     *
+     * @param sequencia A sequência da última operação.
+     */
+    void setSequencia(long sequencia) {
+        this.sequencia = sequencia;
+    }
+
+    /**
+     * Grava os saldos em um arquivo por {@link Arquivos#substituir(Path, Arquivos.Escritor)}, de modo que um
+     * instantâneo interrompido no meio nunca substitui um instantâneo completo e que, ao retornar, o instantâneo já
+     * está em disco.
+     *
+     * @param arquivo O arquivo de destino.
+     * @throws IOException Se ocorrer um erro de gravação.
+     */
+    void gravar(Path arquivo) throws IOException {
+        Arquivos.substituir(arquivo, saida -> {
+            saida.writeInt(MARCA);
+            saida.writeLong(sequencia);
+            gravarMapa(saida, clientes);
+            gravarMapa(saida, empresas);
+        });
+    }
+
+    /**
+     * Lê os saldos gravados por {@link #gravar(Path)}.
+     *
+     * @param arquivo O arquivo de instantâneo.
+     * @return Os saldos lidos.
+     * @throws IOException Se ocorrer um erro de leitura ou o arquivo não for um instantâneo.
+     */
+    static Saldos ler(Path arquivo) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo)))) {
+            if (entrada.readInt() != MARCA) {
+                throw new IOException("Arquivo de instantâneo inválido: " + arquivo);
+            }
+            long sequencia = entrada.readLong();
+            MapaLongLong clientes = lerMapa(entrada);
+            MapaLongLong empresas = lerMapa(entrada);
+            return new Saldos(clientes, empresas, sequencia);
+        }
+    }
+
+    private static void gravarMapa(DataOutputStream saida, MapaLongLong mapa) throws IOException {
+        saida.writeInt(mapa.tamanho());
+        IOException[] erro = new IOException[1];
+        mapa.paraCada((id, saldo) -> {
+            if (erro[0] == null) {
+                try {
+                    saida.writeLong(id);
+                    saida.writeLong(saldo);
+                } catch (IOException e) {
+                    erro[0] = e;
+                }
+            }
+        });
+        if (erro[0] != null) {
+            throw erro[0];
+        }
+    }
+
+    private static MapaLongLong lerMapa(DataInputStream entrada) throws IOException {
+        int tamanho = entrada.readInt();
+        MapaLongLong mapa = new MapaLongLong(tamanho);
+        for (int i = 0; i < tamanho; i++) {
+            mapa.colocar(entrada.readLong(), entrada.readLong());
+        }
+        return mapa;
+    }
+}
@@ -0,0 +1,163 @@
+package financeiro;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache das {@link TabelaTaxas} compiladas, por empresa.
+ *
+ * Guarda, junto da tabela compilada, a versão da empresa, a taxa fixa e a definição de origem. O cache só é
+ * preenchido por {@link #registrar(Long, long, int, String)}, com empresas lidas fora de uma transação na unidade
+ * principal, e uma tabela só substitui a guardada quando vem de uma versão mais nova da empresa; assim, uma cópia
+ * desatualizada ou com alterações ainda não confirmadas não coloca de volta uma tabela que não vale mais. A leitura
+ * de uma tabela já compilada não cria objetos nem adquire travas: a definição é comparada primeiro por referência,
+ * que é o caso comum quando a empresa vem do {@code infra.CacheEmpresa}.
+ *
+ * Quando uma alteração dos dados cadastrais da empresa é confirmada, a tabela é trocada por uma marca com a nova
+ * versão, e só uma leitura dessa versão ou de uma mais nova volta a preenchê-la. Quem guarda apenas o identificador
+ * da empresa, como o {@code transacao.LivroRazao}, passa então a usar a nova tabela.
+ */
+public class CacheTabelasTaxas {
+
+    private static final CacheTabelasTaxas global = new CacheTabelasTaxas();
+
+    /**
+     * Tabela compilada, com a versão da empresa, a taxa fixa e a definição de origem. Uma entrada sem tabela marca a
+     * versão a partir da qual a empresa pode voltar ao cache.
+     */
+    private static final class Entrada {
+        private final long versao;
+        private final int taxa;
+        private final String definicao;
+        private final TabelaTaxas tabela;
+
+        private Entrada(long versao, int taxa, String definicao, TabelaTaxas tabela) {
+            this.versao = versao;
+            this.taxa = taxa;
+            this.definicao = definicao;
+            this.tabela = tabela;
+        }
+
+        private boolean mesmaOrigem(int taxa, String definicao) {
+            return tabela != null && this.taxa == taxa
+                    && (this.definicao == definicao || Objects.equals(this.definicao, definicao));
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Entrada> entradas = new ConcurrentHashMap<>();
+    private final LongAdder compilacoes = new LongAdder();
+
+    /**
+     * Obtém o cache compartilhado pela aplicação.
+     *
+     * @return O cache global de tabelas de taxas.
+     */
+    public static CacheTabelasTaxas global() {
+        return global;
+    }
+
+    /**
+     * Obtém a tabela de taxas da empresa a partir dos dados de uma cópia qualquer da empresa, sem alterar o cache.
+     *
+     * Se a taxa e a definição forem as da tabela em cache, devolve a tabela em cache; caso contrário, compila uma
+     * tabela apenas para quem a pediu.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @param taxa A taxa fixa da empresa, em pontos-base, usada quando não há definição.
+     * @param definicao A definição da tabela de taxas da empresa, ou {@code null} para usar a taxa fixa.
+     * @return A tabela compilada.
+     * @throws IllegalArgumentException Se a definição for inválida.
+     */
+    public TabelaTaxas obter(Long idEmpresa, int taxa, String definicao) {
+        Entrada entrada = entradas.get(idEmpresa);
+        if (entrada != null && entrada.mesmaOrigem(taxa, definicao)) {
+            return entrada.tabela;
+        }
+        return compilar(taxa, definicao);
+    }
+
+    /**
+     * Obtém a tabela de taxas da empresa já em cache, sem compilá-la.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @return A tabela compilada, ou {@code null} se ela não estiver em cache.
+     */
+    public TabelaTaxas obter(Long idEmpresa) {
+        Entrada entrada = entradas.get(idEmpresa);
+        return entrada == null ? null : entrada.tabela;
+    }
+
+    /**
+     * Guarda a tabela de taxas de uma empresa lida fora de uma transação na unidade principal, a menos que o cache
+     * já tenha uma versão mais nova da empresa.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @param versao A versão da empresa lida.
+     * @param taxa A taxa fixa da empresa, em pontos-base, usada quando não há definição.
+     * @param definicao A definição da tabela de taxas da empresa, ou {@code null} para usar a taxa fixa.
+     * @return A tabela compilada da empresa lida.
+     * @throws IllegalArgumentException Se a definição for inválida.
+     */
+    public TabelaTaxas registrar(Long idEmpresa, long versao, int taxa, String definicao) {
+        Entrada atual = entradas.get(idEmpresa);
+        if (atual != null && atual.mesmaOrigem(taxa, definicao) && atual.versao >= versao) {
+            return atual.tabela;
+        }
+        TabelaTaxas tabela = compilar(taxa, definicao);
+        Entrada nova = new Entrada(versao, taxa, definicao, tabela);
+        entradas.compute(idEmpresa, (id, existente) -> existente == null || existente.versao < versao
+                || (existente.tabela == null && existente.versao == versao) ? nova : existente);
+        return tabela;
+    }
+
+    /**
+     * Compila uma tabela de taxas sem guardá-la em cache.
+     *
+     * @param taxa A taxa fixa, em pontos-base, usada quando não há definição.
+     * @param definicao A definição da tabela de taxas, ou {@code null} para usar a taxa fixa.
+     * @return A tabela compilada.
+     * @throws IllegalArgumentException Se a definição for inválida.
+     */
+    public TabelaTaxas compilar(int taxa, String definicao) {
+        compilacoes.increment();
+        return definicao == null ? TabelaTaxas.fixa(taxa) : TabelaTaxas.compilar(definicao);
+    }
+
+    /**
+     * Remove a tabela da empresa do cache, depois que uma alteração dos seus dados cadastrais é confirmada.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @param versao A versão da empresa gravada pela alteração; só uma leitura dessa versão ou de uma mais nova volta
+     *               a preencher o cache.
+     */
+    public void invalidar(Long idEmpresa, long versao) {
+        Entrada marca = new Entrada(versao, 0, null, null);
+        entradas.merge(idEmpresa, marca, (existente, nova) -> existente.versao > versao ? existente : nova);
+    }
+
+    /**
+     * Remove todas as tabelas do cache.
+     */
+    public void limpar() {
+        entradas.clear();
+    }
+
+    /**
+     * Obtém a quantidade de tabelas em cache.
+     *
+     * @return A quantidade de tabelas, incluindo as marcas de empresas alteradas.
+     */
+    public int getTamanho() {
+        return entradas.size();
+    }
+
+    /**
+     * Obtém a quantidade de compilações feitas.
+     *
+     * @return A quantidade de compilações.
+     */
+    public long getCompilacoes() {
+        return compilacoes.sum();
+    }
+}
@@ -0,0 +1,108 @@
+package financeiro;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Operações sobre valores monetários representados como centavos em um {@code long}.
+ *
+ * Os saldos e valores do sistema são guardados em centavos e as taxas em pontos-base (1 ponto-base =
+ * 0,01%, logo 10.000 pontos-base = 100%). Todos os métodos de cálculo trabalham apenas com tipos
+ * primitivos, não criam objetos e lançam {@link ArithmeticException} em caso de estouro, em vez de
+ * perder precisão silenciosamente como acontece com {@code double}.
+ */
+public final class Dinheiro {
+
+    /**
+     * Quantidade de centavos em um real.
+     */
+    public static final long CENTAVOS_POR_REAL = 100;
+
+    /**
+     * Quantidade de pontos-base que corresponde a 100%.
+     */
+    public static final int PONTOS_BASE_INTEIRO = 10_000;
+
+    private Dinheiro() {
+    }
+
+    /**
+     * Soma dois valores em centavos.
+     *
+     * @param a O primeiro valor.
+     * @param b O segundo valor.
+     * @return A soma dos valores.
+     * @throws ArithmeticException Se o resultado estourar a capacidade de um {@code long}.
+     */
+    public static long somar(long a, long b) {
+        return Math.addExact(a, b);
+    }
+
+    /**
+     * Subtrai dois valores em centavos.
+     *
+     * @param a O valor do qual será subtraído.
+     * @param b O valor a subtrair.
+     * @return A diferença entre os valores.
+     * @throws ArithmeticException Se o resultado estourar a capacidade de um {@code long}.
+     */
+    public static long subtrair(long a, long b) {
+        return Math.subtractExact(a, b);
+    }
+
+    /**
+     * Calcula a taxa sobre um valor, arredondando meio centavo para longe do zero.
+     *
+     * @param valor O valor em centavos.
+     * @param pontosBase A taxa em pontos-base.
+     * @return O valor da taxa em centavos.
+     * @throws ArithmeticException Se o cálculo estourar a capacidade de um {@code long}.
+     */
+    public static long taxa(long valor, int pontosBase) {
+        long produto = Math.multiplyExact(valor, (long) pontosBase);
+        long meio = PONTOS_BASE_INTEIRO / 2;
+        return produto >= 0
+                ? (produto + meio) / PONTOS_BASE_INTEIRO
+                : (produto - meio) / PONTOS_BASE_INTEIRO;
+    }
+
+    /**
+     * Converte um valor em reais escrito como texto (ex: "1234.56" ou "1234,56") para centavos.
+     *
+     * @param reais O valor em reais.
+     * @return O valor em centavos.
+     * @throws NumberFormatException Se o texto não for um número válido.
+     * @throws ArithmeticException Se o valor tiver mais de duas casas decimais ou não couber em um {@code long}.
+     */
+    public static long centavos(String reais) {
+        return new BigDecimal(reais.trim().replace(',', '.'))
+                .movePointRight(2)
+                .setScale(0, RoundingMode.UNNECESSARY)
+                .longValueExact();
+    }
+
+    /**
+     * Converte uma taxa expressa como fração (ex: 0.015 para 1,5%) para pontos-base.
+     *
+     * @param fracao A taxa como fração.
+     * @return A taxa em pontos-base.
+     * @throws NumberFormatException Se o texto não for um número válido.
+     * @throws ArithmeticException Se a taxa tiver precisão maior que um ponto-base.
+     */
+    public static int pontosBase(String fracao) {
+        return new BigDecimal(fracao.trim().replace(',', '.'))
+                .movePointRight(4)
+                .setScale(0, RoundingMode.UNNECESSARY)
+                .intValueExact();
+    }
+
+    /**
+     * Formata um valor em centavos como reais, com duas casas decimais (ex: "-1234.56").
+     *
+     * @param centavos O valor em centavos.
+     * @return O valor formatado.
+     */
+    public static String formatar(long centavos) {
+        return BigDecimal.valueOf(centavos, 2).toPlainString();
+    }
+}
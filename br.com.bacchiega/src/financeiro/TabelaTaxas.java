@@ -0,0 +1,139 @@
+package financeiro;
+
+import java.util.Arrays;
+
+/**
+ * Tabela de taxas por faixa de valor, compilada em vetores primitivos.
+ *
+ * Cada faixa começa em um valor, em centavos, e tem a sua taxa em pontos-base, aplicada sobre o valor inteiro da
+ * operação. A taxa calculada é depois limitada a uma taxa mínima e a uma taxa máxima por operação, em centavos, e
+ * nunca passa do próprio valor da operação: uma taxa mínima maior que o valor cobra o valor inteiro, de modo que o
+ * valor líquido da operação não fica negativo.
+ *
+ * A definição é um texto com itens separados por ponto e vírgula:
+ * - {@code <a partir de>=<pontos-base>}: uma faixa; a primeira deve começar em 0 e as demais em ordem crescente.
+ * - {@code min=<centavos>}: a taxa mínima, opcional.
+ * - {@code max=<centavos>}: a taxa máxima, opcional.
+ *
+ * Por exemplo, {@code 0=150;100000=120;1000000=90;min=200;max=50000} cobra 1,5% até R$ 999,99, 1,2% de R$ 1.000,00
+ * até R$ 9.999,99 e 0,9% a partir de R$ 10.000,00, com taxa mínima de R$ 2,00 e máxima de R$ 500,00.
+ *
+ * Os inícios das faixas ficam em um vetor completado até uma potência de dois, de modo que a faixa de um valor é
+ * encontrada por uma busca binária de passos fixos, sem desvios dependentes dos dados além da comparação. O cálculo
+ * não cria objetos. As instâncias são imutáveis e podem ser compartilhadas entre threads.
+ */
+public final class TabelaTaxas {
+
+    private final long[] inicios;
+    private final int[] pontosBase;
+    private final long minimo;
+    private final long maximo;
+    private final String definicao;
+
+    private TabelaTaxas(long[] inicios, int[] pontosBase, long minimo, long maximo, String definicao) {
+        this.inicios = inicios;
+        this.pontosBase = pontosBase;
+        this.minimo = minimo;
+        this.maximo = maximo;
+        this.definicao = definicao;
+    }
+
+    /**
+     * Cria uma tabela com uma única faixa e sem limites, equivalente a {@link Dinheiro#taxa(long, int)}.
+     *
+     * @param pontosBase A taxa em pontos-base.
+     * @return A tabela.
+     */
+    public static TabelaTaxas fixa(int pontosBase) {
+        return new TabelaTaxas(new long[] {Long.MIN_VALUE}, new int[] {pontosBase}, Long.MIN_VALUE, Long.MAX_VALUE,
+                "0=" + pontosBase);
+    }
+
+    /**
+     * Compila a definição de uma tabela de taxas.
+     *
+     * @param definicao A definição, no formato descrito em {@link TabelaTaxas}.
+     * @return A tabela compilada.
+     * @throws IllegalArgumentException Se a definição for inválida.
+     */
+    public static TabelaTaxas compilar(String definicao) {
+        if (definicao == null || definicao.isBlank()) {
+            throw new IllegalArgumentException("Tabela de taxas inválida");
+        }
+        String[] itens = definicao.split(";");
+        long[] inicios = new long[itens.length];
+        int[] taxas = new int[itens.length];
+        int faixas = 0;
+        long minimo = Long.MIN_VALUE;
+        long maximo = Long.MAX_VALUE;
+        try {
+            for (String item : itens) {
+                int igual = item.indexOf('=');
+                if (igual < 0) {
+                    throw new IllegalArgumentException("Tabela de taxas inválida: " + item);
+                }
+                String chave = item.substring(0, igual).trim();
+                String valor = item.substring(igual + 1).trim();
+                if (chave.equals("min")) {
+                    minimo = Long.parseLong(valor);
+                } else if (chave.equals("max")) {
+                    maximo = Long.parseLong(valor);
+                } else {
+                    inicios[faixas] = Long.parseLong(chave);
+                    taxas[faixas] = Integer.parseInt(valor);
+                    faixas++;
+                }
+            }
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Tabela de taxas inválida: " + definicao, e);
+        }
+        if (faixas == 0 || inicios[0] != 0 || minimo > maximo) {
+            throw new IllegalArgumentException("Tabela de taxas inválida: " + definicao);
+        }
+        for (int i = 1; i < faixas; i++) {
+            if (inicios[i] <= inicios[i - 1]) {
+                throw new IllegalArgumentException("Faixas fora de ordem: " + definicao);
+            }
+        }
+
+        // Completa até uma potência de dois repetindo a última faixa, que nunca é alcançada pelo início máximo
+        int tamanho = Integer.highestOneBit(faixas) == faixas ? faixas : Integer.highestOneBit(faixas) << 1;
+        long[] compilados = Arrays.copyOf(inicios, tamanho);
+        int[] compiladas = Arrays.copyOf(taxas, tamanho);
+        Arrays.fill(compilados, faixas, tamanho, Long.MAX_VALUE);
+        Arrays.fill(compiladas, faixas, tamanho, taxas[faixas - 1]);
+        // A primeira faixa também cobre valores negativos
+        compilados[0] = Long.MIN_VALUE;
+        return new TabelaTaxas(compilados, compiladas, minimo, maximo, definicao);
+    }
+
+    /**
+     * Calcula a taxa sobre o valor de uma operação.
+     *
+     * @param valor O valor da operação, em centavos.
+     * @return A taxa em centavos, já limitada às taxas mínima e máxima e ao valor da operação.
+     * @throws ArithmeticException Se o cálculo estourar a capacidade de um {@code long}.
+     */
+    public long calcular(long valor) {
+        long[] inicios = this.inicios;
+        int faixa = 0;
+        for (int passo = inicios.length >>> 1; passo > 0; passo >>>= 1) {
+            faixa = inicios[faixa + passo] <= valor ? faixa + passo : faixa;
+        }
+        return Math.min(Math.min(Math.max(Dinheiro.taxa(valor, pontosBase[faixa]), minimo), maximo), valor);
+    }
+
+    /**
+     * Obtém a definição da qual a tabela foi compilada.
+     *
+     * @return A definição.
+     */
+    public String getDefinicao() {
+        return definicao;
+    }
+
+    @Override
+    public String toString() {
+        return definicao;
+    }
+}
@@ -0,0 +1,137 @@
+package idempotencia;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Resultados recentes de operações com chave de idempotência, mantidos em memória na frente da tabela
+ * {@link ChaveIdempotencia}.
+ *
+ * Repetições feitas logo após a operação original, como as de quem reenvia um pedido por tempo esgotado, são
+ * respondidas sem acessar o banco de dados. O cache tem tamanho máximo, descarta primeiro as entradas mais antigas e
+ * considera vencidas as entradas mais antigas que o tempo de vida configurado; depois disso, a tabela continua
+ * garantindo a idempotência.
+ */
+public class CacheIdempotencia {
+
+    /**
+     * Quantidade máxima padrão de chaves em memória.
+     */
+    public static final int TAMANHO_PADRAO = 100_000;
+
+    /**
+     * Tempo de vida padrão das entradas, em milissegundos.
+     */
+    public static final long VALIDADE_PADRAO_MS = 10 * 60_000;
+
+    private static final CacheIdempotencia global = new CacheIdempotencia(TAMANHO_PADRAO, VALIDADE_PADRAO_MS);
+
+    /**
+     * Entrada do cache, com o resultado e o instante em que deixa de ser válida.
+     */
+    private static final class Entrada {
+        private final boolean aplicada;
+        private final long venceEm;
+
+        private Entrada(boolean aplicada, long venceEm) {
+            this.aplicada = aplicada;
+            this.venceEm = venceEm;
+        }
+    }
+
+    private final int tamanhoMaximo;
+    private final long validadeNanos;
+    private final Map<String, Entrada> entradas;
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link CacheIdempotencia}.
+     *
+     * @param tamanhoMaximo A quantidade máxima de chaves mantidas em memória.
+     * @param validadeMs O tempo de vida das entradas, em milissegundos.
+     * @throws IllegalArgumentException Se o tamanho ou a validade não forem positivos.
+     */
+    public CacheIdempotencia(int tamanhoMaximo, long validadeMs) {
+        if (tamanhoMaximo <= 0 || validadeMs <= 0) {
+            throw new IllegalArgumentException("Configuração de cache inválida");
+        }
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.validadeNanos = validadeMs * 1_000_000;
+
+        // Ordem de inserção: a primeira entrada é sempre a mais antiga e, portanto, a primeira a vencer
+        this.entradas = new LinkedHashMap<String, Entrada>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entrada> maisAntiga) {
+                return size() > CacheIdempotencia.this.tamanhoMaximo;
+            }
+        };
+    }
+
+    /**
+     * Obtém o cache compartilhado pela aplicação.
+     *
+     * @return O cache global de chaves de idempotência.
+     */
+    public static CacheIdempotencia global() {
+        return global;
+    }
+
+    /**
+     * Obtém o resultado registrado para a chave.
+     *
+     * @param chave A chave de idempotência.
+     * @return {@code true} ou {@code false} conforme o resultado registrado, ou {@code null} se a chave não estiver em
+     *         memória ou estiver vencida.
+     */
+    public Boolean obter(String chave) {
+        long agora = System.nanoTime();
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(chave);
+            if (entrada != null && entrada.venceEm - agora > 0) {
+                acertos.increment();
+                return entrada.aplicada;
+            }
+        }
+        faltas.increment();
+        return null;
+    }
+
+    /**
+     * Registra o resultado da operação com a chave informada, descartando as entradas já vencidas.
+     *
+     * @param chave A chave de idempotência.
+     * @param aplicada Indica se a operação foi aplicada.
+     */
+    public void registrar(String chave, boolean aplicada) {
+        long agora = System.nanoTime();
+        synchronized (entradas) {
+            entradas.put(chave, new Entrada(aplicada, agora + validadeNanos));
+            Iterator<Entrada> iterador = entradas.values().iterator();
+            while (iterador.hasNext() && iterador.next().venceEm - agora <= 0) {
+                iterador.remove();
+            }
+        }
+    }
+
+    /**
+     * Obtém a quantidade de consultas atendidas pelo cache.
+     *
+     * @return A quantidade de acertos.
+     */
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    /**
+     * Obtém a quantidade de consultas que não encontraram a chave em memória.
+     *
+     * @return A quantidade de faltas.
+     */
+    public long getFaltas() {
+        return faltas.sum();
+    }
+}
@@ -0,0 +1,90 @@
+package idempotencia;
+
+import javax.persistence.*;
+
+/**
+ * Resultado de uma operação identificada por uma chave de idempotência.
+ *
+ * Esta classe é uma entidade JPA que mapeia a tabela 'ChaveIdempotencia' no banco de dados. O registro é incluído na
+ * mesma transação que altera os saldos, de modo que uma operação confirmada sempre tem a sua chave gravada e uma
+ * repetição da mesma chave é respondida com o resultado original, sem executar a operação de novo.
+ *
+ * Atributos:
+ * - chave: Chave de idempotência informada por quem pediu a operação.
+ * - aplicada: Indica se a operação foi aplicada ou recusada.
+ * - instante: Instante em que a operação foi executada, em milissegundos desde a época.
+ */
+@Entity
+@Table(indexes = @Index(name = "ix_idempotencia_instante", columnList = "instante"))
+public class ChaveIdempotencia {
+
+    /**
+     * Tamanho máximo da chave.
+     */
+    public static final int TAMANHO_MAXIMO = 64;
+
+    /**
+     * Chave de idempotência, que é a chave primária da entidade.
+     */
+    @Id
+    @Column(length = TAMANHO_MAXIMO)
+    private String chave;
+
+    /**
+     * Indica se a operação foi aplicada ({@code true}) ou recusada ({@code false}).
+     */
+    @Column(nullable = false)
+    private boolean aplicada;
+
+    /**
+     * Instante em que a operação foi executada, em milissegundos desde a época.
+     */
+    @Column(nullable = false)
+    private long instante;
+
+    /**
+     * Construtor padrão para a criação de instâncias da entidade {@link ChaveIdempotencia}.
+     */
+    public ChaveIdempotencia() {
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da entidade {@link ChaveIdempotencia}.
+     *
+     * @param chave A chave de idempotência.
+     * @param aplicada Indica se a operação foi aplicada.
+     * @param instante O instante da operação, em milissegundos desde a época.
+     */
+    public ChaveIdempotencia(String chave, boolean aplicada, long instante) {
+        this.chave = chave;
+        this.aplicada = aplicada;
+        this.instante = instante;
+    }
+
+    /**
+     * Obtém a chave de idempotência.
+     *
+     * @return A chave de idempotência.
+     */
+    public String getChave() {
+        return chave;
+    }
+
+    /**
+     * Indica se a operação foi aplicada.
+     *
+     * @return {@code true} se a operação foi aplicada; {@code false} se foi recusada.
+     */
+    public boolean isAplicada() {
+        return aplicada;
+    }
+
+    /**
+     * Obtém o instante em que a operação foi executada.
+     *
+     * @return O instante, em milissegundos desde a época.
+     */
+    public long getInstante() {
+        return instante;
+    }
+}
@@ -0,0 +1,85 @@
+package idempotencia;
+
+import infra.Sessao;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Remoção periódica das {@link ChaveIdempotencia} antigas, para que a tabela não cresça sem limite.
+ *
+ * Uma chave só precisa ser guardada enquanto quem pediu a operação ainda pode reenviá-la; depois disso, uma repetição
+ * volta a ser executada. O prazo de retenção deve, portanto, ficar bem além do maior prazo de reenvio dos clientes.
+ */
+public final class LimpezaIdempotencia {
+
+    /**
+     * Prazo padrão de retenção das chaves, em milissegundos.
+     */
+    public static final long RETENCAO_PADRAO_MS = 24 * 60 * 60_000L;
+
+    /**
+     * Intervalo padrão entre remoções, em milissegundos.
+     */
+    public static final long INTERVALO_PADRAO_MS = 60 * 60_000L;
+
+    private static final Logger logger = Logger.getLogger(LimpezaIdempotencia.class.getName());
+
+    private static ScheduledExecutorService agendador;
+
+    private LimpezaIdempotencia() {
+    }
+
+    /**
+     * Inicia a remoção periódica das chaves mais antigas que o prazo de retenção. Não tem efeito se já foi iniciada.
+     *
+     * @param retencaoMs O prazo de retenção das chaves, em milissegundos.
+     * @param intervaloMs O intervalo entre remoções, em milissegundos.
+     * @throws IllegalArgumentException Se o prazo ou o intervalo não forem positivos.
+     */
+    public static synchronized void iniciar(long retencaoMs, long intervaloMs) {
+        if (retencaoMs <= 0 || intervaloMs <= 0) {
+            throw new IllegalArgumentException("Configuração de limpeza inválida");
+        }
+        if (agendador != null) {
+            return;
+        }
+        agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "idempotencia-limpeza");
+            t.setDaemon(true);
+            return t;
+        });
+        agendador.scheduleWithFixedDelay(() -> removerAgendado(retencaoMs), intervaloMs, intervaloMs,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Remove, em uma transação própria, as chaves mais antigas que o prazo de retenção.
+     *
+     * @param retencaoMs O prazo de retenção das chaves, em milissegundos.
+     * @return A quantidade de chaves removidas.
+     */
+    public static int remover(long retencaoMs) {
+        try (Sessao sessao = Sessao.abrir()) {
+            sessao.abrirTransacao();
+            int removidas = sessao.idempotencia().removerAnteriores(System.currentTimeMillis() - retencaoMs);
+            sessao.confirmar();
+            return removidas;
+        }
+    }
+
+    /**
+     * Executa a remoção periódica, registrando falhas sem interromper o agendamento.
+     */
+    private static void removerAgendado(long retencaoMs) {
+        try {
+            int removidas = remover(retencaoMs);
+            logger.fine(() -> "Chaves de idempotência removidas: " + removidas);
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Erro ao remover as chaves de idempotência antigas", e);
+        }
+    }
+}
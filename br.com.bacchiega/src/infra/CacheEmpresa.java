@@ -0,0 +1,212 @@
+package infra;
+
+import financeiro.CacheTabelasTaxas;
+import usuarios.Empresa;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Cache de leitura das empresas, na frente de {@link DAOEmpresa#obterPorID(Object)}.
+ *
+ * Os dados cadastrais das empresas (nome, CNPJ e taxa) mudam raramente, por isso as leituras que não dependem do
+ * saldo atual podem ser atendidas a partir de uma cópia em memória. O cache tem tamanho máximo, descarta a entrada
+ * usada há mais tempo quando fica cheio e considera vencidas as entradas mais antigas que o tempo de vida
+ * configurado. A {@link InvalidacaoCacheEmpresa} invalida a entrada da empresa quando uma alteração dos seus dados
+ * cadastrais é confirmada; uma carga em andamento nesse momento é devolvida a quem a pediu, mas não entra no cache.
+ * Também não entra no cache a empresa lida dentro de uma transação, que pode conter alterações ainda não confirmadas.
+ *
+ * As instâncias devolvidas são cópias desligadas do contexto de persistência, compartilhadas entre quem lê o
+ * cache; elas não devem ser alteradas, e o saldo delas pode estar desatualizado.
+ */
+public class CacheEmpresa {
+
+    /**
+     * Quantidade máxima padrão de empresas em cache.
+     */
+    public static final int TAMANHO_PADRAO = 10_000;
+
+    /**
+     * Tempo de vida padrão das entradas, em milissegundos.
+     */
+    public static final long VALIDADE_PADRAO_MS = 60_000;
+
+    private static final CacheEmpresa global = new CacheEmpresa(TAMANHO_PADRAO, VALIDADE_PADRAO_MS);
+
+    /**
+     * Entrada do cache, com o instante em que deixa de ser válida.
+     */
+    private static final class Entrada {
+        private final Empresa empresa;
+        private final long venceEm;
+
+        private Entrada(Empresa empresa, long venceEm) {
+            this.empresa = empresa;
+            this.venceEm = venceEm;
+        }
+    }
+
+    private final int tamanhoMaximo;
+    private final long validadeNanos;
+    private final Map<Object, Entrada> entradas;
+
+    /**
+     * Quantidade de invalidações, incluindo as de empresas fora do cache, protegida pela trava de {@link #entradas}.
+     */
+    private long geracao;
+
+    private final LongAdder acertos = new LongAdder();
+    private final LongAdder faltas = new LongAdder();
+    private final LongAdder descartes = new LongAdder();
+    private final LongAdder invalidacoes = new LongAdder();
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link CacheEmpresa}.
+     *
+     * @param tamanhoMaximo A quantidade máxima de empresas mantidas em cache.
+     * @param validadeMs O tempo de vida das entradas, em milissegundos.
+     * @throws IllegalArgumentException Se o tamanho ou a validade não forem positivos.
+     */
+    public CacheEmpresa(int tamanhoMaximo, long validadeMs) {
+        if (tamanhoMaximo <= 0 || validadeMs <= 0) {
+            throw new IllegalArgumentException("Configuração de cache inválida");
+        }
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.validadeNanos = validadeMs * 1_000_000;
+
+        // Ordem de acesso: a primeira entrada é sempre a usada há mais tempo
+        this.entradas = new LinkedHashMap<Object, Entrada>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Object, Entrada> maisAntiga) {
+                if (size() > CacheEmpresa.this.tamanhoMaximo) {
+                    descartes.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Obtém o cache compartilhado pela aplicação.
+     *
+     * @return O cache global de empresas.
+     */
+    public static CacheEmpresa global() {
+        return global;
+    }
+
+    /**
+     * Obtém a empresa em cache ou, se ela não estiver presente ou estiver vencida, carrega-a pelo DAO informado, na
+     * unidade de persistência principal.
+     *
+     * @param id O identificador da empresa.
+     * @param dao O DAO usado para carregar a empresa em caso de falta.
+     * @return Uma cópia da empresa, ou {@code null} se ela não existir.
+     */
+    public Empresa obter(Object id, DAOEmpresa dao) {
+        long agora = System.nanoTime();
+        long geracaoCarga;
+        synchronized (entradas) {
+            Entrada entrada = entradas.get(id);
+            if (entrada != null && entrada.venceEm - agora > 0) {
+                acertos.increment();
+                return entrada.empresa;
+            }
+            geracaoCarga = geracao;
+        }
+
+        faltas.increment();
+        // Da réplica, uma alteração recém-confirmada poderia voltar ao cache logo depois de invalidada
+        Empresa empresa = dao.obterPorIDNaPrimaria(id);
+        if (empresa == null) {
+            return null;
+        }
+        Empresa copia = new Empresa(empresa);
+        if (dao.gerenciador().getTransaction().isActive()) {
+            return copia;
+        }
+        synchronized (entradas) {
+            // Uma invalidação durante a carga pode ter sido de uma alteração que a carga não viu
+            if (geracao == geracaoCarga) {
+                entradas.put(id, new Entrada(copia, agora + validadeNanos));
+            }
+        }
+        // A cópia foi lida fora de uma transação na unidade principal e pode preencher o cache de tabelas de taxas
+        CacheTabelasTaxas.global().registrar(copia.getId(), copia.getVersao(), copia.getTaxa(),
+                copia.getTabelaTaxas());
+        return copia;
+    }
+
+    /**
+     * Remove a empresa do cache, forçando a próxima leitura a buscá-la no banco de dados.
+     *
+     * @param id O identificador da empresa.
+     */
+    public void invalidar(Object id) {
+        synchronized (entradas) {
+            geracao++;
+            if (entradas.remove(id) != null) {
+                invalidacoes.increment();
+            }
+        }
+    }
+
+    /**
+     * Remove todas as empresas do cache.
+     */
+    public void limpar() {
+        synchronized (entradas) {
+            geracao++;
+            entradas.clear();
+        }
+    }
+
+    /**
+     * Obtém a quantidade de empresas em cache.
+     *
+     * @return A quantidade de entradas, incluindo as vencidas ainda não removidas.
+     */
+    public int getTamanho() {
+        synchronized (entradas) {
+            return entradas.size();
+        }
+    }
+
+    /**
+     * Obtém a quantidade de leituras atendidas pelo cache.
+     *
+     * @return A quantidade de acertos.
+     */
+    public long getAcertos() {
+        return acertos.sum();
+    }
+
+    /**
+     * Obtém a quantidade de leituras que precisaram consultar o banco de dados.
+     *
+     * @return A quantidade de faltas.
+     */
+    public long getFaltas() {
+        return faltas.sum();
+    }
+
+    /**
+     * Obtém a quantidade de entradas descartadas por falta de espaço.
+     *
+     * @return A quantidade de descartes.
+     */
+    public long getDescartes() {
+        return descartes.sum();
+    }
+
+    /**
+     * Obtém a quantidade de entradas removidas por alteração da empresa.
+     *
+     * @return A quantidade de invalidações.
+     */
+    public long getInvalidacoes() {
+        return invalidacoes.sum();
+    }
+}
@@ -0,0 +1,38 @@
+package infra;
+
+import javax.persistence.AttributeConverter;
+import javax.persistence.Converter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Conversor JPA entre valores em centavos ({@code long}) e colunas decimais com duas casas.
+ *
+ * Permite que as entidades trabalhem com centavos enquanto o banco de dados continua guardando os valores
+ * em reais, em uma coluna {@code DECIMAL} exata.
+ */
+@Converter
+public class ConversorCentavos implements AttributeConverter<Long, BigDecimal> {
+
+    /**
+     * Converte o valor em centavos para o valor decimal gravado na coluna.
+     *
+     * @param centavos O valor em centavos.
+     * @return O valor em reais, com duas casas decimais.
+     */
+    @Override
+    public BigDecimal convertToDatabaseColumn(Long centavos) {
+        return centavos == null ? null : BigDecimal.valueOf(centavos, 2);
+    }
+
+    /**
+     * Converte o valor decimal lido da coluna para centavos.
+     *
+     * @param reais O valor em reais.
+     * @return O valor em centavos.
+     */
+    @Override
+    public Long convertToEntityAttribute(BigDecimal reais) {
+        return reais == null ? null : reais.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+}
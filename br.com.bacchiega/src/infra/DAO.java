@@ -1,34 +1,86 @@
 package infra;
 
+import metricas.Histograma;
+import metricas.Metricas;
+import util.FiltroBloom;
+import util.ManipuladorAssincrono;
+import util.MapaLongLong;
+
 import javax.persistence.EntityManager;
 import javax.persistence.EntityManagerFactory;
-import javax.persistence.Persistence;
+import javax.persistence.Query;
 import javax.persistence.TypedQuery;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.List;
-import java.util.logging.FileHandler;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import java.util.logging.Logger;
 import java.util.logging.Level;
-import java.util.logging.SimpleFormatter;
 
 
 /**
  * Classe DAO genérica para operações básicas de persistência usando JPA.
  *
+ * As leituras ({@link #obterPorID(Object)}, {@link #obterPorIDs(Collection)}, {@link #obterTodos(int, int)},
+ * {@link #percorrerTodos(int)} e as consultas das subclasses feitas por {@link #gerenciadorLeitura()}) podem ser
+ * atendidas por uma segunda unidade de persistência, somente leitura, apontada para uma réplica do banco de dados.
+ * Ela é ativada pela propriedade de sistema {@code dao.leitura=true}; sem ela, tudo usa a unidade principal. Dentro
+ * de uma transação, as leituras sempre vão para a unidade principal, para que as entidades lidas possam ser
+ * alteradas e para que a transação veja as próprias alterações. Fora de uma transação, {@link #lerDaPrimaria()}
+ * mantém as leituras na unidade principal quando o atraso da réplica não é aceitável.
+ *
  * @param <E> O tipo da entidade que será manipulada.
  */
 
 public class DAO<E> { // recebe um tipo genérico
 
     /**
-     * Fabrica de gerenciadores de entidades estática, compartilhada entre todas as instâncias da classe DAO.
+     * Quantidade padrão de entidades lidas por consulta em {@link #percorrerTodos()}.
      */
-    private static EntityManagerFactory emf;
+    public static final int TAMANHO_PAGINA_PADRAO = 1000;
 
     /**
      * Gerenciador de entidades, responsável pelas operações de persistência.
      */
     private EntityManager em;
 
+    /**
+     * Indica se o gerenciador de entidades pertence a uma {@link Sessao}, caso em que ele é devolvido ao pool
+     * pela própria sessão e não deve ser fechado por este DAO.
+     */
+    private final boolean gerenciadoPorSessao;
+
+    /**
+     * Sessão que fornece os gerenciadores de entidades, ou {@code null} quando o DAO tem os seus próprios.
+     */
+    private final Sessao sessao;
+
+    /**
+     * DAO dono dos gerenciadores de entidades, que pode ser o próprio DAO ou aquele com quem ele os compartilha.
+     */
+    private final DAO<?> origem;
+
+    /**
+     * Gerenciador de entidades da unidade de leitura, criado no primeiro uso. Só é usado no DAO de origem.
+     */
+    private EntityManager emLeitura;
+
+    /**
+     * Indica se as leituras devem ir para a unidade principal mesmo fora de uma transação. Só é usado no DAO de
+     * origem.
+     */
+    private boolean leituraNaPrimaria;
+
     /**
      * Classe da entidade que será manipulada por esta instância do DAO.
      */
@@ -39,26 +91,28 @@ public class DAO<E> { // recebe um tipo genérico
      */
     private static final Logger logger = Logger.getLogger(DAO.class.getName());
 
+    private static final Histograma tempoIncluir = Metricas.histograma("dao.incluir");
+    private static final Histograma tempoModificar = Metricas.histograma("dao.modificar");
+    private static final Histograma tempoObterPorID = Metricas.histograma("dao.obterPorID");
+
     /**
-     * Bloco estático responsável pela criação do EntityManagerFactory.
+     * Bloco estático responsável pela configuração do log.
      *
-     * 1. O bloco tenta criar o `EntityManagerFactory` usando o nome de persistência definido.
-     * 2. Caso ocorra uma exceção, o erro é capturado e registrado usando o `Logger` no nível `SEVERE`.
-     * 3. Adicionalmente, o `Logger` é configurado para gravar as mensagens em um arquivo de log (`dao.log`).
+     * O `Logger` é configurado para gravar as mensagens em um arquivo de log (`dao.log`). A gravação é assíncrona,
+     * por um {@link ManipuladorAssincrono}; com a propriedade de sistema `dao.log.politica=BLOQUEAR`, quem registra
+     * aguarda quando a fila está cheia, em vez de descartar o registro.
      */
     static {
         try{
-            // Configurando o logger para gravar em um arquivo dao.log
-            FileHandler fileHandler = new FileHandler("dao.log", true);
-            fileHandler.setFormatter(new SimpleFormatter()); // Formato simples para o log
-            logger.addHandler(fileHandler);
-
-            // Tentativa de criação do EntityManagerFactory
-            emf = Persistence.createEntityManagerFactory("br.com.bacchiega");
+            // Configurando o logger para gravar em um arquivo dao.log, fora da thread de quem registra
+            ManipuladorAssincrono.Politica politica = ManipuladorAssincrono.Politica.valueOf(
+                    System.getProperty("dao.log.politica", ManipuladorAssincrono.Politica.DESCARTAR.name()));
+            logger.addHandler(ManipuladorAssincrono.arquivo(Paths.get("dao.log"),
+                    ManipuladorAssincrono.CAPACIDADE_PADRAO, politica));
         } catch (Exception e) {
 
-            // Logando o erro no nível SEVERE caso a criação do EntityManagerFactory falhe
-            logger.log(Level.SEVERE, "Erro ao criar EntityManagerFactory", e);
+            // Logando o erro no nível SEVERE caso o arquivo de log não possa ser aberto
+            logger.log(Level.SEVERE, "Erro ao configurar o log", e);
         }
     }
 
@@ -76,7 +130,44 @@ public class DAO<E> { // recebe um tipo genérico
      */
     public DAO(Class<E> classe){
         this.classe = classe;
-        em = emf.createEntityManager();
+        em = Instrumentacao.criarGerenciador(fabrica());
+        gerenciadoPorSessao = false;
+        this.sessao = null;
+        this.origem = this;
+    }
+
+    /**
+     * Construtor que utiliza o gerenciador de entidades de uma {@link Sessao}.
+     *
+     * Todos os DAOs criados a partir da mesma sessão participam da mesma transação. O gerenciador de entidades
+     * é devolvido ao pool quando a sessão é fechada, portanto {@link #fechar()} não tem efeito sobre ele.
+     *
+     * @param classe A classe da entidade que este DAO irá manipular.
+     * @param sessao A sessão que fornece o gerenciador de entidades.
+     */
+    public DAO(Class<E> classe, Sessao sessao){
+        this.classe = classe;
+        this.em = sessao.gerenciador();
+        gerenciadoPorSessao = true;
+        this.sessao = sessao;
+        this.origem = this;
+    }
+
+    /**
+     * Construtor que compartilha o gerenciador de entidades de outro DAO.
+     *
+     * Permite que operações sobre entidades diferentes participem da mesma transação. O gerenciador
+     * de entidades pertence ao DAO de origem, portanto basta chamar {@link #fechar()} em apenas um deles.
+     *
+     * @param classe A classe da entidade que este DAO irá manipular.
+     * @param outro O DAO cujo gerenciador de entidades será compartilhado.
+     */
+    public DAO(Class<E> classe, DAO<?> outro){
+        this.classe = classe;
+        this.em = outro.em;
+        gerenciadoPorSessao = outro.gerenciadoPorSessao;
+        this.sessao = outro.sessao;
+        this.origem = outro.origem;
     }
 
     /**
@@ -85,7 +176,7 @@ public class DAO<E> { // recebe um tipo genérico
      * @return A própria instância do DAO para encadeamento de métodos.
      */
     public DAO<E> abrirTransacao(){
-        em.getTransaction().begin();
+        Instrumentacao.iniciar(em);
         return this;
     }
 
@@ -95,7 +186,53 @@ public class DAO<E> { // recebe um tipo genérico
      * @return A própria instância do DAO para encadeamento de métodos.
      */
     public DAO<E> fecharTransacao(){
-        em.getTransaction().commit();
+        Instrumentacao.confirmar(em);
+        return this;
+    }
+
+    /**
+     * Desfaz a transação ativa, descartando as alterações pendentes.
+     *
+     * Não faz nada caso não exista uma transação ativa.
+     *
+     * @return A própria instância do DAO para encadeamento de métodos.
+     */
+    public DAO<E> desfazerTransacao(){
+        Instrumentacao.desfazer(em);
+        return this;
+    }
+
+    /**
+     * Envia as alterações pendentes ao banco de dados e limpa o contexto de persistência.
+     *
+     * Útil em operações em lote, para que as entidades já processadas não se acumulem na memória.
+     * Fora de uma transação, apenas limpa o contexto de persistência.
+     *
+     * @return A própria instância do DAO para encadeamento de métodos.
+     */
+    public DAO<E> sincronizar(){
+        if (em.getTransaction().isActive()) {
+            em.flush();
+        }
+        em.clear();
+        return this;
+    }
+
+    /**
+     * Mantém as leituras deste DAO, e dos que compartilham o seu gerenciador de entidades, na unidade de
+     * persistência principal mesmo fora de uma transação.
+     *
+     * Use quando a leitura precisa refletir uma gravação recém-confirmada, que pode ainda não ter chegado à
+     * réplica. Em um DAO obtido de uma {@link Sessao}, equivale a {@link Sessao#lerDaPrimaria()}.
+     *
+     * @return A própria instância do DAO para encadeamento de métodos.
+     */
+    public DAO<E> lerDaPrimaria(){
+        if (sessao != null) {
+            sessao.lerDaPrimaria();
+        } else {
+            origem.leituraNaPrimaria = true;
+        }
         return this;
     }
 
@@ -106,7 +243,9 @@ public class DAO<E> { // recebe um tipo genérico
      * @return A própria instância do DAO para encadeamento de métodos.
      */
     public DAO<E> incluir(E entidade){
+        long inicio = System.nanoTime();
         em.persist(entidade);
+        tempoIncluir.registrarDesde(inicio);
         return this;
     }
 
@@ -127,10 +266,42 @@ public class DAO<E> { // recebe um tipo genérico
      * @return A própria instância do DAO para encadeamento de métodos.
      */
     public DAO<E> modificar(E entidade){
+        long inicio = System.nanoTime();
         em.merge(entidade);
+        tempoModificar.registrarDesde(inicio);
         return this;
     }
 
+    /**
+     * Soma um valor a um atributo numérico da entidade diretamente no banco de dados, com um único {@code UPDATE}.
+     *
+     * A entidade não é carregada: a soma é feita pelo próprio banco de dados, o que evita a leitura prévia e a
+     * perda de atualizações concorrentes. A versão da entidade também é incrementada, para que quem a tenha
+     * carregado antes receba um conflito de concorrência ao gravá-la. Deve ser chamado dentro de uma transação;
+     * entidades já carregadas no contexto de persistência não são atualizadas.
+     *
+     * @param atributo O nome do atributo, que deve ser numérico.
+     * @param id O identificador da entidade.
+     * @param parcela O valor a ser somado, que pode ser negativo.
+     * @param minimo O valor mínimo que o atributo deve ter antes da soma, ou {@code null} para não exigir mínimo.
+     * @return A quantidade de linhas alteradas: {@code 1} se a soma foi feita; {@code 0} se a entidade não existe
+     *         ou o atributo está abaixo do mínimo.
+     */
+    protected int somar(String atributo, Object id, long parcela, Long minimo){
+        if (classe == null){
+            throw new UnsupportedOperationException("Classe nula.");
+        }
+        String jpql = "UPDATE " + classe.getName() + " e SET e." + atributo + " = e." + atributo + " + :parcela, "
+                + "e.versao = e.versao + 1 WHERE e.id = :id" + (minimo == null ? "" : " AND e." + atributo + " >= :minimo");
+        Query query = em.createQuery(jpql)
+                .setParameter("parcela", parcela)
+                .setParameter("id", id);
+        if (minimo != null) {
+            query.setParameter("minimo", minimo);
+        }
+        return query.executeUpdate();
+    }
+
     /**
      * Busca uma entidade no banco de dados pelo seu identificador.
      *
@@ -138,7 +309,30 @@ public class DAO<E> { // recebe um tipo genérico
      * @return A entidade encontrada ou null se não houver correspondência.
      */
     public E obterPorID(Object id){
-        return em.find(classe, id);
+        long inicio = System.nanoTime();
+        E entidade = gerenciadorLeitura().find(classe, id);
+        tempoObterPorID.registrarDesde(inicio);
+        return entidade;
+    }
+
+    /**
+     * Busca, em uma única consulta, todas as entidades cujos identificadores foram informados.
+     *
+     * @param ids Os identificadores das entidades.
+     * @return Uma lista com as entidades encontradas, em qualquer ordem.
+     */
+    public List<E> obterPorIDs(Collection<?> ids){
+        if (classe == null){
+            throw new UnsupportedOperationException("Classe nula.");
+        }
+        if (ids.isEmpty()){
+            return Collections.emptyList();
+        }
+
+        String jpql = "SELECT e FROM " + classe.getName() + " e WHERE e.id IN :ids";
+        TypedQuery<E> query = gerenciadorLeitura().createQuery(jpql, classe);
+        query.setParameter("ids", ids);
+        return query.getResultList();
     }
 
     /**
@@ -163,16 +357,370 @@ public class DAO<E> { // recebe um tipo genérico
         }
 
         String jpql = "SELECT e FROM " + classe.getName() + " e";
-        TypedQuery<E> query = em.createQuery(jpql, classe);
+        TypedQuery<E> query = gerenciadorLeitura().createQuery(jpql, classe);
         query.setMaxResults(quantidade);
         query.setFirstResult(deslocamento);
         return query.getResultList();
     }
 
+    /**
+     * Percorre todas as entidades do tipo E, em ordem de identificador, com o tamanho de página padrão.
+     *
+     * @return Um fluxo sequencial com todas as entidades.
+     * @see #percorrerTodos(int)
+     */
+    public Stream<E> percorrerTodos(){
+        return this.percorrerTodos(TAMANHO_PAGINA_PADRAO);
+    }
+
+    /**
+     * Percorre todas as entidades do tipo E, em ordem de identificador, buscando uma página por vez.
+     *
+     * Cada página é buscada a partir do último identificador lido ({@code WHERE e.id > :ultimo ORDER BY e.id}),
+     * e não por deslocamento como em {@link #obterTodos(int, int)}, de modo que o custo de cada página não cresce
+     * ao longo da tabela. As entidades são desligadas do contexto de persistência assim que a página é lida, o que
+     * mantém o consumo de memória constante; alterações feitas nelas não são gravadas. As páginas só são
+     * buscadas à medida que o fluxo é consumido.
+     *
+     * @param tamanhoPagina A quantidade de entidades buscadas em cada consulta.
+     * @return Um fluxo sequencial com todas as entidades.
+     */
+    public Stream<E> percorrerTodos(int tamanhoPagina){
+        if (classe == null){
+            throw new UnsupportedOperationException("Classe nula.");
+        }
+        if (tamanhoPagina <= 0){
+            throw new IllegalArgumentException("Tamanho de página inválido");
+        }
+
+        Spliterator<E> paginas = new Spliterators.AbstractSpliterator<E>(Long.MAX_VALUE,
+                Spliterator.ORDERED | Spliterator.NONNULL) {
+
+            private final Deque<E> pagina = new ArrayDeque<>(tamanhoPagina);
+            private Object ultimo;
+            private boolean terminou;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super E> acao) {
+                if (pagina.isEmpty() && !terminou) {
+                    buscarPagina();
+                }
+                E entidade = pagina.poll();
+                if (entidade == null) {
+                    return false;
+                }
+                acao.accept(entidade);
+                return true;
+            }
+
+            private void buscarPagina() {
+                EntityManager leitor = gerenciadorLeitura();
+                String jpql = "SELECT e FROM " + classe.getName() + " e"
+                        + (ultimo == null ? "" : " WHERE e.id > :ultimo")
+                        + " ORDER BY e.id";
+                TypedQuery<E> query = leitor.createQuery(jpql, classe);
+                if (ultimo != null) {
+                    query.setParameter("ultimo", ultimo);
+                }
+                query.setMaxResults(tamanhoPagina);
+                query.setHint("org.hibernate.fetchSize", tamanhoPagina);
+                query.setHint("org.hibernate.readOnly", true);
+
+                List<E> resultado = query.getResultList();
+                if (resultado.size() < tamanhoPagina) {
+                    terminou = true;
+                }
+                if (!resultado.isEmpty()) {
+                    ultimo = leitor.getEntityManagerFactory().getPersistenceUnitUtil()
+                            .getIdentifier(resultado.get(resultado.size() - 1));
+                }
+                for (E entidade : resultado) {
+                    leitor.detach(entidade);
+                    pagina.add(entidade);
+                }
+            }
+        };
+        return StreamSupport.stream(paginas, false);
+    }
+
+    /**
+     * Conta as entidades do tipo E.
+     *
+     * @return A quantidade de entidades.
+     */
+    public long contar(){
+        if (classe == null){
+            throw new UnsupportedOperationException("Classe nula.");
+        }
+        return gerenciadorLeitura().createQuery("SELECT COUNT(e) FROM " + classe.getName() + " e", Long.class)
+                .getSingleResult();
+    }
+
+    /**
+     * Preenche um {@link IndiceDocumentos} com o documento de todas as entidades do tipo E.
+     *
+     * @param atributo O nome do atributo que guarda o documento.
+     * @param indice O índice a ser preenchido.
+     * @param numero A função que obtém o valor numérico do documento, ou um valor negativo se ele for inválido.
+     * @return A quantidade de documentos colocados no índice.
+     * @see #percorrerDocumentos(String, ToLongFunction, MapaLongLong.Consumidor)
+     */
+    protected int carregarIndice(String atributo, IndiceDocumentos indice, ToLongFunction<String> numero){
+        return percorrerDocumentos(atributo, numero, indice::registrar);
+    }
+
+    /**
+     * Reconstrói, a partir da unidade principal do banco de dados, o filtro de um {@link IndiceDocumentos}, com a
+     * referência da tabela de {@link #obterReferencia()}, passa a usá-lo e o grava no seu arquivo.
+     *
+     * @param atributo O nome do atributo que guarda o documento.
+     * @param indice O índice cujo filtro é reconstruído.
+     * @param numero A função que obtém o valor numérico do documento, ou um valor negativo se ele for inválido.
+     * @return O filtro reconstruído.
+     * @throws IllegalStateException Se não for possível gravar o arquivo do filtro; o filtro já está em uso.
+     */
+    protected FiltroBloom reconstruirFiltro(String atributo, IndiceDocumentos indice, ToLongFunction<String> numero){
+        // A referência é obtida antes da leitura: uma inclusão feita durante a leitura torna o filtro desatualizado
+        long[] referencia = obterReferencia();
+        FiltroBloom filtro = IndiceDocumentos.novoFiltro(referencia[0]);
+        percorrerDocumentos(gerenciador(), atributo, numero, (documento, id) -> filtro.adicionar(documento));
+        filtro.setReferencia(referencia);
+        indice.usarFiltro(filtro);
+        try {
+            indice.gravarFiltro(referencia);
+        } catch (IOException e) {
+            throw new IllegalStateException("Erro ao gravar o filtro de documentos", e);
+        }
+        return filtro;
+    }
+
+    /**
+     * Percorre o documento de todas as entidades do tipo E. Documentos inválidos são ignorados.
+     *
+     * @param atributo O nome do atributo que guarda o documento.
+     * @param numero A função que obtém o valor numérico do documento, ou um valor negativo se ele for inválido.
+     * @param consumidor A função chamada com o valor numérico do documento e o identificador de cada entidade.
+     * @return A quantidade de documentos percorridos.
+     * @see #percorrerValores(String, Long, Long, ToLongFunction, MapaLongLong.Consumidor)
+     */
+    protected int percorrerDocumentos(String atributo, ToLongFunction<String> numero, MapaLongLong.Consumidor consumidor){
+        return percorrerDocumentos(gerenciadorLeitura(), atributo, numero, consumidor);
+    }
+
+    /**
+     * Percorre o documento de todas as entidades do tipo E com o gerenciador de entidades informado.
+     */
+    private int percorrerDocumentos(EntityManager leitor, String atributo, ToLongFunction<String> numero,
+                                    MapaLongLong.Consumidor consumidor){
+        int[] validos = new int[1];
+        percorrerValores(leitor, atributo, null, null, valor -> numero.applyAsLong((String) valor), (id, documento) -> {
+            if (documento >= 0) {
+                consumidor.aceitar(documento, id);
+                validos[0]++;
+            }
+        });
+        return validos[0];
+    }
+
+    /**
+     * Percorre, em ordem de identificador, o valor de um atributo das entidades do tipo E cujo identificador está
+     * na faixa {@code [de, ate)}.
+     *
+     * Apenas o identificador e o atributo são lidos, sem criar entidades, em páginas de
+     * {@link #TAMANHO_PAGINA_PADRAO} buscadas a partir do último identificador lido, como em
+     * {@link #percorrerTodos(int)}. O identificador da entidade deve ser numérico.
+     *
+     * @param atributo O nome do atributo.
+     * @param de O primeiro identificador da faixa, ou {@code null} para começar do menor.
+     * @param ate O identificador seguinte ao último da faixa, ou {@code null} para ir até o maior.
+     * @param valor A função que converte o valor lido do atributo em {@code long}.
+     * @param consumidor A função chamada com o identificador e o valor convertido de cada entidade.
+     * @return A quantidade de entidades percorridas.
+     */
+    protected int percorrerValores(String atributo, Long de, Long ate, ToLongFunction<Object> valor,
+                                   MapaLongLong.Consumidor consumidor){
+        return percorrerValores(gerenciadorLeitura(), atributo, de, ate, valor, consumidor);
+    }
+
+    /**
+     * Percorre o valor de um atributo das entidades do tipo E na faixa {@code [de, ate)} com o gerenciador de
+     * entidades informado.
+     */
+    private int percorrerValores(EntityManager leitor, String atributo, Long de, Long ate, ToLongFunction<Object> valor,
+                                 MapaLongLong.Consumidor consumidor){
+        if (classe == null){
+            throw new UnsupportedOperationException("Classe nula.");
+        }
+        int percorridas = 0;
+        Object ultimo = null;
+        while (true) {
+            List<String> condicoes = new ArrayList<>(3);
+            if (de != null) {
+                condicoes.add("e.id >= :de");
+            }
+            if (ate != null) {
+                condicoes.add("e.id < :ate");
+            }
+            if (ultimo != null) {
+                condicoes.add("e.id > :ultimo");
+            }
+            String jpql = "SELECT e.id, e." + atributo + " FROM " + classe.getName() + " e"
+                    + (condicoes.isEmpty() ? "" : " WHERE " + String.join(" AND ", condicoes))
+                    + " ORDER BY e.id";
+            TypedQuery<Object[]> query = leitor.createQuery(jpql, Object[].class);
+            if (de != null) {
+                query.setParameter("de", de);
+            }
+            if (ate != null) {
+                query.setParameter("ate", ate);
+            }
+            if (ultimo != null) {
+                query.setParameter("ultimo", ultimo);
+            }
+            query.setMaxResults(TAMANHO_PAGINA_PADRAO);
+            query.setHint("org.hibernate.fetchSize", TAMANHO_PAGINA_PADRAO);
+
+            List<Object[]> pagina = query.getResultList();
+            for (Object[] linha : pagina) {
+                consumidor.aceitar(((Number) linha[0]).longValue(), valor.applyAsLong(linha[1]));
+            }
+            percorridas += pagina.size();
+            if (pagina.size() < TAMANHO_PAGINA_PADRAO) {
+                return percorridas;
+            }
+            ultimo = pagina.get(pagina.size() - 1)[0];
+        }
+    }
+
+    /**
+     * Lê, em uma única consulta e sem criar entidades, o valor de um atributo das entidades do tipo E cujos
+     * identificadores foram informados. O identificador da entidade deve ser numérico.
+     *
+     * @param atributo O nome do atributo.
+     * @param ids Os identificadores das entidades.
+     * @param valor A função que converte o valor lido do atributo em {@code long}.
+     * @param consumidor A função chamada com o identificador e o valor convertido de cada entidade encontrada, em
+     *                   qualquer ordem.
+     * @return A quantidade de entidades encontradas.
+     */
+    protected int obterValores(String atributo, Collection<?> ids, ToLongFunction<Object> valor,
+                               MapaLongLong.Consumidor consumidor){
+        if (classe == null){
+            throw new UnsupportedOperationException("Classe nula.");
+        }
+        if (ids.isEmpty()){
+            return 0;
+        }
+        String jpql = "SELECT e.id, e." + atributo + " FROM " + classe.getName() + " e WHERE e.id IN :ids";
+        List<Object[]> linhas = gerenciadorLeitura().createQuery(jpql, Object[].class)
+                .setParameter("ids", ids)
+                .getResultList();
+        for (Object[] linha : linhas) {
+            consumidor.aceitar(((Number) linha[0]).longValue(), valor.applyAsLong(linha[1]));
+        }
+        return linhas.size();
+    }
+
+    /**
+     * Obtém a referência da tabela das entidades do tipo E: a quantidade de entidades e o maior identificador, lidos
+     * na unidade principal. Duas referências iguais indicam, salvo exclusões seguidas de inclusões, a mesma tabela.
+     * O identificador deve ser numérico.
+     *
+     * @return Um vetor com a quantidade de entidades e o maior identificador, que é 0 se não houver entidades.
+     * @see IndiceDocumentos#carregarFiltro(long[])
+     */
+    public long[] obterReferencia(){
+        if (classe == null){
+            throw new UnsupportedOperationException("Classe nula.");
+        }
+        Object[] referencia = gerenciador()
+                .createQuery("SELECT COUNT(e), MAX(e.id) FROM " + classe.getName() + " e", Object[].class)
+                .getSingleResult();
+        return new long[] {((Number) referencia[0]).longValue(),
+                referencia[1] == null ? 0 : ((Number) referencia[1]).longValue()};
+    }
+
+    /**
+     * Obtém o menor e o maior identificador das entidades do tipo E. O identificador deve ser numérico.
+     *
+     * @return Um vetor com o menor e o maior identificador, ou {@code null} se não houver entidades.
+     */
+    public long[] obterFaixaIds(){
+        if (classe == null){
+            throw new UnsupportedOperationException("Classe nula.");
+        }
+        Object[] faixa = gerenciadorLeitura()
+                .createQuery("SELECT MIN(e.id), MAX(e.id) FROM " + classe.getName() + " e", Object[].class)
+                .getSingleResult();
+        if (faixa[0] == null) {
+            return null;
+        }
+        return new long[] {((Number) faixa[0]).longValue(), ((Number) faixa[1]).longValue()};
+    }
+
+    /**
+     * Obtém o gerenciador de entidades do DAO, para consultas específicas das subclasses.
+     *
+     * @return O gerenciador de entidades.
+     */
+    protected EntityManager gerenciador(){
+        return em;
+    }
+
+    /**
+     * Obtém o gerenciador de entidades que deve atender uma leitura, para consultas específicas das subclasses.
+     *
+     * É o da unidade de leitura quando ela está ativada, não há transação ativa e as leituras não foram mantidas
+     * na unidade principal por {@link #lerDaPrimaria()}; caso contrário, é o próprio {@link #gerenciador()}.
+     *
+     * @return O gerenciador de entidades para a leitura.
+     */
+    protected EntityManager gerenciadorLeitura(){
+        if (sessao != null) {
+            return sessao.gerenciadorLeitura();
+        }
+        if (fabricaLeitura() == fabrica() || origem.leituraNaPrimaria || em.getTransaction().isActive()) {
+            return em;
+        }
+        if (origem.emLeitura == null) {
+            origem.emLeitura = Instrumentacao.criarGerenciadorLeitura(fabricaLeitura());
+        }
+        return origem.emLeitura;
+    }
+
     /**
      * Fecha o gerenciador de entidades, liberando recursos alocados.
+     *
+     * Não tem efeito quando o DAO foi criado a partir de uma {@link Sessao}; nesse caso, feche a sessão.
      */
     public void fechar(){
-        em.close();
+        if (!gerenciadoPorSessao) {
+            em.close();
+            if (origem.emLeitura != null) {
+                origem.emLeitura.close();
+                origem.emLeitura = null;
+            }
+        }
+    }
+
+    /**
+     * Obtém a fábrica de gerenciadores de entidades compartilhada pelos DAOs.
+     *
+     * @return A fábrica de gerenciadores de entidades.
+     * @throws IllegalStateException Se a criação da fábrica falhou.
+     * @see Inicializacao
+     */
+    static EntityManagerFactory fabrica(){
+        return Inicializacao.fabrica();
+    }
+
+    /**
+     * Obtém a fábrica de gerenciadores de entidades da unidade de leitura.
+     *
+     * @return A fábrica da unidade de leitura, ou a mesma de {@link #fabrica()} quando ela não está ativada.
+     * @throws IllegalStateException Se a criação da fábrica falhou.
+     */
+    static EntityManagerFactory fabricaLeitura(){
+        return Inicializacao.fabricaLeitura();
     }
 }
@@ -1,6 +1,15 @@
 package infra;
 
+import Validator.Cpf;
 import usuarios.Cliente;
+import util.FiltroBloom;
+import util.MapaLongLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Classe DAO específica para a entidade {@link Cliente}.
@@ -19,4 +28,182 @@ public class DAOCliente extends DAO<Cliente> {
 
         super(Cliente.class);
     }
+
+    /**
+     * Construtor que inicializa o DAO para a entidade {@link Cliente} compartilhando o gerenciador
+     * de entidades de outro DAO, para que ambos participem da mesma transação.
+     *
+     * @param outro O DAO cujo gerenciador de entidades será compartilhado.
+     */
+    public DAOCliente(DAO<?> outro){
+        super(Cliente.class, outro);
+    }
+
+    /**
+     * Construtor que inicializa o DAO para a entidade {@link Cliente} usando o gerenciador de entidades de uma
+     * {@link Sessao}.
+     *
+     * @param sessao A sessão que fornece o gerenciador de entidades.
+     */
+    public DAOCliente(Sessao sessao){
+        super(Cliente.class, sessao);
+    }
+
+    /**
+     * Soma uma variação ao saldo do cliente com um único {@code UPDATE}, sem carregá-lo.
+     *
+     * @param id O identificador do cliente.
+     * @param variacao A variação do saldo, em centavos, que pode ser negativa.
+     * @return {@code true} se o saldo foi alterado; {@code false} se o cliente não existe.
+     * @see DAO#somar(String, Object, long, Long)
+     */
+    public boolean somarSaldo(Long id, long variacao){
+        return somar("saldo", id, variacao, null) == 1;
+    }
+
+    /**
+     * Busca o cliente pelo CPF, primeiro no {@link IndiceDocumentos} global e depois pela restrição única do banco de
+     * dados.
+     *
+     * O CPF é aceito com ou sem formatação, e encontra o cliente gravado em qualquer um dos dois formatos. Um cliente
+     * encontrado no banco de dados é colocado no índice, de modo que a próxima busca não precise consultá-lo.
+     *
+     * @param cpf O CPF do cliente.
+     * @return O cliente encontrado, ou {@code null} se o CPF for inválido ou não estiver cadastrado.
+     */
+    public Cliente obterPorCpf(String cpf){
+        long numero = Cpf.numero(cpf);
+        if (numero < 0) {
+            return null;
+        }
+        IndiceDocumentos indice = IndiceDocumentos.clientes();
+        long id = indice.obter(numero);
+        if (id != IndiceDocumentos.AUSENTE) {
+            Cliente cliente = obterPorID(id);
+            if (cliente != null && Cpf.numero(cliente.getCpf()) == numero) {
+                return cliente;
+            }
+            // Entrada de uma inclusão desfeita ou de um CPF alterado
+            indice.remover(numero);
+        }
+
+        Cliente cliente = buscarNoBanco(gerenciadorLeitura(), numero);
+        if (cliente != null) {
+            indice.registrar(numero, cliente.getId());
+        }
+        return cliente;
+    }
+
+    /**
+     * Inclui um cliente, recusando CPF já cadastrado, e coloca o novo cliente no {@link IndiceDocumentos} global.
+     *
+     * O CPF é procurado primeiro no índice. Se não estiver lá, o banco de dados só é consultado quando o filtro do
+     * índice indica que o CPF talvez esteja cadastrado; com o filtro carregado, um cliente novo é incluído
+     * sem nenhuma consulta. A restrição única do banco de dados continua recusando, ao gravar, os duplicados que
+     * escaparem às duas verificações.
+     *
+     * @param entidade O cliente a ser incluído.
+     * @return A própria instância do DAO para encadeamento de métodos.
+     * @throws IllegalArgumentException Se o CPF já estiver cadastrado.
+     */
+    @Override
+    public DAO<Cliente> incluir(Cliente entidade){
+        long numero = Cpf.numero(entidade.getCpf());
+        IndiceDocumentos indice = IndiceDocumentos.clientes();
+        long id = numero < 0 ? IndiceDocumentos.AUSENTE : indice.obter(numero);
+        if (id != IndiceDocumentos.AUSENTE) {
+            // Confere na unidade principal, pois a entrada pode ser de uma inclusão desfeita
+            Cliente existente = gerenciador().find(Cliente.class, id);
+            if (existente != null && Cpf.numero(existente.getCpf()) == numero) {
+                throw new IllegalArgumentException("CPF já cadastrado");
+            }
+        } else if (numero >= 0 && indice.talvezCadastrado(numero)) {
+            Cliente existente = buscarNoBanco(gerenciador(), numero);
+            if (existente != null) {
+                indice.registrar(numero, existente.getId());
+                throw new IllegalArgumentException("CPF já cadastrado");
+            }
+        }
+        super.incluir(entidade);
+        if (numero >= 0) {
+            indice.registrarInclusao(numero, entidade.getId());
+        }
+        return this;
+    }
+
+    /**
+     * Coloca no {@link IndiceDocumentos} global o CPF de todos os clientes já cadastrados.
+     *
+     * @return A quantidade de CPFs colocados no índice.
+     */
+    public int carregarIndice(){
+        return carregarIndice("cpf", IndiceDocumentos.clientes(), Cpf::numero);
+    }
+
+    /**
+     * Reconstrói a partir do banco de dados o filtro de CPFs do {@link IndiceDocumentos} global, passa a usá-lo e o
+     * grava no seu arquivo.
+     *
+     * @return O filtro reconstruído.
+     * @throws IllegalStateException Se não for possível gravar o arquivo do filtro.
+     */
+    public FiltroBloom reconstruirFiltro(){
+        return reconstruirFiltro("cpf", IndiceDocumentos.clientes(), Cpf::numero);
+    }
+
+    /**
+     * Prepara o filtro de CPFs para uma série de inclusões: mantém o filtro em uso ou lê o arquivo do filtro se eles
+     * ainda correspondem à tabela e, caso contrário, reconstrói o filtro a partir do banco de dados.
+     *
+     * @return O {@link IndiceDocumentos} global de clientes, já com o filtro.
+     */
+    public IndiceDocumentos prepararFiltro(){
+        IndiceDocumentos indice = IndiceDocumentos.clientes();
+        if (!indice.carregarFiltro(obterReferencia())) {
+            reconstruirFiltro();
+        }
+        return indice;
+    }
+
+    /**
+     * Percorre, em ordem de identificador, o saldo dos clientes de cada identificador na faixa {@code [de, ate)}, sem
+     * criar entidades.
+     *
+     * @param de O primeiro identificador da faixa.
+     * @param ate O identificador seguinte ao último da faixa.
+     * @param consumidor A função chamada com o identificador e o saldo, em centavos.
+     * @return A quantidade de saldos percorridos.
+     * @see DAO#percorrerValores(String, Long, Long, java.util.function.ToLongFunction, MapaLongLong.Consumidor)
+     */
+    public int percorrerSaldos(long de, long ate, MapaLongLong.Consumidor consumidor){
+        return percorrerValores("saldo", de, ate, saldo -> (Long) saldo, consumidor);
+    }
+
+    /**
+     * Lê, em uma única consulta e sem criar entidades, o saldo das clientes cujos identificadores foram informados.
+     * Dentro de uma transação, a leitura é feita na unidade principal.
+     *
+     * @param ids Os identificadores das clientes.
+     * @param consumidor A função chamada com o identificador e o saldo, em centavos, de cada cliente encontrado.
+     * @return A quantidade de clientes encontrados.
+     * @see DAO#obterValores(String, java.util.Collection, java.util.function.ToLongFunction, MapaLongLong.Consumidor)
+     */
+    public int obterSaldos(Collection<Long> ids, MapaLongLong.Consumidor consumidor){
+        return obterValores("saldo", ids, saldo -> (Long) saldo, consumidor);
+    }
+
+    /**
+     * Busca no banco de dados um cliente com o CPF informado, em qualquer um dos dois formatos.
+     *
+     * A consulta não envia antes as inclusões pendentes da transação, para não interromper o agrupamento em lotes;
+     * elas já estão no índice.
+     */
+    private Cliente buscarNoBanco(EntityManager em, long numero){
+        List<Cliente> encontrados = em
+                .createQuery("SELECT e FROM Cliente e WHERE e.cpf IN :formas", Cliente.class)
+                .setParameter("formas", Arrays.asList(String.format("%011d", numero), Cpf.formatar(numero)))
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
+        return encontrados.isEmpty() ? null : encontrados.get(0);
+    }
 }
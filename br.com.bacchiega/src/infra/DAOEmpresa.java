@@ -1,6 +1,15 @@
 package infra;
 
+import Validator.Cnpj;
 import usuarios.Empresa;
+import util.FiltroBloom;
+import util.MapaLongLong;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
 
 /**
  * Classe DAO específica para a entidade {@link Empresa}.
@@ -18,4 +27,212 @@ public class DAOEmpresa extends DAO<Empresa>{
     public DAOEmpresa(){
         super(Empresa.class);
     }
+
+    /**
+     * Construtor que inicializa o DAO para a entidade {@link Empresa} compartilhando o gerenciador
+     * de entidades de outro DAO, para que ambos participem da mesma transação.
+     *
+     * @param outro O DAO cujo gerenciador de entidades será compartilhado.
+     */
+    public DAOEmpresa(DAO<?> outro){
+        super(Empresa.class, outro);
+    }
+
+    /**
+     * Construtor que inicializa o DAO para a entidade {@link Empresa} usando o gerenciador de entidades de uma
+     * {@link Sessao}.
+     *
+     * @param sessao A sessão que fornece o gerenciador de entidades.
+     */
+    public DAOEmpresa(Sessao sessao){
+        super(Empresa.class, sessao);
+    }
+
+    /**
+     * Busca a empresa pelo identificador, passando antes pelo {@link CacheEmpresa} global.
+     *
+     * Adequado para leituras dos dados cadastrais (nome, CNPJ e taxa). A instância devolvida é compartilhada,
+     * não deve ser alterada e pode ter o saldo desatualizado; para alterar a empresa, use {@link #obterPorID(Object)}.
+     *
+     * @param id O identificador da empresa.
+     * @return Uma cópia da empresa, ou {@code null} se ela não existir.
+     */
+    public Empresa obterPorIDCache(Object id){
+        return CacheEmpresa.global().obter(id, this);
+    }
+
+    /**
+     * Busca a empresa pelo identificador sempre na unidade de persistência principal, para preencher o
+     * {@link CacheEmpresa}.
+     *
+     * @param id O identificador da empresa.
+     * @return A empresa encontrada, ou {@code null} se ela não existir.
+     */
+    Empresa obterPorIDNaPrimaria(Object id){
+        return gerenciador().find(Empresa.class, id);
+    }
+
+    /**
+     * Soma uma variação ao saldo da empresa com um único {@code UPDATE} condicional, sem carregá-la.
+     *
+     * A condição é verificada pelo próprio banco de dados, sob o bloqueio da linha, de modo que duas operações
+     * concorrentes não podem ambas passar pela verificação com o mesmo saldo. O {@link CacheEmpresa} não é
+     * invalidado, pois ele não é usado para o saldo.
+     *
+     * @param id O identificador da empresa.
+     * @param variacao A variação do saldo, em centavos, que pode ser negativa.
+     * @param saldoMinimo O saldo mínimo, em centavos, que a empresa deve ter antes da variação.
+     * @return {@code true} se o saldo foi alterado; {@code false} se a empresa não existe ou o saldo é menor que o
+     *         mínimo.
+     * @see DAO#somar(String, Object, long, Long)
+     */
+    public boolean somarSaldo(Long id, long variacao, long saldoMinimo){
+        return somar("saldo", id, variacao, saldoMinimo) == 1;
+    }
+
+    /**
+     * Busca a empresa pelo CNPJ, primeiro no {@link IndiceDocumentos} global e depois pela restrição única do banco de
+     * dados.
+     *
+     * O CNPJ é aceito com ou sem formatação, e encontra a empresa gravada em qualquer um dos dois formatos. Uma empresa
+     * encontrada no banco de dados é colocada no índice, de modo que a próxima busca não precise consultá-lo.
+     *
+     * @param cnpj O CNPJ da empresa.
+     * @return A empresa encontrada, ou {@code null} se o CNPJ for inválido ou não estiver cadastrado.
+     */
+    public Empresa obterPorCnpj(String cnpj){
+        long numero = Cnpj.numero(cnpj);
+        if (numero < 0) {
+            return null;
+        }
+        IndiceDocumentos indice = IndiceDocumentos.empresas();
+        long id = indice.obter(numero);
+        if (id != IndiceDocumentos.AUSENTE) {
+            Empresa empresa = obterPorID(id);
+            if (empresa != null && Cnpj.numero(empresa.getCnpj()) == numero) {
+                return empresa;
+            }
+            // Entrada de uma inclusão desfeita ou de um CNPJ alterado
+            indice.remover(numero);
+        }
+
+        Empresa empresa = buscarNoBanco(gerenciadorLeitura(), numero);
+        if (empresa != null) {
+            indice.registrar(numero, empresa.getId());
+        }
+        return empresa;
+    }
+
+    /**
+     * Inclui uma empresa, recusando CNPJ já cadastrado, e coloca a nova empresa no {@link IndiceDocumentos} global.
+     *
+     * O CNPJ é procurado primeiro no índice. Se não estiver lá, o banco de dados só é consultado quando o filtro do
+     * índice indica que o CNPJ talvez esteja cadastrado; com o filtro carregado, uma empresa nova é incluída
+     * sem nenhuma consulta. A restrição única do banco de dados continua recusando, ao gravar, os duplicados que
+     * escaparem às duas verificações.
+     *
+     * @param entidade A empresa a ser incluída.
+     * @return A própria instância do DAO para encadeamento de métodos.
+     * @throws IllegalArgumentException Se o CNPJ já estiver cadastrado.
+     */
+    @Override
+    public DAO<Empresa> incluir(Empresa entidade){
+        long numero = Cnpj.numero(entidade.getCnpj());
+        IndiceDocumentos indice = IndiceDocumentos.empresas();
+        long id = numero < 0 ? IndiceDocumentos.AUSENTE : indice.obter(numero);
+        if (id != IndiceDocumentos.AUSENTE) {
+            // Confere na unidade principal, pois a entrada pode ser de uma inclusão desfeita
+            Empresa existente = gerenciador().find(Empresa.class, id);
+            if (existente != null && Cnpj.numero(existente.getCnpj()) == numero) {
+                throw new IllegalArgumentException("CNPJ já cadastrado");
+            }
+        } else if (numero >= 0 && indice.talvezCadastrado(numero)) {
+            Empresa existente = buscarNoBanco(gerenciador(), numero);
+            if (existente != null) {
+                indice.registrar(numero, existente.getId());
+                throw new IllegalArgumentException("CNPJ já cadastrado");
+            }
+        }
+        super.incluir(entidade);
+        if (numero >= 0) {
+            indice.registrarInclusao(numero, entidade.getId());
+        }
+        return this;
+    }
+
+    /**
+     * Coloca no {@link IndiceDocumentos} global o CNPJ de todas as empresas já cadastradas.
+     *
+     * @return A quantidade de CNPJs colocados no índice.
+     */
+    public int carregarIndice(){
+        return carregarIndice("cnpj", IndiceDocumentos.empresas(), Cnpj::numero);
+    }
+
+    /**
+     * Reconstrói a partir do banco de dados o filtro de CNPJs do {@link IndiceDocumentos} global, passa a usá-lo e o
+     * grava no seu arquivo.
+     *
+     * @return O filtro reconstruído.
+     * @throws IllegalStateException Se não for possível gravar o arquivo do filtro.
+     */
+    public FiltroBloom reconstruirFiltro(){
+        return reconstruirFiltro("cnpj", IndiceDocumentos.empresas(), Cnpj::numero);
+    }
+
+    /**
+     * Prepara o filtro de CNPJs para uma série de inclusões: mantém o filtro em uso ou lê o arquivo do filtro se eles
+     * ainda correspondem à tabela e, caso contrário, reconstrói o filtro a partir do banco de dados.
+     *
+     * @return O {@link IndiceDocumentos} global de empresas, já com o filtro.
+     */
+    public IndiceDocumentos prepararFiltro(){
+        IndiceDocumentos indice = IndiceDocumentos.empresas();
+        if (!indice.carregarFiltro(obterReferencia())) {
+            reconstruirFiltro();
+        }
+        return indice;
+    }
+
+    /**
+     * Percorre, em ordem de identificador, o saldo das empresas de cada identificador na faixa {@code [de, ate)}, sem
+     * criar entidades.
+     *
+     * @param de O primeiro identificador da faixa.
+     * @param ate O identificador seguinte ao último da faixa.
+     * @param consumidor A função chamada com o identificador e o saldo, em centavos.
+     * @return A quantidade de saldos percorridos.
+     * @see DAO#percorrerValores(String, Long, Long, java.util.function.ToLongFunction, MapaLongLong.Consumidor)
+     */
+    public int percorrerSaldos(long de, long ate, MapaLongLong.Consumidor consumidor){
+        return percorrerValores("saldo", de, ate, saldo -> (Long) saldo, consumidor);
+    }
+
+    /**
+     * Lê, em uma única consulta e sem criar entidades, o saldo das empresas cujos identificadores foram informados.
+     * Dentro de uma transação, a leitura é feita na unidade principal.
+     *
+     * @param ids Os identificadores das empresas.
+     * @param consumidor A função chamada com o identificador e o saldo, em centavos, de cada empresa encontrada.
+     * @return A quantidade de empresas encontradas.
+     * @see DAO#obterValores(String, java.util.Collection, java.util.function.ToLongFunction, MapaLongLong.Consumidor)
+     */
+    public int obterSaldos(Collection<Long> ids, MapaLongLong.Consumidor consumidor){
+        return obterValores("saldo", ids, saldo -> (Long) saldo, consumidor);
+    }
+
+    /**
+     * Busca no banco de dados uma empresa com o CNPJ informado, em qualquer um dos dois formatos.
+     *
+     * A consulta não envia antes as inclusões pendentes da transação, para não interromper o agrupamento em lotes;
+     * elas já estão no índice.
+     */
+    private Empresa buscarNoBanco(EntityManager em, long numero){
+        List<Empresa> encontrados = em
+                .createQuery("SELECT e FROM Empresa e WHERE e.cnpj IN :formas", Empresa.class)
+                .setParameter("formas", Arrays.asList(String.format("%014d", numero), Cnpj.formatar(numero)))
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList();
+        return encontrados.isEmpty() ? null : encontrados.get(0);
+    }
 }
@@ -0,0 +1,42 @@
+package infra;
+
+import idempotencia.ChaveIdempotencia;
+
+/**
+ * Classe DAO específica para a entidade {@link ChaveIdempotencia}.
+ */
+public class DAOIdempotencia extends DAO<ChaveIdempotencia>{
+
+    /**
+     * Construtor padrão que inicializa o DAO para a entidade {@link ChaveIdempotencia}.
+     */
+    public DAOIdempotencia(){
+        super(ChaveIdempotencia.class);
+    }
+
+    /**
+     * Construtor que inicializa o DAO para a entidade {@link ChaveIdempotencia} usando o gerenciador de entidades de
+     * uma {@link Sessao}.
+     *
+     * @param sessao A sessão que fornece o gerenciador de entidades.
+     */
+    public DAOIdempotencia(Sessao sessao){
+        super(ChaveIdempotencia.class, sessao);
+    }
+
+    /**
+     * Remove as chaves registradas antes do instante informado. Deve ser chamado dentro de uma transação.
+     *
+     * Repetições de uma chave removida voltam a ser executadas, portanto o instante deve ficar bem além do prazo em
+     * que quem pede as operações pode reenviá-las. É chamado periodicamente pela
+     * {@link idempotencia.LimpezaIdempotencia}.
+     *
+     * @param instante O instante limite, em milissegundos desde a época.
+     * @return A quantidade de chaves removidas.
+     */
+    public int removerAnteriores(long instante){
+        return gerenciador().createQuery("DELETE FROM ChaveIdempotencia c WHERE c.instante < :instante")
+                .setParameter("instante", instante)
+                .executeUpdate();
+    }
+}
@@ -0,0 +1,111 @@
+package infra;
+
+import relatorio.Granularidade;
+import relatorio.ReceitaEmpresa;
+
+import javax.persistence.FlushModeType;
+import javax.persistence.LockModeType;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Classe DAO específica para a entidade {@link ReceitaEmpresa}.
+ *
+ * Além das operações genéricas de {@link DAO}, soma parciais aos agregados já gravados e consulta os agregados de
+ * um período pela restrição única (empresa, granularidade, início), que também serve de índice.
+ */
+public class DAOReceita extends DAO<ReceitaEmpresa>{
+
+    /**
+     * Construtor padrão que inicializa o DAO para a entidade {@link ReceitaEmpresa}.
+     */
+    public DAOReceita(){
+        super(ReceitaEmpresa.class);
+    }
+
+    /**
+     * Construtor que inicializa o DAO para a entidade {@link ReceitaEmpresa} usando o gerenciador de entidades de
+     * uma {@link Sessao}.
+     *
+     * @param sessao A sessão que fornece o gerenciador de entidades.
+     */
+    public DAOReceita(Sessao sessao){
+        super(ReceitaEmpresa.class, sessao);
+    }
+
+    /**
+     * Soma um lote de parciais aos agregados dos seus intervalos, criando os agregados que ainda não existem.
+     *
+     * Deve ser chamado dentro de uma transação. Os agregados existentes do lote são lidos por uma única consulta,
+     * que os bloqueia até o fim da transação para que outro processo não some ao mesmo tempo, e alterados como
+     * entidades gerenciadas; os que faltam são incluídos. Assim, as alterações e as inclusões são enviadas juntas,
+     * em lotes de comandos JDBC, na próxima sincronização. A consulta não envia antes as inclusões pendentes, para
+     * não interromper o agrupamento.
+     *
+     * @param parciais As parciais a serem somadas.
+     * @return A própria instância do DAO para encadeamento de métodos.
+     */
+    public DAOReceita acumular(Collection<ReceitaEmpresa> parciais){
+        if (parciais.isEmpty()) {
+            return this;
+        }
+        Set<Long> empresas = new HashSet<>();
+        Set<Long> inicios = new HashSet<>();
+        for (ReceitaEmpresa parcial : parciais) {
+            empresas.add(parcial.getIdEmpresa());
+            inicios.add(parcial.getInicio());
+        }
+        // A consulta pode trazer agregados de outras combinações de empresa e início, que ficam como estão
+        Map<List<Object>, ReceitaEmpresa> existentes = new HashMap<>();
+        for (ReceitaEmpresa receita : gerenciador().createQuery(
+                        "SELECT r FROM ReceitaEmpresa r WHERE r.idEmpresa IN :empresas AND r.inicio IN :inicios",
+                        ReceitaEmpresa.class)
+                .setParameter("empresas", empresas)
+                .setParameter("inicios", inicios)
+                .setLockMode(LockModeType.PESSIMISTIC_WRITE)
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList()) {
+            existentes.put(chave(receita), receita);
+        }
+        for (ReceitaEmpresa parcial : parciais) {
+            ReceitaEmpresa existente = existentes.putIfAbsent(chave(parcial), parcial);
+            if (existente == null) {
+                incluir(parcial);
+            } else {
+                existente.acumular(parcial.getQuantidade(), parcial.getVolume(), parcial.getTaxas());
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Busca os agregados de uma empresa em um período, em ordem de início.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @param granularidade O tamanho dos intervalos.
+     * @param de O início do período, em milissegundos desde a época, inclusive.
+     * @param ate O fim do período, em milissegundos desde a época, exclusive.
+     * @return Os agregados gravados no período; intervalos sem operações não aparecem.
+     */
+    public List<ReceitaEmpresa> obterPeriodo(long idEmpresa, Granularidade granularidade, long de, long ate){
+        return gerenciadorLeitura().createQuery(
+                        "SELECT r FROM ReceitaEmpresa r WHERE r.idEmpresa = :empresa AND r.granularidade = :granularidade "
+                                + "AND r.inicio >= :de AND r.inicio < :ate ORDER BY r.inicio", ReceitaEmpresa.class)
+                .setParameter("empresa", idEmpresa)
+                .setParameter("granularidade", granularidade)
+                .setParameter("de", de)
+                .setParameter("ate", ate)
+                .getResultList();
+    }
+
+    /**
+     * Obtém a chave do intervalo do agregado, igual à restrição única (empresa, granularidade, início).
+     */
+    private static List<Object> chave(ReceitaEmpresa receita){
+        return List.of(receita.getIdEmpresa(), receita.getGranularidade(), receita.getInicio());
+    }
+}
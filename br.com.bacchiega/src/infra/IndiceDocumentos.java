@@ -0,0 +1,309 @@
+package infra;
+
+import util.FiltroBloom;
+import util.MapaLongLong;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.StampedLock;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Índice em memória do valor numérico de um documento (CPF ou CNPJ) para o identificador da entidade.
+ *
+ * Fica na frente da restrição única do banco de dados: as chaves e os identificadores são guardados em um
+ * {@link MapaLongLong}, sem {@link Long} nem {@link String} por entrada, de modo que uma consulta ou uma verificação
+ * de duplicidade não chega ao banco de dados quando o documento já está no índice. O índice é preenchido pelas
+ * inclusões e consultas feitas pelos DAOs e, de uma só vez, por {@link DAOCliente#carregarIndice()} e
+ * {@link DAOEmpresa#carregarIndice()}.
+ *
+ * Uma entrada pode ficar desatualizada, por exemplo quando a transação que incluiu a entidade é desfeita; por isso
+ * os DAOs conferem a entidade antes de confiar em uma entrada encontrada. A ausência de um documento no índice não
+ * significa que ele não exista no banco de dados.
+ *
+ * Junto do índice pode ficar um {@link FiltroBloom} com todos os documentos cadastrados, que responde sem consultar o
+ * banco de dados que um documento com certeza não está cadastrado. O filtro é gravado em um arquivo no diretório
+ * da propriedade de sistema {@code documentos.filtro.diretorio} (por padrão, o diretório atual), lido de volta por
+ * {@link #carregarFiltro(long[])} e reconstruído a partir do banco de dados por {@link DAOCliente#reconstruirFiltro()} e
+ * {@link DAOEmpresa#reconstruirFiltro()}, com a taxa de falsos positivos da propriedade
+ * {@code documentos.filtro.falsoPositivo} (por padrão, {@value #TAXA_FALSO_POSITIVO_PADRAO}).
+ *
+ * O filtro só vê os documentos incluídos por este processo depois de carregado. Para saber se ele ainda representa a
+ * tabela, o filtro guarda a referência da tabela quando foi construído ou gravado: a quantidade de entidades e o
+ * maior identificador, obtidos por {@link DAO#obterReferencia()}. Um filtro cuja referência, somada às inclusões
+ * feitas por este processo, não corresponde mais à tabela, por exemplo porque outro processo incluiu uma entidade,
+ * não é usado nem gravado, e deve ser reconstruído.
+ */
+public class IndiceDocumentos {
+
+    /**
+     * Valor devolvido por {@link #obter(long)} quando o documento não está no índice.
+     */
+    public static final long AUSENTE = -1;
+
+    /**
+     * Taxa de falsos positivos padrão do filtro.
+     */
+    public static final double TAXA_FALSO_POSITIVO_PADRAO = 0.001;
+
+    /**
+     * Quantidade mínima de documentos para a qual um filtro é dimensionado.
+     */
+    private static final long ESPERADOS_MINIMO = 100_000;
+
+    private static final Logger logger = Logger.getLogger(IndiceDocumentos.class.getName());
+
+    private static final IndiceDocumentos clientes = new IndiceDocumentos("clientes");
+    private static final IndiceDocumentos empresas = new IndiceDocumentos("empresas");
+
+    private final String nome;
+    private final MapaLongLong mapa = new MapaLongLong(1024);
+    private final StampedLock trava = new StampedLock();
+    private volatile FiltroBloom filtro;
+    private final AtomicLong inclusoes = new AtomicLong();
+    private volatile long inclusoesNoFiltro;
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link IndiceDocumentos}.
+     *
+     * @param nome O nome do índice, usado no nome do arquivo do filtro.
+     */
+    private IndiceDocumentos(String nome) {
+        this.nome = nome;
+    }
+
+    /**
+     * Obtém o índice global de CPFs de clientes.
+     *
+     * @return O índice de clientes.
+     */
+    public static IndiceDocumentos clientes() {
+        return clientes;
+    }
+
+    /**
+     * Obtém o índice global de CNPJs de empresas.
+     *
+     * @return O índice de empresas.
+     */
+    public static IndiceDocumentos empresas() {
+        return empresas;
+    }
+
+    /**
+     * Obtém o identificador associado ao documento.
+     *
+     * @param documento O valor numérico do documento.
+     * @return O identificador da entidade, ou {@link #AUSENTE} se o documento não estiver no índice.
+     */
+    public long obter(long documento) {
+        long carimbo = trava.readLock();
+        try {
+            return mapa.obter(documento, AUSENTE);
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+
+    /**
+     * Associa o documento ao identificador da entidade, substituindo a associação anterior.
+     *
+     * @param documento O valor numérico do documento.
+     * @param id O identificador da entidade.
+     */
+    public void registrar(long documento, long id) {
+        long carimbo = trava.writeLock();
+        try {
+            mapa.colocar(documento, id);
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+        FiltroBloom atual = filtro;
+        if (atual != null) {
+            atual.adicionar(documento);
+        }
+    }
+
+    /**
+     * Associa o documento ao identificador de uma entidade que acaba de ser incluída por este processo, contando a
+     * inclusão para a verificação de que o filtro continua correspondendo à tabela.
+     *
+     * @param documento O valor numérico do documento.
+     * @param id O identificador da entidade.
+     */
+    public void registrarInclusao(long documento, long id) {
+        inclusoes.incrementAndGet();
+        registrar(documento, id);
+    }
+
+    /**
+     * Verifica, pelo filtro, se o documento talvez esteja cadastrado.
+     *
+     * @param documento O valor numérico do documento.
+     * @return {@code false} se o documento com certeza não está cadastrado; {@code true} se talvez esteja ou se não
+     *         há filtro carregado.
+     */
+    public boolean talvezCadastrado(long documento) {
+        FiltroBloom atual = filtro;
+        return atual == null || atual.talvezContenha(documento);
+    }
+
+    /**
+     * Passa a usar o filtro informado, que deve conter todos os documentos cadastrados quando a tabela estava na
+     * referência do filtro.
+     *
+     * @param filtro O filtro, ou {@code null} para deixar de usar filtro.
+     */
+    public void usarFiltro(FiltroBloom filtro) {
+        inclusoesNoFiltro = inclusoes.get();
+        this.filtro = filtro;
+    }
+
+    /**
+     * Obtém o filtro em uso.
+     *
+     * @return O filtro, ou {@code null} se não houver filtro carregado.
+     */
+    public FiltroBloom getFiltro() {
+        return filtro;
+    }
+
+    /**
+     * Garante que o filtro em uso corresponde à tabela, lendo-o do seu arquivo se necessário.
+     *
+     * Um filtro já carregado é mantido se continua correspondendo à tabela; caso contrário, ou se não houver filtro
+     * carregado, o arquivo é lido e usado apenas se a sua referência for a da tabela.
+     *
+     * @param atual A referência atual da tabela, obtida por {@link DAO#obterReferencia()}.
+     * @return {@code true} se há um filtro correspondente à tabela em uso ao final; {@code false} se o arquivo não
+     *         existe, não pôde ser lido ou está desatualizado, caso em que o filtro deve ser reconstruído.
+     */
+    public boolean carregarFiltro(long[] atual) {
+        if (corresponde(filtro, atual)) {
+            return true;
+        }
+        Path arquivo = arquivoFiltro();
+        if (!Files.exists(arquivo)) {
+            return false;
+        }
+        FiltroBloom lido;
+        try {
+            lido = FiltroBloom.ler(arquivo);
+        } catch (IOException e) {
+            logger.log(Level.WARNING, "Erro ao ler o filtro de documentos " + arquivo, e);
+            return false;
+        }
+        if (!Arrays.equals(lido.getReferencia(), atual)) {
+            logger.info("Filtro de documentos desatualizado: " + arquivo);
+            return false;
+        }
+        usarFiltro(lido);
+        return true;
+    }
+
+    /**
+     * Grava o filtro em uso no seu arquivo, com a referência atual da tabela, se ele continua correspondendo à
+     * tabela. Não faz nada se não houver filtro carregado.
+     *
+     * @param atual A referência atual da tabela, obtida por {@link DAO#obterReferencia()}.
+     * @return {@code true} se o filtro foi gravado; {@code false} se não há filtro ou se ele não corresponde mais à
+     *         tabela, caso em que o arquivo anterior é mantido e será reconstruído na próxima preparação.
+     * @throws IOException Se ocorrer um erro de gravação.
+     */
+    public boolean gravarFiltro(long[] atual) throws IOException {
+        FiltroBloom atualFiltro = filtro;
+        if (!corresponde(atualFiltro, atual)) {
+            return false;
+        }
+        long incluidas = inclusoes.get();
+        atualFiltro.setReferencia(atual);
+        inclusoesNoFiltro = incluidas;
+        atualFiltro.gravar(arquivoFiltro());
+        return true;
+    }
+
+    /**
+     * Verifica se o filtro corresponde à tabela: a quantidade de entidades deve ser a da referência do filtro mais as
+     * inclusões feitas por este processo desde então e, sem inclusões, o maior identificador deve ser o mesmo.
+     * Inclusões desfeitas também são contadas, o que apenas leva a uma reconstrução desnecessária.
+     */
+    private boolean corresponde(FiltroBloom filtro, long[] atual) {
+        if (filtro == null) {
+            return false;
+        }
+        long[] referencia = filtro.getReferencia();
+        if (referencia.length != 2 || atual.length != 2) {
+            return false;
+        }
+        long incluidas = inclusoes.get() - inclusoesNoFiltro;
+        return atual[0] == referencia[0] + incluidas
+                && (incluidas == 0 ? atual[1] == referencia[1] : atual[1] >= referencia[1]);
+    }
+
+    /**
+     * Cria um filtro vazio dimensionado para a quantidade de documentos cadastrados, com folga para o crescimento,
+     * e a taxa de falsos positivos configurada.
+     *
+     * @param cadastrados A quantidade de documentos já cadastrados.
+     * @return O filtro vazio.
+     */
+    public static FiltroBloom novoFiltro(long cadastrados) {
+        double taxa = Double.parseDouble(System.getProperty("documentos.filtro.falsoPositivo",
+                String.valueOf(TAXA_FALSO_POSITIVO_PADRAO)));
+        return new FiltroBloom(Math.max(ESPERADOS_MINIMO, cadastrados * 2), taxa);
+    }
+
+    /**
+     * Obtém o arquivo do filtro deste índice.
+     *
+     * @return O caminho do arquivo.
+     */
+    public Path arquivoFiltro() {
+        return Paths.get(System.getProperty("documentos.filtro.diretorio", "."), "documentos-" + nome + ".bloom");
+    }
+
+    /**
+     * Remove o documento do índice.
+     *
+     * @param documento O valor numérico do documento.
+     */
+    public void remover(long documento) {
+        long carimbo = trava.writeLock();
+        try {
+            mapa.remover(documento);
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    /**
+     * Remove todos os documentos do índice.
+     */
+    public void limpar() {
+        long carimbo = trava.writeLock();
+        try {
+            mapa.limpar();
+        } finally {
+            trava.unlockWrite(carimbo);
+        }
+    }
+
+    /**
+     * Obtém a quantidade de documentos no índice.
+     *
+     * @return A quantidade de documentos.
+     */
+    public int tamanho() {
+        long carimbo = trava.readLock();
+        try {
+            return mapa.tamanho();
+        } finally {
+            trava.unlockRead(carimbo);
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package infra;
+
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Persistence;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Inicialização das fábricas de gerenciadores de entidades usadas pelos DAOs.
+ *
+ * As fábricas são criadas sob demanda, no primeiro uso de um DAO ou de uma {@link Sessao}. Os programas de linha de
+ * comando chamam {@link #iniciar()} logo no início, o que cria as fábricas em uma thread de fundo enquanto o programa
+ * lê a entrada, e em seguida aquece o {@link PoolSessoes} e as primeiras consultas; quem precisar de uma fábrica
+ * antes disso apenas aguarda a sua criação.
+ *
+ * Propriedades de sistema com prefixo {@code javax.persistence.} ou {@code hibernate.} substituem as do
+ * {@code persistence.xml}, o que permite, por exemplo, apontar para outro banco de dados sem alterar o arquivo. O
+ * esquema não é verificado nem alterado na inicialização; para criá-lo ou atualizá-lo, use
+ * {@code -Dhibernate.hbm2ddl.auto=update}. Com a propriedade de sistema {@code dao.leitura=true}, também é criada a
+ * fábrica da unidade somente leitura ({@code br.com.bacchiega.leitura}), que recebe as mesmas substituições e, por
+ * cima delas, as propriedades de sistema com prefixo {@code leitura.}, como
+ * {@code leitura.javax.persistence.jdbc.url}. A fábrica principal também recebe a {@link InvalidacaoCacheEmpresa}.
+ *
+ * O tempo até a fábrica ficar pronta, até o fim do aquecimento e até a primeira transação confirmada, contados desde
+ * o início do processo, é registrado no log quando a primeira transação é confirmada e, com
+ * {@code -Dinicializacao.relatorio=true}, também na saída de erro.
+ */
+public final class Inicializacao {
+
+    private static final Logger logger = Logger.getLogger(Inicializacao.class.getName());
+
+    /**
+     * Fábricas criadas pela inicialização.
+     */
+    private static final class Fabricas {
+        private final EntityManagerFactory principal;
+        private final EntityManagerFactory leitura;
+
+        private Fabricas(EntityManagerFactory principal, EntityManagerFactory leitura) {
+            this.principal = principal;
+            this.leitura = leitura;
+        }
+    }
+
+    private static final long inicioProcessoMs = ProcessHandle.current().info().startInstant()
+            .map(Instant::toEpochMilli).orElse(System.currentTimeMillis());
+
+    private static CompletableFuture<Fabricas> criacao;
+    private static volatile Fabricas prontas;
+
+    private static final AtomicLong fabricaProntaMs = new AtomicLong();
+    private static final AtomicLong aquecimentoMs = new AtomicLong();
+    private static final AtomicLong primeiraTransacaoMs = new AtomicLong();
+
+    private Inicializacao() {
+    }
+
+    /**
+     * Inicia, em uma thread de fundo, a criação das fábricas e, em seguida, o aquecimento das primeiras consultas.
+     * Não aguarda o término e não tem efeito se a criação já foi iniciada.
+     */
+    public static void iniciar() {
+        iniciar(true);
+    }
+
+    /**
+     * Inicia a criação das fábricas, caso ainda não tenha sido iniciada.
+     *
+     * @param aquecer Se as primeiras consultas devem ser aquecidas depois da criação.
+     * @return A criação em andamento ou concluída.
+     */
+    private static synchronized CompletableFuture<Fabricas> iniciar(boolean aquecer) {
+        if (criacao == null) {
+            criacao = new CompletableFuture<>();
+            Thread thread = new Thread(() -> criar(aquecer), "inicializacao-jpa");
+            thread.setDaemon(true);
+            thread.start();
+        }
+        return criacao;
+    }
+
+    /**
+     * Cria as fábricas e, se pedido, aquece as primeiras consultas.
+     */
+    private static void criar(boolean aquecer) {
+        Fabricas fabricas;
+        try {
+            Map<String, Object> configuracao = new HashMap<>(propriedadesDoSistema(""));
+            configuracao.put("hibernate.integrator_provider", InvalidacaoCacheEmpresa.provedor());
+            EntityManagerFactory principal = Persistence.createEntityManagerFactory("br.com.bacchiega", configuracao);
+            EntityManagerFactory leitura = principal;
+            if (Boolean.getBoolean("dao.leitura")) {
+                Map<String, String> propriedades = propriedadesDoSistema("");
+                propriedades.putAll(propriedadesDoSistema("leitura."));
+                leitura = Persistence.createEntityManagerFactory("br.com.bacchiega.leitura", propriedades);
+            }
+            fabricas = new Fabricas(principal, leitura);
+        } catch (Throwable e) {
+            // Sem completar a criação, quem aguarda uma fábrica ficaria bloqueado para sempre
+            logger.log(Level.SEVERE, "Erro ao criar EntityManagerFactory", e);
+            criacao.completeExceptionally(e);
+            return;
+        }
+        fabricaProntaMs.set(System.currentTimeMillis() - inicioProcessoMs);
+        prontas = fabricas;
+        criacao.complete(fabricas);
+
+        if (aquecer) {
+            try {
+                aquecer();
+                aquecimentoMs.set(System.currentTimeMillis() - inicioProcessoMs);
+            } catch (RuntimeException e) {
+                logger.log(Level.WARNING, "Erro ao aquecer as consultas", e);
+            }
+        }
+    }
+
+    /**
+     * Abre a primeira sessão, o que cria o {@link PoolSessoes} e as conexões, e executa as consultas por
+     * identificador dentro e fora de uma transação, preparando-as nas duas unidades de persistência.
+     */
+    private static void aquecer() {
+        try (Sessao sessao = Sessao.abrir()) {
+            sessao.abrirTransacao();
+            sessao.clientes().obterPorID(0L);
+            sessao.empresas().obterPorID(0L);
+            sessao.desfazer();
+            sessao.clientes().obterPorID(0L);
+            sessao.empresas().obterPorID(0L);
+        }
+    }
+
+    /**
+     * Obtém as fábricas, aguardando a sua criação se necessário.
+     *
+     * @throws IllegalStateException Se a criação das fábricas falhou.
+     */
+    private static Fabricas fabricas() {
+        Fabricas fabricas = prontas;
+        if (fabricas != null) {
+            return fabricas;
+        }
+        try {
+            return iniciar(false).join();
+        } catch (CompletionException e) {
+            throw new IllegalStateException("Erro ao criar EntityManagerFactory", e.getCause());
+        }
+    }
+
+    /**
+     * Obtém a fábrica de gerenciadores de entidades da unidade principal, aguardando a sua criação se necessário.
+     *
+     * @return A fábrica de gerenciadores de entidades.
+     * @throws IllegalStateException Se a criação das fábricas falhou.
+     */
+    static EntityManagerFactory fabrica() {
+        return fabricas().principal;
+    }
+
+    /**
+     * Obtém a fábrica de gerenciadores de entidades da unidade de leitura, aguardando a sua criação se necessário.
+     *
+     * @return A fábrica da unidade de leitura, ou a mesma de {@link #fabrica()} quando ela não está ativada.
+     * @throws IllegalStateException Se a criação das fábricas falhou.
+     */
+    static EntityManagerFactory fabricaLeitura() {
+        return fabricas().leitura;
+    }
+
+    /**
+     * Registra a confirmação de uma transação. Apenas a primeira é considerada, e gera o relatório da inicialização.
+     */
+    static void transacaoConfirmada() {
+        if (primeiraTransacaoMs.get() != 0) {
+            return;
+        }
+        if (primeiraTransacaoMs.compareAndSet(0, Math.max(1, System.currentTimeMillis() - inicioProcessoMs))) {
+            String relatorio = relatorio();
+            logger.info(relatorio);
+            if (Boolean.getBoolean("inicializacao.relatorio")) {
+                System.err.println(relatorio);
+            }
+        }
+    }
+
+    /**
+     * Descreve os tempos da inicialização, contados desde o início do processo.
+     *
+     * @return O relatório da inicialização.
+     */
+    public static String relatorio() {
+        return String.format("Inicialização: fábrica %s | aquecimento %s | primeira transação %s",
+                tempo(fabricaProntaMs.get()), tempo(aquecimentoMs.get()), tempo(primeiraTransacaoMs.get()));
+    }
+
+    /**
+     * Obtém o tempo desde o início do processo até a primeira transação confirmada.
+     *
+     * @return O tempo em milissegundos, ou 0 se nenhuma transação foi confirmada.
+     */
+    public static long getTempoPrimeiraTransacaoMs() {
+        return primeiraTransacaoMs.get();
+    }
+
+    /**
+     * Formata um tempo registrado, que é 0 enquanto a etapa não termina.
+     */
+    private static String tempo(long ms) {
+        return ms == 0 ? "pendente" : ms + " ms";
+    }
+
+    /**
+     * Seleciona as propriedades de sistema que configuram a unidade de persistência.
+     *
+     * @param prefixo O prefixo que antecede o nome da propriedade, retirado do nome devolvido.
+     * @return As propriedades com prefixo {@code javax.persistence.} ou {@code hibernate.}, depois do prefixo
+     *         informado.
+     */
+    private static Map<String, String> propriedadesDoSistema(String prefixo) {
+        Map<String, String> propriedades = new HashMap<>();
+        for (String nome : System.getProperties().stringPropertyNames()) {
+            if (!nome.startsWith(prefixo)) {
+                continue;
+            }
+            String propriedade = nome.substring(prefixo.length());
+            if (propriedade.startsWith("javax.persistence.") || propriedade.startsWith("hibernate.")) {
+                propriedades.put(propriedade, System.getProperty(nome));
+            }
+        }
+        return propriedades;
+    }
+}
@@ -0,0 +1,78 @@
+package infra;
+
+import metricas.Contador;
+import metricas.Histograma;
+import metricas.Metricas;
+
+import org.hibernate.Session;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+
+/**
+ * Operações sobre transações e gerenciadores de entidades usadas pelo pacote, acompanhadas do registro das
+ * respectivas {@link Metricas}.
+ */
+final class Instrumentacao {
+
+    private static final Contador transacoesIniciadas = Metricas.contador("transacao.iniciadas");
+    private static final Histograma transacoesConfirmadas = Metricas.histograma("transacao.confirmacao");
+    private static final Contador transacoesDesfeitas = Metricas.contador("transacao.desfeitas");
+    private static final Contador gerenciadoresCriados = Metricas.contador("jpa.gerenciadores.criados");
+
+    private Instrumentacao() {
+    }
+
+    /**
+     * Cria um gerenciador de entidades.
+     */
+    static EntityManager criarGerenciador(EntityManagerFactory fabrica) {
+        EntityManager em = fabrica.createEntityManager();
+        gerenciadoresCriados.incrementar();
+        return em;
+    }
+
+    /**
+     * Cria um gerenciador de entidades para a unidade de leitura, com as entidades carregadas somente leitura, o
+     * que dispensa as cópias usadas na verificação de alterações.
+     */
+    static EntityManager criarGerenciadorLeitura(EntityManagerFactory fabrica) {
+        EntityManager em = criarGerenciador(fabrica);
+        em.unwrap(Session.class).setDefaultReadOnly(true);
+        return em;
+    }
+
+    /**
+     * Inicia uma transação no gerenciador de entidades.
+     */
+    static void iniciar(EntityManager em) {
+        em.getTransaction().begin();
+        transacoesIniciadas.incrementar();
+    }
+
+    /**
+     * Confirma a transação ativa, medindo o tempo do commit. Um commit que falha é contado como desfeito. A primeira
+     * confirmação também é registrada na {@link Inicializacao}.
+     */
+    static void confirmar(EntityManager em) {
+        long inicio = System.nanoTime();
+        try {
+            em.getTransaction().commit();
+        } catch (RuntimeException e) {
+            transacoesDesfeitas.incrementar();
+            throw e;
+        }
+        transacoesConfirmadas.registrarDesde(inicio);
+        Inicializacao.transacaoConfirmada();
+    }
+
+    /**
+     * Desfaz a transação ativa, se houver.
+     */
+    static void desfazer(EntityManager em) {
+        if (em.getTransaction().isActive()) {
+            em.getTransaction().rollback();
+            transacoesDesfeitas.incrementar();
+        }
+    }
+}
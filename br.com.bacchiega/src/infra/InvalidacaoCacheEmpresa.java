@@ -0,0 +1,104 @@
+package infra;
+
+import financeiro.CacheTabelasTaxas;
+import usuarios.Empresa;
+
+import org.hibernate.boot.Metadata;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.event.service.spi.EventListenerRegistry;
+import org.hibernate.event.spi.EventType;
+import org.hibernate.event.spi.PostCommitUpdateEventListener;
+import org.hibernate.event.spi.PostUpdateEvent;
+import org.hibernate.integrator.spi.Integrator;
+import org.hibernate.jpa.boot.spi.IntegratorProvider;
+import org.hibernate.persister.entity.EntityPersister;
+import org.hibernate.service.spi.SessionFactoryServiceRegistry;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Invalida a entrada de uma empresa no {@link CacheEmpresa} e no {@link CacheTabelasTaxas} globais depois que a
+ * transação que alterou os seus dados cadastrais é confirmada.
+ *
+ * É registrada pela {@link Inicializacao} na fábrica da unidade principal e recebe toda alteração de empresa gravada
+ * pelo Hibernate: por {@link DAO#modificar(Object)} em qualquer DAO, inclusive um {@code DAO<Empresa>} genérico, ou
+ * pela verificação de alterações das entidades carregadas na transação. Invalidar antes da confirmação deixaria uma
+ * leitura concorrente colocar a versão antiga de volta no cache. Alterações apenas do saldo e da versão, que o cache
+ * não usa, não invalidam a entrada, assim como as somas feitas diretamente no banco de dados por
+ * {@link DAOEmpresa#somarSaldo(Long, long, long)}.
+ */
+final class InvalidacaoCacheEmpresa implements Integrator, PostCommitUpdateEventListener {
+
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Propriedades da empresa cuja alteração não invalida o cache.
+     */
+    private static final Set<String> IGNORADAS = Set.of("saldo", "versao");
+
+    private InvalidacaoCacheEmpresa() {
+    }
+
+    /**
+     * Obtém o provedor que registra a invalidação na fábrica, para a propriedade
+     * {@code hibernate.integrator_provider}.
+     *
+     * @return O provedor da invalidação.
+     */
+    static IntegratorProvider provedor() {
+        return () -> List.of(new InvalidacaoCacheEmpresa());
+    }
+
+    @Override
+    public void integrate(Metadata metadata, SessionFactoryImplementor fabrica,
+                          SessionFactoryServiceRegistry servicos) {
+        servicos.getService(EventListenerRegistry.class).appendListeners(EventType.POST_COMMIT_UPDATE, this);
+    }
+
+    @Override
+    public void disintegrate(SessionFactoryImplementor fabrica, SessionFactoryServiceRegistry servicos) {
+    }
+
+    @Override
+    public boolean requiresPostCommitHandling(EntityPersister persister) {
+        return persister.getMappedClass() == Empresa.class;
+    }
+
+    @Override
+    @Deprecated
+    public boolean requiresPostCommitHanding(EntityPersister persister) {
+        return requiresPostCommitHandling(persister);
+    }
+
+    @Override
+    public void onPostUpdate(PostUpdateEvent evento) {
+        if (evento.getEntity() instanceof Empresa && alterouCadastro(evento)) {
+            CacheEmpresa.global().invalidar(evento.getId());
+            CacheTabelasTaxas.global().invalidar((Long) evento.getId(), ((Empresa) evento.getEntity()).getVersao());
+        }
+    }
+
+    @Override
+    public void onPostUpdateCommitFailed(PostUpdateEvent evento) {
+        // A transação foi desfeita e a empresa no banco de dados continua a mesma
+    }
+
+    /**
+     * Verifica se a alteração incluiu alguma propriedade usada pelo cache. Sem a lista de propriedades alteradas,
+     * considera que sim.
+     */
+    private static boolean alterouCadastro(PostUpdateEvent evento) {
+        int[] alteradas = evento.getDirtyProperties();
+        if (alteradas == null) {
+            return true;
+        }
+        String[] nomes = evento.getPersister().getPropertyNames();
+        for (int i : alteradas) {
+            if (!IGNORADAS.contains(nomes[i])) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
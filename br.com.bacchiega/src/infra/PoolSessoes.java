@@ -0,0 +1,312 @@
+package infra;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Pool limitado de gerenciadores de entidades, emprestados por meio de {@link Sessao}.
+ *
+ * Os gerenciadores são criados sob demanda até o tamanho máximo e reaproveitados depois de devolvidos, com o
+ * contexto de persistência limpo. Quando todos estão em uso, quem pede uma sessão aguarda até o tempo limite.
+ * O tamanho padrão acompanha o tamanho do pool de conexões JDBC ({@code hibernate.hikari.maximumPoolSize}), de
+ * modo que cada sessão emprestada tenha uma conexão disponível.
+ *
+ * Com uma fábrica de leitura distinta da principal, o pool também guarda os gerenciadores de entidades da unidade
+ * somente leitura usados pelas sessões. Eles não têm limite próprio, pois cada sessão usa no máximo um.
+ */
+public class PoolSessoes {
+
+    /**
+     * Tamanho usado quando o pool de conexões não informa o seu.
+     */
+    private static final int TAMANHO_PADRAO = 10;
+
+    /**
+     * Tempo máximo padrão de espera por uma sessão, em milissegundos.
+     */
+    private static final long ESPERA_PADRAO_MS = 30_000;
+
+    private static volatile PoolSessoes global;
+
+    private final EntityManagerFactory fabrica;
+    private final EntityManagerFactory fabricaLeitura;
+    private final int tamanhoMaximo;
+    private final long esperaMaximaMs;
+    private final Semaphore permissoes;
+    private final Queue<EntityManager> ociosos = new ConcurrentLinkedQueue<>();
+    private final Queue<EntityManager> ociososLeitura = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger criados = new AtomicInteger();
+    private final AtomicInteger emUso = new AtomicInteger();
+    private final AtomicInteger aguardando = new AtomicInteger();
+    private final AtomicLong emprestimos = new AtomicLong();
+    private final AtomicLong esperas = new AtomicLong();
+    private final AtomicLong tempoEsperaNanos = new AtomicLong();
+    private final AtomicLong esgotamentos = new AtomicLong();
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link PoolSessoes}.
+     *
+     * @param fabrica A fábrica usada para criar os gerenciadores de entidades.
+     * @param tamanhoMaximo A quantidade máxima de gerenciadores de entidades.
+     * @param esperaMaximaMs O tempo máximo de espera por uma sessão, em milissegundos.
+     * @throws IllegalArgumentException Se o tamanho ou o tempo de espera forem inválidos.
+     */
+    public PoolSessoes(EntityManagerFactory fabrica, int tamanhoMaximo, long esperaMaximaMs) {
+        this(fabrica, fabrica, tamanhoMaximo, esperaMaximaMs);
+    }
+
+    /**
+     * Construtor que separa as leituras feitas fora de uma transação em outra unidade de persistência.
+     *
+     * @param fabrica A fábrica usada para criar os gerenciadores de entidades.
+     * @param fabricaLeitura A fábrica da unidade somente leitura, ou a mesma fábrica principal para não separar as
+     *                       leituras.
+     * @param tamanhoMaximo A quantidade máxima de gerenciadores de entidades.
+     * @param esperaMaximaMs O tempo máximo de espera por uma sessão, em milissegundos.
+     * @throws IllegalArgumentException Se o tamanho ou o tempo de espera forem inválidos.
+     */
+    public PoolSessoes(EntityManagerFactory fabrica, EntityManagerFactory fabricaLeitura, int tamanhoMaximo,
+                       long esperaMaximaMs) {
+        if (tamanhoMaximo <= 0 || esperaMaximaMs < 0) {
+            throw new IllegalArgumentException("Configuração de pool inválida");
+        }
+        this.fabrica = fabrica;
+        this.fabricaLeitura = fabricaLeitura;
+        this.tamanhoMaximo = tamanhoMaximo;
+        this.esperaMaximaMs = esperaMaximaMs;
+        this.permissoes = new Semaphore(tamanhoMaximo, true);
+    }
+
+    /**
+     * Obtém o pool compartilhado pela aplicação, criando-o no primeiro acesso.
+     *
+     * @return O pool de sessões global.
+     */
+    public static PoolSessoes global() {
+        PoolSessoes pool = global;
+        if (pool == null) {
+            synchronized (PoolSessoes.class) {
+                pool = global;
+                if (pool == null) {
+                    EntityManagerFactory fabrica = DAO.fabrica();
+                    pool = new PoolSessoes(fabrica, DAO.fabricaLeitura(), tamanhoConfigurado(fabrica), ESPERA_PADRAO_MS);
+                    global = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Empresta uma sessão do pool, aguardando até o tempo limite caso todas estejam em uso.
+     *
+     * @return A sessão emprestada, que deve ser fechada para voltar ao pool.
+     * @throws IllegalStateException Se nenhuma sessão ficar disponível dentro do tempo limite.
+     */
+    public Sessao abrir() {
+        if (!permissoes.tryAcquire()) {
+            aguardar();
+        }
+
+        EntityManager em = ociosos.poll();
+        try {
+            if (em == null || !em.isOpen()) {
+                em = Instrumentacao.criarGerenciador(fabrica);
+                criados.incrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            permissoes.release();
+            throw e;
+        }
+        emUso.incrementAndGet();
+        emprestimos.incrementAndGet();
+        return new Sessao(this, em);
+    }
+
+    /**
+     * Aguarda uma permissão do pool, registrando a espera nas estatísticas.
+     */
+    private void aguardar() {
+        esperas.incrementAndGet();
+        aguardando.incrementAndGet();
+        long inicio = System.nanoTime();
+        boolean obtida;
+        try {
+            obtida = permissoes.tryAcquire(esperaMaximaMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Espera por sessão interrompida", e);
+        } finally {
+            aguardando.decrementAndGet();
+            tempoEsperaNanos.addAndGet(System.nanoTime() - inicio);
+        }
+        if (!obtida) {
+            esgotamentos.incrementAndGet();
+            throw new IllegalStateException("Pool de sessões esgotado");
+        }
+    }
+
+    /**
+     * Recebe de volta o gerenciador de entidades de uma sessão fechada.
+     *
+     * Transações esquecidas abertas são desfeitas e o contexto de persistência é limpo antes de o gerenciador
+     * voltar ao pool. Gerenciadores que não puderem ser reaproveitados são descartados.
+     */
+    void devolver(EntityManager em) {
+        try {
+            if (em.isOpen()) {
+                Instrumentacao.desfazer(em);
+                em.clear();
+                ociosos.offer(em);
+            } else {
+                criados.decrementAndGet();
+            }
+        } catch (RuntimeException e) {
+            criados.decrementAndGet();
+            if (em.isOpen()) {
+                em.close();
+            }
+        } finally {
+            emUso.decrementAndGet();
+            permissoes.release();
+        }
+    }
+
+    /**
+     * Indica se as leituras são separadas em uma unidade de persistência somente leitura.
+     */
+    boolean temLeitura() {
+        return fabricaLeitura != fabrica;
+    }
+
+    /**
+     * Empresta um gerenciador de entidades da unidade de leitura para uma sessão já emprestada.
+     */
+    EntityManager emprestarLeitura() {
+        EntityManager em = ociososLeitura.poll();
+        if (em == null || !em.isOpen()) {
+            em = Instrumentacao.criarGerenciadorLeitura(fabricaLeitura);
+        }
+        return em;
+    }
+
+    /**
+     * Recebe de volta o gerenciador de entidades da unidade de leitura de uma sessão fechada, com o contexto de
+     * persistência limpo.
+     */
+    void devolverLeitura(EntityManager em) {
+        try {
+            if (em.isOpen()) {
+                em.clear();
+                ociososLeitura.offer(em);
+            }
+        } catch (RuntimeException e) {
+            if (em.isOpen()) {
+                em.close();
+            }
+        }
+    }
+
+    /**
+     * Lê o tamanho do pool de conexões configurado na unidade de persistência.
+     */
+    private static int tamanhoConfigurado(EntityManagerFactory fabrica) {
+        Object valor = fabrica.getProperties().get("hibernate.hikari.maximumPoolSize");
+        if (valor == null) {
+            return TAMANHO_PADRAO;
+        }
+        try {
+            return Integer.parseInt(valor.toString().trim());
+        } catch (NumberFormatException e) {
+            return TAMANHO_PADRAO;
+        }
+    }
+
+    /**
+     * Obtém a quantidade máxima de sessões simultâneas.
+     *
+     * @return O tamanho máximo do pool.
+     */
+    public int getTamanhoMaximo() {
+        return tamanhoMaximo;
+    }
+
+    /**
+     * Obtém a quantidade de gerenciadores de entidades já criados e ainda vivos.
+     *
+     * @return A quantidade de gerenciadores criados.
+     */
+    public int getCriados() {
+        return criados.get();
+    }
+
+    /**
+     * Obtém a quantidade de sessões emprestadas no momento.
+     *
+     * @return A quantidade de sessões em uso.
+     */
+    public int getEmUso() {
+        return emUso.get();
+    }
+
+    /**
+     * Obtém a quantidade de pedidos aguardando uma sessão no momento.
+     *
+     * @return A quantidade de pedidos em espera.
+     */
+    public int getAguardando() {
+        return aguardando.get();
+    }
+
+    /**
+     * Obtém a fração do pool em uso, entre 0 e 1.
+     *
+     * @return A saturação do pool.
+     */
+    public double getSaturacao() {
+        return (double) emUso.get() / tamanhoMaximo;
+    }
+
+    /**
+     * Obtém a quantidade total de sessões emprestadas desde a criação do pool.
+     *
+     * @return A quantidade de empréstimos.
+     */
+    public long getEmprestimos() {
+        return emprestimos.get();
+    }
+
+    /**
+     * Obtém a quantidade de empréstimos que precisaram aguardar por estar o pool saturado.
+     *
+     * @return A quantidade de esperas.
+     */
+    public long getEsperas() {
+        return esperas.get();
+    }
+
+    /**
+     * Obtém o tempo total gasto aguardando sessões.
+     *
+     * @return O tempo total de espera, em nanossegundos.
+     */
+    public long getTempoEsperaNanos() {
+        return tempoEsperaNanos.get();
+    }
+
+    /**
+     * Obtém a quantidade de pedidos recusados por esgotamento do tempo de espera.
+     *
+     * @return A quantidade de esgotamentos.
+     */
+    public long getEsgotamentos() {
+        return esgotamentos.get();
+    }
+}
@@ -0,0 +1,173 @@
+package infra;
+
+import javax.persistence.EntityManager;
+
+/**
+ * Unidade de trabalho sobre um gerenciador de entidades emprestado do {@link PoolSessoes}.
+ *
+ * Os DAOs obtidos da sessão compartilham o mesmo gerenciador de entidades e, portanto, a mesma transação.
+ * A sessão deve ser fechada ao final do uso, de preferência com {@code try-with-resources}; ao fechar, uma
+ * transação ainda aberta é desfeita e o gerenciador volta ao pool.
+ *
+ * Quando a unidade de persistência somente leitura está ativada, as leituras feitas fora de uma transação usam um
+ * segundo gerenciador de entidades, também emprestado do pool no primeiro uso e devolvido junto com o principal.
+ */
+public class Sessao implements AutoCloseable {
+
+    private final PoolSessoes pool;
+    private final EntityManager em;
+    private EntityManager emLeitura;
+    private boolean leituraNaPrimaria;
+    private DAOCliente clientes;
+    private DAOEmpresa empresas;
+    private DAOReceita receitas;
+    private DAOIdempotencia idempotencia;
+    private boolean fechada;
+
+    /**
+     * Construtor usado pelo {@link PoolSessoes} ao emprestar um gerenciador de entidades.
+     */
+    Sessao(PoolSessoes pool, EntityManager em) {
+        this.pool = pool;
+        this.em = em;
+    }
+
+    /**
+     * Abre uma sessão a partir do pool global.
+     *
+     * @return A sessão aberta.
+     */
+    public static Sessao abrir() {
+        return PoolSessoes.global().abrir();
+    }
+
+    /**
+     * Obtém o DAO de clientes desta sessão.
+     *
+     * @return O DAO de clientes.
+     */
+    public DAOCliente clientes() {
+        if (clientes == null) {
+            clientes = new DAOCliente(this);
+        }
+        return clientes;
+    }
+
+    /**
+     * Obtém o DAO de empresas desta sessão.
+     *
+     * @return O DAO de empresas.
+     */
+    public DAOEmpresa empresas() {
+        if (empresas == null) {
+            empresas = new DAOEmpresa(this);
+        }
+        return empresas;
+    }
+
+    /**
+     * Obtém o DAO de receitas de taxas desta sessão.
+     *
+     * @return O DAO de receitas.
+     */
+    public DAOReceita receitas() {
+        if (receitas == null) {
+            receitas = new DAOReceita(this);
+        }
+        return receitas;
+    }
+
+    /**
+     * Obtém o DAO de chaves de idempotência desta sessão.
+     *
+     * @return O DAO de chaves de idempotência.
+     */
+    public DAOIdempotencia idempotencia() {
+        if (idempotencia == null) {
+            idempotencia = new DAOIdempotencia(this);
+        }
+        return idempotencia;
+    }
+
+    /**
+     * Mantém as leituras da sessão na unidade de persistência principal mesmo fora de uma transação.
+     *
+     * Use quando a leitura precisa refletir uma gravação recém-confirmada, que pode ainda não ter chegado à
+     * réplica, ou quando o valor lido será a base de uma gravação posterior.
+     *
+     * @return A própria sessão para encadeamento de métodos.
+     */
+    public Sessao lerDaPrimaria() {
+        leituraNaPrimaria = true;
+        return this;
+    }
+
+    /**
+     * Inicia uma transação na sessão.
+     *
+     * @return A própria sessão para encadeamento de métodos.
+     */
+    public Sessao abrirTransacao() {
+        Instrumentacao.iniciar(em);
+        return this;
+    }
+
+    /**
+     * Confirma a transação ativa da sessão.
+     *
+     * @return A própria sessão para encadeamento de métodos.
+     */
+    public Sessao confirmar() {
+        Instrumentacao.confirmar(em);
+        return this;
+    }
+
+    /**
+     * Desfaz a transação ativa da sessão, se houver.
+     *
+     * @return A própria sessão para encadeamento de métodos.
+     */
+    public Sessao desfazer() {
+        Instrumentacao.desfazer(em);
+        return this;
+    }
+
+    /**
+     * Devolve o gerenciador de entidades ao pool. Chamadas repetidas não têm efeito.
+     */
+    @Override
+    public void close() {
+        if (!fechada) {
+            fechada = true;
+            if (emLeitura != null) {
+                pool.devolverLeitura(emLeitura);
+            }
+            pool.devolver(em);
+        }
+    }
+
+    /**
+     * Obtém o gerenciador de entidades da sessão.
+     */
+    EntityManager gerenciador() {
+        if (fechada) {
+            throw new IllegalStateException("Sessão fechada");
+        }
+        return em;
+    }
+
+    /**
+     * Obtém o gerenciador de entidades que deve atender uma leitura: o da unidade de leitura quando ela está
+     * ativada, não há transação ativa e as leituras não foram mantidas na principal; caso contrário, o principal.
+     */
+    EntityManager gerenciadorLeitura() {
+        EntityManager principal = gerenciador();
+        if (leituraNaPrimaria || !pool.temLeitura() || principal.getTransaction().isActive()) {
+            return principal;
+        }
+        if (emLeitura == null) {
+            emLeitura = pool.emprestarLeitura();
+        }
+        return emLeitura;
+    }
+}
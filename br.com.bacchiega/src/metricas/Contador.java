@@ -0,0 +1,28 @@
+package metricas;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Contador de eventos seguro para uso concorrente, com custo de incremento baixo mesmo sob disputa.
+ */
+public class Contador implements ContadorMBean {
+
+    private final LongAdder valor = new LongAdder();
+
+    /**
+     * Soma um ao contador.
+     */
+    public void incrementar() {
+        valor.increment();
+    }
+
+    /**
+     * Obtém o total de eventos contados.
+     *
+     * @return O total de eventos.
+     */
+    @Override
+    public long getValor() {
+        return valor.sum();
+    }
+}
@@ -0,0 +1,9 @@
+package metricas;
+
+/**
+ * Interface de gerenciamento JMX de um {@link Contador}.
+ */
+public interface ContadorMBean {
+
+    long getValor();
+}
@@ -0,0 +1,132 @@
+package metricas;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Histograma de latências em nanossegundos, com faixas de largura logarítmica.
+ *
+ * Cada potência de dois é dividida em {@value #SUBFAIXAS} faixas iguais, o que mantém o erro relativo dos percentis
+ * abaixo de 1/{@value #SUBFAIXAS} em toda a escala, de nanossegundos a horas, com um vetor fixo de contadores.
+ * Registrar uma medida não cria objetos nem usa travas: são apenas incrementos atômicos, o que permite manter o
+ * histograma ligado em produção. Os percentis são calculados sobre tudo o que foi registrado desde a criação.
+ */
+public class Histograma implements HistogramaMBean {
+
+    private static final int BITS_SUBFAIXA = 4;
+    private static final int SUBFAIXAS = 1 << BITS_SUBFAIXA;
+    private static final int QUANTIDADE_FAIXAS = (64 - BITS_SUBFAIXA) * SUBFAIXAS;
+
+    private final AtomicLongArray faixas = new AtomicLongArray(QUANTIDADE_FAIXAS);
+    private final LongAdder quantidade = new LongAdder();
+    private final LongAdder soma = new LongAdder();
+    private final AtomicLong maximo = new AtomicLong();
+
+    /**
+     * Registra uma medida.
+     *
+     * @param nanos A duração medida, em nanossegundos; valores negativos são tratados como zero.
+     */
+    public void registrar(long nanos) {
+        long valor = Math.max(0, nanos);
+        faixas.incrementAndGet(faixa(valor));
+        quantidade.increment();
+        soma.add(valor);
+        if (valor > maximo.get()) {
+            maximo.accumulateAndGet(valor, Math::max);
+        }
+    }
+
+    /**
+     * Registra o tempo decorrido desde o instante informado.
+     *
+     * @param inicioNanos O instante inicial, obtido com {@link System#nanoTime()}.
+     */
+    public void registrarDesde(long inicioNanos) {
+        registrar(System.nanoTime() - inicioNanos);
+    }
+
+    /**
+     * Calcula um percentil das medidas registradas.
+     *
+     * @param fracao A fração desejada, entre {@code 0} e {@code 1} (por exemplo, {@code 0.99}).
+     * @return O valor aproximado do percentil, em nanossegundos, ou {@code 0} se não houver medidas.
+     */
+    public long percentil(double fracao) {
+        long[] copia = new long[QUANTIDADE_FAIXAS];
+        long total = 0;
+        for (int i = 0; i < QUANTIDADE_FAIXAS; i++) {
+            copia[i] = faixas.get(i);
+            total += copia[i];
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long alvo = Math.max(1, (long) Math.ceil(fracao * total));
+        long acumulado = 0;
+        for (int i = 0; i < QUANTIDADE_FAIXAS; i++) {
+            acumulado += copia[i];
+            if (acumulado >= alvo) {
+                return Math.min(meioDaFaixa(i), maximo.get());
+            }
+        }
+        return maximo.get();
+    }
+
+    @Override
+    public long getQuantidade() {
+        return quantidade.sum();
+    }
+
+    @Override
+    public double getMediaMicros() {
+        long total = quantidade.sum();
+        return total == 0 ? 0 : soma.sum() / 1e3 / total;
+    }
+
+    @Override
+    public double getP50Micros() {
+        return percentil(0.5) / 1e3;
+    }
+
+    @Override
+    public double getP99Micros() {
+        return percentil(0.99) / 1e3;
+    }
+
+    @Override
+    public double getP999Micros() {
+        return percentil(0.999) / 1e3;
+    }
+
+    @Override
+    public double getMaximoMicros() {
+        return maximo.get() / 1e3;
+    }
+
+    /**
+     * Calcula a faixa do valor: valores menores que {@value #SUBFAIXAS} têm faixa própria; os demais são agrupados
+     * pela posição do bit mais alto e pelos {@value #BITS_SUBFAIXA} bits seguintes.
+     */
+    private static int faixa(long valor) {
+        if (valor < SUBFAIXAS) {
+            return (int) valor;
+        }
+        int expoente = 63 - Long.numberOfLeadingZeros(valor);
+        int subfaixa = (int) (valor >>> (expoente - BITS_SUBFAIXA)) & (SUBFAIXAS - 1);
+        return (expoente - BITS_SUBFAIXA + 1) * SUBFAIXAS + subfaixa;
+    }
+
+    /**
+     * Calcula o valor central da faixa, usado como representante das medidas que caíram nela.
+     */
+    private static long meioDaFaixa(int faixa) {
+        if (faixa < SUBFAIXAS) {
+            return faixa;
+        }
+        int deslocamento = faixa / SUBFAIXAS - 1;
+        long inicio = (long) (SUBFAIXAS + faixa % SUBFAIXAS) << deslocamento;
+        return inicio + ((1L << deslocamento) >>> 1);
+    }
+}
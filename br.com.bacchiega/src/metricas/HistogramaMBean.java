@@ -0,0 +1,19 @@
+package metricas;
+
+/**
+ * Interface de gerenciamento JMX de um {@link Histograma}. Os tempos são expostos em microssegundos.
+ */
+public interface HistogramaMBean {
+
+    long getQuantidade();
+
+    double getMediaMicros();
+
+    double getP50Micros();
+
+    double getP99Micros();
+
+    double getP999Micros();
+
+    double getMaximoMicros();
+}
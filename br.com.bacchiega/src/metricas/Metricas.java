@@ -0,0 +1,123 @@
+package metricas;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Registro global de métricas operacionais.
+ *
+ * Cada {@link Histograma} e cada {@link Contador} é criado no primeiro pedido pelo nome e publicado como MBean no
+ * servidor JMX da plataforma, com o nome {@code br.com.bacchiega:type=Histograma,name=<nome>} ou
+ * {@code br.com.bacchiega:type=Contador,name=<nome>}. Quem registra medidas deve guardar a instância em um campo
+ * estático, de modo que o caminho de registro não passe pelo mapa de nomes.
+ *
+ * As mesmas métricas podem ser escritas periodicamente no log como texto, com {@link #iniciarRelatorio(long)}.
+ */
+public final class Metricas {
+
+    /**
+     * Intervalo padrão entre relatórios no log, em milissegundos.
+     */
+    public static final long INTERVALO_RELATORIO_PADRAO_MS = 60_000;
+
+    private static final String DOMINIO = "br.com.bacchiega";
+
+    private static final Logger logger = Logger.getLogger(Metricas.class.getName());
+
+    private static final Map<String, Histograma> histogramas = new ConcurrentHashMap<>();
+    private static final Map<String, Contador> contadores = new ConcurrentHashMap<>();
+
+    private static ScheduledExecutorService relatorio;
+
+    private Metricas() {
+    }
+
+    /**
+     * Obtém o histograma com o nome informado, criando-o e publicando-o no JMX se ainda não existir.
+     *
+     * @param nome O nome da métrica, por exemplo {@code dao.incluir}.
+     * @return O histograma.
+     */
+    public static Histograma histograma(String nome) {
+        return histogramas.computeIfAbsent(nome, n -> publicar(new Histograma(), "Histograma", n));
+    }
+
+    /**
+     * Obtém o contador com o nome informado, criando-o e publicando-o no JMX se ainda não existir.
+     *
+     * @param nome O nome da métrica, por exemplo {@code transacao.desfeitas}.
+     * @return O contador.
+     */
+    public static Contador contador(String nome) {
+        return contadores.computeIfAbsent(nome, n -> publicar(new Contador(), "Contador", n));
+    }
+
+    /**
+     * Monta o texto com o estado atual de todas as métricas, em ordem de nome.
+     *
+     * @return As métricas, uma por linha.
+     */
+    public static String relatorio() {
+        StringBuilder texto = new StringBuilder();
+        for (Map.Entry<String, Histograma> entrada : new TreeMap<>(histogramas).entrySet()) {
+            Histograma h = entrada.getValue();
+            texto.append(String.format("%s quantidade=%d media_us=%.1f p50_us=%.1f p99_us=%.1f p999_us=%.1f max_us=%.1f%n",
+                    entrada.getKey(), h.getQuantidade(), h.getMediaMicros(), h.getP50Micros(), h.getP99Micros(),
+                    h.getP999Micros(), h.getMaximoMicros()));
+        }
+        for (Map.Entry<String, Contador> entrada : new TreeMap<>(contadores).entrySet()) {
+            texto.append(entrada.getKey()).append(" valor=").append(entrada.getValue().getValor())
+                    .append(System.lineSeparator());
+        }
+        return texto.toString();
+    }
+
+    /**
+     * Passa a escrever o {@link #relatorio()} no log, no nível {@code INFO}, no intervalo informado. Chamadas
+     * seguintes não têm efeito.
+     *
+     * @param intervaloMs O intervalo entre relatórios, em milissegundos.
+     * @throws IllegalArgumentException Se o intervalo não for positivo.
+     */
+    public static synchronized void iniciarRelatorio(long intervaloMs) {
+        if (intervaloMs <= 0) {
+            throw new IllegalArgumentException("Intervalo de relatório inválido");
+        }
+        if (relatorio != null) {
+            return;
+        }
+        relatorio = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "metricas-relatorio");
+            t.setDaemon(true);
+            return t;
+        });
+        relatorio.scheduleAtFixedRate(() -> logger.info("Métricas:" + System.lineSeparator() + relatorio()),
+                intervaloMs, intervaloMs, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Publica a métrica no servidor JMX da plataforma. Falhas são registradas no log e não impedem o uso da métrica.
+     */
+    private static <M> M publicar(M metrica, String tipo, String nome) {
+        try {
+            MBeanServer servidor = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objeto = new ObjectName(DOMINIO + ":type=" + tipo + ",name=" + nome);
+            if (!servidor.isRegistered(objeto)) {
+                servidor.registerMBean(metrica, objeto);
+            }
+        } catch (JMException | RuntimeException e) {
+            logger.log(Level.WARNING, "Não foi possível publicar a métrica " + nome + " no JMX", e);
+        }
+        return metrica;
+    }
+}
@@ -0,0 +1,37 @@
+package relatorio;
+
+/**
+ * Tamanho dos intervalos de tempo em que a receita de taxas é agregada.
+ *
+ * Os intervalos são alinhados à época Unix, em UTC: um intervalo de {@link #HORA} começa sempre em uma hora cheia.
+ */
+public enum Granularidade {
+    MINUTO(60_000L),
+    HORA(3_600_000L),
+    DIA(86_400_000L);
+
+    private final long duracaoMs;
+
+    Granularidade(long duracaoMs) {
+        this.duracaoMs = duracaoMs;
+    }
+
+    /**
+     * Obtém a duração de cada intervalo.
+     *
+     * @return A duração, em milissegundos.
+     */
+    public long getDuracaoMs() {
+        return duracaoMs;
+    }
+
+    /**
+     * Calcula o início do intervalo que contém o instante informado.
+     *
+     * @param instanteMs O instante, em milissegundos desde a época.
+     * @return O início do intervalo, em milissegundos desde a época.
+     */
+    public long inicio(long instanteMs) {
+        return Math.floorDiv(instanteMs, duracaoMs) * duracaoMs;
+    }
+}
@@ -0,0 +1,174 @@
+package relatorio;
+
+import javax.persistence.*;
+
+/**
+ * Receita de taxas de uma empresa em um intervalo de tempo.
+ *
+ * Esta classe é uma entidade JPA que mapeia a tabela 'ReceitaEmpresa' no banco de dados. Cada linha é um agregado
+ * mantido de forma incremental por {@link ReceitaTaxas}, de modo que consultar a receita de um período lê apenas uma
+ * linha por intervalo, sem percorrer as operações.
+ *
+ * Atributos:
+ * - id: Identificador único do agregado.
+ * - idEmpresa: Identificador da empresa.
+ * - granularidade: Tamanho do intervalo.
+ * - inicio: Início do intervalo, em milissegundos desde a época.
+ * - quantidade: Quantidade de operações aplicadas no intervalo.
+ * - volume: Soma dos valores das operações, em centavos.
+ * - taxas: Soma das taxas cobradas, em centavos.
+ */
+@Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_receita_intervalo",
+        columnNames = {"idEmpresa", "granularidade", "inicio"}))
+public class ReceitaEmpresa {
+
+    /**
+     * Identificador único do agregado, gerado a partir da sequência {@code receita_seq}.
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "receita_seq")
+    @SequenceGenerator(name = "receita_seq", sequenceName = "receita_seq", allocationSize = 100)
+    private Long id;
+
+    /**
+     * Identificador da empresa.
+     */
+    @Column(nullable = false)
+    private long idEmpresa;
+
+    /**
+     * Tamanho do intervalo.
+     */
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 8)
+    private Granularidade granularidade;
+
+    /**
+     * Início do intervalo, em milissegundos desde a época.
+     */
+    @Column(nullable = false)
+    private long inicio;
+
+    /**
+     * Quantidade de operações aplicadas no intervalo.
+     */
+    @Column(nullable = false)
+    private long quantidade;
+
+    /**
+     * Soma dos valores das operações, em centavos.
+     *
+     * É gravada como inteiro, em centavos, para que {@link infra.DAOReceita#acumular(java.util.Collection)} some as
+     * parciais sem erros de arredondamento.
+     */
+    @Column(nullable = false)
+    private long volume;
+
+    /**
+     * Soma das taxas cobradas, em centavos, gravada como inteiro.
+     */
+    @Column(nullable = false)
+    private long taxas;
+
+    /**
+     * Construtor padrão para a criação de instâncias da entidade {@link ReceitaEmpresa}.
+     */
+    public ReceitaEmpresa() {
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da entidade {@link ReceitaEmpresa}.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @param granularidade O tamanho do intervalo.
+     * @param inicio O início do intervalo, em milissegundos desde a época.
+     * @param quantidade A quantidade de operações aplicadas no intervalo.
+     * @param volume A soma dos valores das operações, em centavos.
+     * @param taxas A soma das taxas cobradas, em centavos.
+     */
+    public ReceitaEmpresa(long idEmpresa, Granularidade granularidade, long inicio, long quantidade, long volume, long taxas) {
+        this.idEmpresa = idEmpresa;
+        this.granularidade = granularidade;
+        this.inicio = inicio;
+        this.quantidade = quantidade;
+        this.volume = volume;
+        this.taxas = taxas;
+    }
+
+    /**
+     * Obtém o identificador único do agregado.
+     *
+     * @return O identificador único do agregado.
+     */
+    public Long getId() {
+        return id;
+    }
+
+    /**
+     * Obtém o identificador da empresa.
+     *
+     * @return O identificador da empresa.
+     */
+    public long getIdEmpresa() {
+        return idEmpresa;
+    }
+
+    /**
+     * Obtém o tamanho do intervalo.
+     *
+     * @return O tamanho do intervalo.
+     */
+    public Granularidade getGranularidade() {
+        return granularidade;
+    }
+
+    /**
+     * Obtém o início do intervalo.
+     *
+     * @return O início do intervalo, em milissegundos desde a época.
+     */
+    public long getInicio() {
+        return inicio;
+    }
+
+    /**
+     * Obtém a quantidade de operações aplicadas no intervalo.
+     *
+     * @return A quantidade de operações.
+     */
+    public long getQuantidade() {
+        return quantidade;
+    }
+
+    /**
+     * Obtém a soma dos valores das operações.
+     *
+     * @return A soma dos valores, em centavos.
+     */
+    public long getVolume() {
+        return volume;
+    }
+
+    /**
+     * Obtém a soma das taxas cobradas.
+     *
+     * @return A soma das taxas, em centavos.
+     */
+    public long getTaxas() {
+        return taxas;
+    }
+
+    /**
+     * Soma ao agregado as operações de outro agregado do mesmo intervalo.
+     *
+     * @param quantidade A quantidade de operações.
+     * @param volume A soma dos valores, em centavos.
+     * @param taxas A soma das taxas, em centavos.
+     */
+    public void acumular(long quantidade, long volume, long taxas) {
+        this.quantidade += quantidade;
+        this.volume += volume;
+        this.taxas += taxas;
+    }
+}
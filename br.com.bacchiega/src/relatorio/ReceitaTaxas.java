@@ -0,0 +1,279 @@
+package relatorio;
+
+import infra.DAOReceita;
+import infra.Sessao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Receita de taxas por empresa, agregada de forma incremental em intervalos de minuto, hora e dia.
+ *
+ * Cada operação aplicada soma uma unidade à quantidade, o valor ao volume e a taxa às taxas dos três intervalos que
+ * a contêm. As somas ficam em tabelas primitivas em memória, divididas em partes por empresa para reduzir a disputa
+ * entre threads, e são acumuladas periodicamente nas linhas de {@link ReceitaEmpresa} no banco de dados. Assim, a
+ * receita de um período é obtida lendo uma linha por intervalo, sem percorrer o histórico de operações.
+ *
+ * As consultas combinam o que já foi gravado com o que ainda está em memória. Somas ainda não gravadas se perdem se
+ * o processo terminar de forma abrupta; um encerramento normal as grava.
+ */
+public class ReceitaTaxas implements AutoCloseable {
+
+    /**
+     * Intervalo padrão entre gravações no banco de dados, em milissegundos.
+     */
+    public static final long INTERVALO_GRAVACAO_PADRAO_MS = 60_000;
+
+    /**
+     * Quantidade de partes em que as empresas são distribuídas. Deve ser uma potência de dois.
+     */
+    private static final int QUANTIDADE_PARTES = 16;
+
+    /**
+     * Quantidade de agregados gravados entre duas sincronizações do contexto de persistência.
+     */
+    private static final int TAMANHO_LOTE = 500;
+
+    private static final Granularidade[] GRANULARIDADES = Granularidade.values();
+
+    private static final Logger logger = Logger.getLogger(ReceitaTaxas.class.getName());
+
+    private static volatile ReceitaTaxas global;
+
+    /**
+     * Somas ainda não gravadas de um grupo de empresas, uma tabela por granularidade. O campo é protegido pela
+     * própria parte.
+     */
+    private static final class Parte {
+        private TabelaReceitas[] pendentes = novasTabelas();
+    }
+
+    private final Parte[] partes = new Parte[QUANTIDADE_PARTES];
+    private final Object travaGravacao = new Object();
+    private final ScheduledExecutorService agendador;
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link ReceitaTaxas}.
+     *
+     * @param intervaloGravacaoMs O intervalo entre gravações no banco de dados, em milissegundos; com {@code 0}, as
+     *                            somas só são gravadas por chamadas a {@link #gravar()}.
+     * @throws IllegalArgumentException Se o intervalo for negativo.
+     */
+    public ReceitaTaxas(long intervaloGravacaoMs) {
+        if (intervaloGravacaoMs < 0) {
+            throw new IllegalArgumentException("Intervalo de gravação inválido");
+        }
+        for (int i = 0; i < QUANTIDADE_PARTES; i++) {
+            partes[i] = new Parte();
+        }
+
+        if (intervaloGravacaoMs > 0) {
+            agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "receita-taxas-gravacao");
+                t.setDaemon(true);
+                return t;
+            });
+            agendador.scheduleWithFixedDelay(this::gravarAgendado,
+                    intervaloGravacaoMs, intervaloGravacaoMs, TimeUnit.MILLISECONDS);
+        } else {
+            agendador = null;
+        }
+    }
+
+    /**
+     * Obtém a instância compartilhada, criada no primeiro uso com o intervalo de gravação padrão. As somas
+     * pendentes são gravadas no encerramento normal do processo.
+     *
+     * @return A instância global.
+     */
+    public static ReceitaTaxas global() {
+        ReceitaTaxas receita = global;
+        if (receita == null) {
+            synchronized (ReceitaTaxas.class) {
+                receita = global;
+                if (receita == null) {
+                    ReceitaTaxas nova = new ReceitaTaxas(INTERVALO_GRAVACAO_PADRAO_MS);
+                    Runtime.getRuntime().addShutdownHook(new Thread(nova::close, "receita-taxas-encerramento"));
+                    global = nova;
+                    receita = nova;
+                }
+            }
+        }
+        return receita;
+    }
+
+    /**
+     * Soma uma operação aplicada aos agregados da empresa.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @param instanteMs O instante da operação, em milissegundos desde a época.
+     * @param valor O valor da operação, em centavos.
+     * @param taxa A taxa cobrada, em centavos.
+     */
+    public void registrar(long idEmpresa, long instanteMs, long valor, long taxa) {
+        Parte parte = parte(idEmpresa);
+        synchronized (parte) {
+            for (Granularidade granularidade : GRANULARIDADES) {
+                parte.pendentes[granularidade.ordinal()]
+                        .somar(idEmpresa, granularidade.inicio(instanteMs), 1, valor, taxa);
+            }
+        }
+    }
+
+    /**
+     * Obtém os agregados de uma empresa em um período, somando o que já foi gravado ao que ainda está em memória.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @param granularidade O tamanho dos intervalos.
+     * @param de O início do período, em milissegundos desde a época, inclusive.
+     * @param ate O fim do período, em milissegundos desde a época, exclusive.
+     * @return Os agregados dos intervalos que começam no período, em ordem de início; intervalos sem operações não
+     *         aparecem.
+     */
+    public List<ReceitaEmpresa> consultar(long idEmpresa, Granularidade granularidade, long de, long ate) {
+        // Com a trava de gravação, toda soma está ou no banco de dados ou nas tabelas pendentes, nunca nos dois
+        synchronized (travaGravacao) {
+            Map<Long, ReceitaEmpresa> porInicio = new TreeMap<>();
+            // A réplica pode ainda não ter a última gravação, que já saiu das tabelas pendentes
+            try (Sessao sessao = Sessao.abrir().lerDaPrimaria()) {
+                for (ReceitaEmpresa receita : sessao.receitas().obterPeriodo(idEmpresa, granularidade, de, ate)) {
+                    porInicio.put(receita.getInicio(), receita);
+                }
+            }
+
+            // Percorre as somas pendentes da parte, que são poucas, e não cada intervalo do período, que pode ser longo
+            Parte parte = parte(idEmpresa);
+            synchronized (parte) {
+                parte.pendentes[granularidade.ordinal()].paraCada((empresa, inicio, quantidade, volume, taxas) -> {
+                    if (empresa == idEmpresa && inicio >= de && inicio < ate) {
+                        porInicio.computeIfAbsent(inicio, k -> new ReceitaEmpresa(empresa, granularidade, k, 0, 0, 0))
+                                .acumular(quantidade, volume, taxas);
+                    }
+                });
+            }
+            return new ArrayList<>(porInicio.values());
+        }
+    }
+
+    /**
+     * Soma as taxas cobradas por uma empresa em um período.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @param granularidade O tamanho dos intervalos somados; intervalos maiores exigem menos leituras.
+     * @param de O início do período, em milissegundos desde a época, inclusive.
+     * @param ate O fim do período, em milissegundos desde a época, exclusive.
+     * @return A soma das taxas, em centavos.
+     */
+    public long totalTaxas(long idEmpresa, Granularidade granularidade, long de, long ate) {
+        long total = 0;
+        for (ReceitaEmpresa receita : consultar(idEmpresa, granularidade, de, ate)) {
+            total += receita.getTaxas();
+        }
+        return total;
+    }
+
+    /**
+     * Acumula no banco de dados, em uma única transação, todas as somas feitas desde a última gravação.
+     *
+     * Se a gravação falhar, as somas voltam para a memória e a exceção é propagada.
+     */
+    public void gravar() {
+        synchronized (travaGravacao) {
+            TabelaReceitas[][] emGravacao = new TabelaReceitas[QUANTIDADE_PARTES][];
+            boolean vazio = true;
+            for (int p = 0; p < QUANTIDADE_PARTES; p++) {
+                synchronized (partes[p]) {
+                    emGravacao[p] = partes[p].pendentes;
+                    partes[p].pendentes = novasTabelas();
+                }
+                for (TabelaReceitas tabela : emGravacao[p]) {
+                    vazio &= tabela.tamanho() == 0;
+                }
+            }
+            if (vazio) {
+                return;
+            }
+
+            try (Sessao sessao = Sessao.abrir()) {
+                DAOReceita dao = sessao.receitas();
+                sessao.abrirTransacao();
+                List<ReceitaEmpresa> lote = new ArrayList<>(TAMANHO_LOTE);
+                for (TabelaReceitas[] tabelas : emGravacao) {
+                    for (Granularidade granularidade : GRANULARIDADES) {
+                        tabelas[granularidade.ordinal()].paraCada((empresa, inicio, quantidade, volume, taxas) -> {
+                            lote.add(new ReceitaEmpresa(empresa, granularidade, inicio, quantidade, volume, taxas));
+                            if (lote.size() == TAMANHO_LOTE) {
+                                dao.acumular(lote).sincronizar();
+                                lote.clear();
+                            }
+                        });
+                    }
+                }
+                dao.acumular(lote);
+                sessao.confirmar();
+            } catch (RuntimeException e) {
+                devolver(emGravacao);
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Encerra a gravação periódica e grava as somas ainda pendentes.
+     */
+    @Override
+    public void close() {
+        if (agendador != null) {
+            agendador.shutdown();
+        }
+        try {
+            gravar();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Erro ao gravar a receita de taxas", e);
+        }
+    }
+
+    /**
+     * Executa a gravação periódica, registrando falhas sem interromper o agendamento.
+     */
+    private void gravarAgendado() {
+        try {
+            gravar();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Erro ao gravar a receita de taxas", e);
+        }
+    }
+
+    /**
+     * Devolve as somas de uma gravação que falhou para as tabelas pendentes.
+     */
+    private void devolver(TabelaReceitas[][] emGravacao) {
+        for (int p = 0; p < QUANTIDADE_PARTES; p++) {
+            synchronized (partes[p]) {
+                for (int g = 0; g < GRANULARIDADES.length; g++) {
+                    emGravacao[p][g].paraCada(partes[p].pendentes[g]::somar);
+                }
+            }
+        }
+    }
+
+    private Parte parte(long idEmpresa) {
+        long h = idEmpresa * 0x9E3779B97F4A7C15L;
+        return partes[(int) (h >>> 32) & (QUANTIDADE_PARTES - 1)];
+    }
+
+    private static TabelaReceitas[] novasTabelas() {
+        TabelaReceitas[] tabelas = new TabelaReceitas[GRANULARIDADES.length];
+        for (int i = 0; i < tabelas.length; i++) {
+            tabelas[i] = new TabelaReceitas();
+        }
+        return tabelas;
+    }
+}
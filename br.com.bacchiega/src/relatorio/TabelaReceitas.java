@@ -0,0 +1,117 @@
+package relatorio;
+
+/**
+ * Tabela de agregados indexada por (empresa, início do intervalo), com endereçamento aberto e vetores primitivos.
+ *
+ * Cada entrada guarda a quantidade de operações, o volume e as taxas de um intervalo, sem criar objetos por
+ * operação registrada. Uma posição está livre enquanto a sua quantidade for zero. A capacidade dobra quando a
+ * tabela passa de metade da ocupação. A classe não é segura para uso concorrente.
+ */
+class TabelaReceitas {
+
+    /**
+     * Função que recebe um agregado da tabela.
+     */
+    @FunctionalInterface
+    interface Visitante {
+        void visitar(long idEmpresa, long inicio, long quantidade, long volume, long taxas);
+    }
+
+    private long[] empresas;
+    private long[] inicios;
+    private long[] quantidades;
+    private long[] volumes;
+    private long[] taxas;
+    private int mascara;
+    private int tamanho;
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link TabelaReceitas}, com capacidade inicial para
+     * 32 agregados.
+     */
+    TabelaReceitas() {
+        alocar(64);
+    }
+
+    /**
+     * Soma operações ao agregado do intervalo, criando-o se necessário.
+     *
+     * @param idEmpresa O identificador da empresa.
+     * @param inicio O início do intervalo.
+     * @param quantidade A quantidade de operações, maior que zero.
+     * @param volume A soma dos valores, em centavos.
+     * @param taxa A soma das taxas, em centavos.
+     */
+    void somar(long idEmpresa, long inicio, long quantidade, long volume, long taxa) {
+        int i = posicao(idEmpresa, inicio);
+        while (quantidades[i] != 0 && (empresas[i] != idEmpresa || inicios[i] != inicio)) {
+            i = (i + 1) & mascara;
+        }
+        if (quantidades[i] == 0) {
+            empresas[i] = idEmpresa;
+            inicios[i] = inicio;
+            tamanho++;
+        }
+        quantidades[i] += quantidade;
+        volumes[i] += volume;
+        taxas[i] += taxa;
+        if (tamanho * 2 > quantidades.length) {
+            crescer();
+        }
+    }
+
+    /**
+     * Obtém a quantidade de agregados.
+     *
+     * @return A quantidade de agregados.
+     */
+    int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Percorre todos os agregados, em ordem indefinida.
+     *
+     * @param visitante A função chamada para cada agregado.
+     */
+    void paraCada(Visitante visitante) {
+        for (int i = 0; i < quantidades.length; i++) {
+            if (quantidades[i] != 0) {
+                visitante.visitar(empresas[i], inicios[i], quantidades[i], volumes[i], taxas[i]);
+            }
+        }
+    }
+
+    private void alocar(int capacidade) {
+        empresas = new long[capacidade];
+        inicios = new long[capacidade];
+        quantidades = new long[capacidade];
+        volumes = new long[capacidade];
+        taxas = new long[capacidade];
+        mascara = capacidade - 1;
+        tamanho = 0;
+    }
+
+    /**
+     * Dobra a capacidade e reinsere os agregados.
+     */
+    private void crescer() {
+        long[] empresasAntigas = empresas;
+        long[] iniciosAntigos = inicios;
+        long[] quantidadesAntigas = quantidades;
+        long[] volumesAntigos = volumes;
+        long[] taxasAntigas = taxas;
+        alocar(quantidadesAntigas.length * 2);
+        for (int j = 0; j < quantidadesAntigas.length; j++) {
+            if (quantidadesAntigas[j] != 0) {
+                somar(empresasAntigas[j], iniciosAntigos[j], quantidadesAntigas[j], volumesAntigos[j], taxasAntigas[j]);
+            }
+        }
+    }
+
+    private int posicao(long idEmpresa, long inicio) {
+        long h = (idEmpresa * 0x9E3779B97F4A7C15L) ^ inicio;
+        h *= 0xBF58476D1CE4E5B9L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
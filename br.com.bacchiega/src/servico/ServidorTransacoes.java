@@ -0,0 +1,271 @@
+package servico;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import financeiro.Dinheiro;
+import idempotencia.LimpezaIdempotencia;
+import infra.Inicializacao;
+import infra.PoolSessoes;
+import metricas.Metricas;
+import transacao.ExecutorAtomico;
+import transacao.Operacao;
+import transacao.TipoOperacao;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Serviço HTTP de longa duração que recebe saques e depósitos.
+ *
+ * Cada requisição é atendida em uma thread virtual, o que permite manter milhares de operações em andamento com
+ * poucas threads do sistema. O acesso ao banco de dados é limitado por um semáforo do mesmo tamanho do
+ * {@link PoolSessoes}: as requisições além desse limite aguardam sem ocupar uma conexão e, se a espera passar do
+ * tempo limite, recebem {@code 503}.
+ *
+ * Rotas, acessíveis apenas pelo endereço local:
+ * - {@code POST /saque?valor=10.50&cliente=1&empresa=2}
+ * - {@code POST /deposito?valor=10.50&cliente=1&empresa=2}
+ * - {@code GET /estatisticas}
+ * - {@code GET /metricas}, com o relatório de {@link Metricas}, que também é escrito no log periodicamente
+ *
+ * Os parâmetros também podem ser enviados no corpo, como formulário. A resposta é {@code ACEITA} ou {@code RECUSADA}.
+ * Uma chave de idempotência pode ser informada no cabeçalho {@code Idempotency-Key} ou no parâmetro {@code chave};
+ * repetições com a mesma chave recebem a resposta da primeira execução, sem aplicar a operação de novo. As chaves
+ * são guardadas por {@link LimpezaIdempotencia#RETENCAO_PADRAO_MS} e depois removidas periodicamente.
+ */
+public class ServidorTransacoes {
+
+    /**
+     * Porta padrão do serviço.
+     */
+    public static final int PORTA_PADRAO = 8080;
+
+    /**
+     * Tempo máximo de espera por uma vaga de acesso ao banco de dados, em milissegundos.
+     */
+    private static final long ESPERA_MAXIMA_MS = 5_000;
+
+    private static final Logger logger = Logger.getLogger(ServidorTransacoes.class.getName());
+
+    private final HttpServer servidor;
+    private final ExecutorService threads;
+    private final Semaphore acessoBanco;
+    private final ExecutorAtomico executor = new ExecutorAtomico();
+
+    private final long inicio = System.nanoTime();
+    private final LongAdder aceitas = new LongAdder();
+    private final LongAdder recusadas = new LongAdder();
+    private final LongAdder erros = new LongAdder();
+    private final LongAdder saturadas = new LongAdder();
+    private final AtomicInteger emAndamento = new AtomicInteger();
+    private final LongAdder latenciaTotalNanos = new LongAdder();
+    private final AtomicLong latenciaMaximaNanos = new AtomicLong();
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link ServidorTransacoes}.
+     *
+     * @param porta A porta em que o serviço será publicado, no endereço local.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public ServidorTransacoes(int porta) throws IOException {
+        this.acessoBanco = new Semaphore(PoolSessoes.global().getTamanhoMaximo(), true);
+        this.threads = Executors.newVirtualThreadPerTaskExecutor();
+        this.servidor = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), porta), 0);
+        servidor.setExecutor(threads);
+        servidor.createContext("/saque", troca -> atenderOperacao(troca, TipoOperacao.SAQUE));
+        servidor.createContext("/deposito", troca -> atenderOperacao(troca, TipoOperacao.DEPOSITO));
+        servidor.createContext("/estatisticas", this::atenderEstatisticas);
+        servidor.createContext("/metricas", troca -> responder(troca, 200, Metricas.relatorio()));
+    }
+
+    /**
+     * Inicia o atendimento das requisições e a remoção periódica das chaves de idempotência antigas.
+     */
+    public void iniciar() {
+        Metricas.iniciarRelatorio(Metricas.INTERVALO_RELATORIO_PADRAO_MS);
+        LimpezaIdempotencia.iniciar(LimpezaIdempotencia.RETENCAO_PADRAO_MS, LimpezaIdempotencia.INTERVALO_PADRAO_MS);
+        servidor.start();
+        logger.info("Serviço de transações ouvindo em " + servidor.getAddress());
+    }
+
+    /**
+     * Para de aceitar requisições e aguarda as operações em andamento por até o tempo informado.
+     *
+     * @param esperaSegundos O tempo máximo de espera pelas operações em andamento, em segundos.
+     */
+    public void parar(int esperaSegundos) {
+        servidor.stop(esperaSegundos);
+        threads.shutdown();
+        try {
+            threads.awaitTermination(esperaSegundos, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Atende uma requisição de saque ou depósito.
+     */
+    private void atenderOperacao(HttpExchange troca, TipoOperacao tipo) throws IOException {
+        long inicioRequisicao = System.nanoTime();
+        emAndamento.incrementAndGet();
+        try {
+            if (!"POST".equals(troca.getRequestMethod())) {
+                responder(troca, 405, "Use POST");
+                return;
+            }
+
+            Operacao operacao;
+            try {
+                Map<String, String> parametros = parametros(troca);
+                operacao = new Operacao(tipo,
+                        Dinheiro.centavos(obrigatorio(parametros, "valor")),
+                        Long.parseLong(obrigatorio(parametros, "cliente")),
+                        Long.parseLong(obrigatorio(parametros, "empresa")),
+                        chaveIdempotencia(troca, parametros));
+            } catch (IllegalArgumentException | ArithmeticException e) {
+                responder(troca, 400, "Parâmetros inválidos: " + e.getMessage());
+                return;
+            }
+
+            if (!acessoBanco.tryAcquire(ESPERA_MAXIMA_MS, TimeUnit.MILLISECONDS)) {
+                saturadas.increment();
+                responder(troca, 503, "Serviço saturado");
+                return;
+            }
+            boolean aplicada;
+            try {
+                aplicada = executor.executar(operacao);
+            } finally {
+                acessoBanco.release();
+            }
+
+            responder(troca, 200, aplicada ? "ACEITA" : "RECUSADA");
+            // Apenas as operações concluídas entram na latência, que é dividida pela quantidade delas
+            registrarLatencia(System.nanoTime() - inicioRequisicao);
+            (aplicada ? aceitas : recusadas).increment();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            responder(troca, 503, "Serviço encerrando");
+        } catch (RuntimeException e) {
+            erros.increment();
+            logger.log(Level.SEVERE, "Erro ao executar operação", e);
+            responder(troca, 500, "Erro ao executar operação");
+        } finally {
+            emAndamento.decrementAndGet();
+        }
+    }
+
+    /**
+     * Atende a consulta de estatísticas do serviço.
+     */
+    private void atenderEstatisticas(HttpExchange troca) throws IOException {
+        responder(troca, 200, estatisticas());
+    }
+
+    /**
+     * Monta o texto com as estatísticas de vazão e latência do serviço.
+     *
+     * As latências média e máxima consideram apenas as operações aceitas ou recusadas; as requisições inválidas,
+     * recusadas por saturação ou terminadas em erro não entram nelas.
+     *
+     * @return As estatísticas, uma por linha.
+     */
+    public String estatisticas() {
+        long aceitasTotal = aceitas.sum();
+        long recusadasTotal = recusadas.sum();
+        long concluidas = aceitasTotal + recusadasTotal;
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        double latenciaMediaMs = concluidas == 0 ? 0 : latenciaTotalNanos.sum() / 1e6 / concluidas;
+
+        return String.format("aceitas=%d%nrecusadas=%d%nerros=%d%nsaturadas=%d%nem_andamento=%d%n"
+                        + "vazao_por_segundo=%.1f%nlatencia_media_ms=%.3f%nlatencia_maxima_ms=%.3f%n",
+                aceitasTotal, recusadasTotal, erros.sum(), saturadas.sum(), emAndamento.get(),
+                concluidas / segundos, latenciaMediaMs, latenciaMaximaNanos.get() / 1e6);
+    }
+
+    private void registrarLatencia(long nanos) {
+        latenciaTotalNanos.add(nanos);
+        latenciaMaximaNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Lê os parâmetros da URL e, se houver, do corpo da requisição em formato de formulário.
+     */
+    private static Map<String, String> parametros(HttpExchange troca) throws IOException {
+        Map<String, String> parametros = new HashMap<>();
+        decodificar(troca.getRequestURI().getRawQuery(), parametros);
+        try (InputStream corpo = troca.getRequestBody()) {
+            decodificar(new String(corpo.readAllBytes(), StandardCharsets.UTF_8), parametros);
+        }
+        return parametros;
+    }
+
+    private static void decodificar(String texto, Map<String, String> parametros) {
+        if (texto == null || texto.isBlank()) {
+            return;
+        }
+        for (String par : texto.trim().split("&")) {
+            int igual = par.indexOf('=');
+            if (igual > 0) {
+                parametros.put(URLDecoder.decode(par.substring(0, igual), StandardCharsets.UTF_8),
+                        URLDecoder.decode(par.substring(igual + 1), StandardCharsets.UTF_8));
+            }
+        }
+    }
+
+    /**
+     * Obtém a chave de idempotência do cabeçalho {@code Idempotency-Key} ou, na falta dele, do parâmetro {@code chave}.
+     */
+    private static String chaveIdempotencia(HttpExchange troca, Map<String, String> parametros) {
+        String chave = troca.getRequestHeaders().getFirst("Idempotency-Key");
+        return chave != null ? chave : parametros.get("chave");
+    }
+
+    private static String obrigatorio(Map<String, String> parametros, String nome) {
+        String valor = parametros.get(nome);
+        if (valor == null || valor.isBlank()) {
+            throw new IllegalArgumentException("'" + nome + "' não informado");
+        }
+        return valor;
+    }
+
+    private static void responder(HttpExchange troca, int status, String texto) throws IOException {
+        byte[] corpo = (texto.endsWith("\n") ? texto : texto + "\n").getBytes(StandardCharsets.UTF_8);
+        troca.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        troca.sendResponseHeaders(status, corpo.length);
+        try (OutputStream saida = troca.getResponseBody()) {
+            saida.write(corpo);
+        }
+    }
+
+    /**
+     * Inicia o serviço e o mantém em execução até o processo ser encerrado.
+     *
+     * @param args A porta do serviço, opcional.
+     * @throws IOException Se não for possível abrir a porta.
+     */
+    public static void main(String[] args) throws IOException {
+        Inicializacao.iniciar();
+        int porta = args.length > 0 ? Integer.parseInt(args[0]) : PORTA_PADRAO;
+        ServidorTransacoes servidor = new ServidorTransacoes(porta);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> servidor.parar(5)));
+        servidor.iniciar();
+    }
+}
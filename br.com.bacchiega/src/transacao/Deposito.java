@@ -1,10 +1,5 @@
 package transacao;
 
-import infra.DAOCliente;
-import infra.DAOEmpresa;
-import usuarios.Cliente;
-import usuarios.Empresa;
-
 /**
  * Representa uma operação de depósito entre um cliente e uma empresa.
  *
@@ -12,92 +7,71 @@ import usuarios.Empresa;
  */
 public class Deposito {
 
-    private double valor;
+    private long valor;
     private Long id_cliente;
     private Long id_empresa;
+    private String chaveIdempotencia;
+    private ExecutorAtomico executor = new ExecutorAtomico();
 
     /**
      * Construtor para a criação de uma nova instância da classe {@link Deposito}.
      *
-     * @param valor O valor a ser depositado.
+     * @param valor O valor a ser depositado, em centavos.
      * @param id_cliente O identificador do cliente que está fazendo o depósito.
      * @param id_empresa O identificador da empresa que receberá o depósito.
      */
-    public Deposito(double valor, Long id_cliente, Long id_empresa) {
+    public Deposito(long valor, Long id_cliente, Long id_empresa) {
         this.valor = valor;
         this.id_cliente = id_cliente;
         this.id_empresa = id_empresa;
     }
 
-    private DAOCliente daoCliente = new DAOCliente();
-    private DAOEmpresa daoEmpresa = new DAOEmpresa();
-
     /**
-     * Obtém a instância da empresa com base no identificador fornecido.
+     * Construtor que associa uma chave de idempotência ao depósito.
      *
-     * @return A instância da {@link Empresa} correspondente ao identificador.
-     */
-    private Empresa obterEmpresa() {
-        return daoEmpresa.obterPorID(id_empresa);
-    }
-
-    /**
-     * Obtém a instância do cliente com base no identificador fornecido.
+     * Execuções repetidas com a mesma chave, inclusive em instâncias diferentes, aplicam o depósito apenas uma vez e
+     * devolvem o resultado da primeira execução.
      *
-     * @return A instância da {@link Cliente} correspondente ao identificador.
+     * @param valor O valor a ser depositado, em centavos.
+     * @param id_cliente O identificador do cliente.
+     * @param id_empresa O identificador da empresa.
+     * @param chaveIdempotencia A chave que identifica o pedido entre repetições.
      */
-    private Cliente obterCliente() {
-        return daoCliente.obterPorID(id_cliente);
+    public Deposito(long valor, Long id_cliente, Long id_empresa, String chaveIdempotencia) {
+        this(valor, id_cliente, id_empresa);
+        this.chaveIdempotencia = chaveIdempotencia;
     }
 
     /**
      * Obtém o valor do depósito.
      *
-     * @return O valor do depósito.
+     * @return O valor do depósito, em centavos.
      */
-    public double getValor() {
+    public long getValor() {
         return valor;
     }
 
     /**
      * Define o valor do depósito.
      *
-     * @param valor O valor a ser definido para o depósito.
+     * @param valor O valor a ser definido para o depósito, em centavos.
      */
-    public void setValor(double valor) {
+    public void setValor(long valor) {
         this.valor = valor;
     }
 
-    /**
-     * Valida se o depósito pode ser realizado.
-     *
-     * Verifica se o valor do depósito não excede o saldo disponível da empresa.
-     *
-     * @return {@code true} se o depósito for válido; {@code false} caso contrário.
-     */
-    private boolean validate() {
-        return valor <= obterEmpresa().getSaldo();
-    }
-
     /**
      * Executa o depósito, transferindo o valor do cliente para a empresa, aplicando a taxa.
      *
      * Se o depósito for válido, o saldo do cliente é aumentado com o valor líquido e o saldo da empresa é aumentado com a taxa.
-     * As transações são abertas e fechadas para garantir a integridade dos dados.
+     * As duas alterações são gravadas na mesma transação. Execuções concorrentes sobre o mesmo cliente ou a mesma
+     * empresa aguardam o bloqueio da linha, e a operação é repetida automaticamente se essa espera falhar por tempo
+     * esgotado ou impasse, conforme a {@link PoliticaRetentativa}.
+     *
+     * @return {@code true} se o depósito foi realizado; {@code false} se foi recusado.
+     * @throws IllegalArgumentException Se o valor não for positivo.
      */
-    public void exec() {
-        if (validate()) {
-            double taxa = valor * obterEmpresa().getTaxa();
-            double valorComTaxa = valor - taxa;
-
-            Cliente cliente = obterCliente();
-            Empresa empresa = obterEmpresa();
-
-            cliente.setSaldo(cliente.getSaldo() + valorComTaxa);
-            empresa.setSaldo(empresa.getSaldo() + taxa);
-
-            daoCliente.abrirTransacao().modificar(cliente).fecharTransacao().fechar();
-            daoEmpresa.abrirTransacao().modificar(empresa).fecharTransacao().fechar();
-        }
+    public boolean exec() {
+        return executor.executar(new Operacao(TipoOperacao.DEPOSITO, valor, id_cliente, id_empresa, chaveIdempotencia));
     }
 }
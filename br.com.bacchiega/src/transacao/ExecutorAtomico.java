@@ -0,0 +1,164 @@
+package transacao;
+
+import idempotencia.CacheIdempotencia;
+import idempotencia.ChaveIdempotencia;
+import infra.Sessao;
+import metricas.Contador;
+import metricas.Histograma;
+import metricas.Metricas;
+import relatorio.ReceitaTaxas;
+import usuarios.Empresa;
+
+import javax.persistence.PersistenceException;
+import java.util.Locale;
+
+/**
+ * Executa uma única {@link Operacao} de forma atômica.
+ *
+ * O saldo da empresa e o saldo do cliente são alterados na mesma transação, cada um por um único {@code UPDATE}
+ * que soma a variação diretamente no banco de dados, sem carregar as entidades. A regra de que o valor não pode
+ * exceder o saldo da empresa é a condição do {@code UPDATE} da empresa, e a quantidade de linhas alteradas decide se
+ * a operação é aceita ou recusada. A taxa é calculada com os dados cadastrais do {@link infra.CacheEmpresa}.
+ * Operações concorrentes sobre a mesma empresa aguardam o bloqueio da linha em vez de falhar por conflito de
+ * versão; as esperas que terminam por tempo esgotado ou impasse são repetidas pela {@link PoliticaRetentativa}. As
+ * operações confirmadas são somadas à {@link ReceitaTaxas} global.
+ *
+ * Operações com chave de idempotência gravam a chave e o resultado na mesma transação que altera os saldos. Uma
+ * repetição da mesma chave é respondida pelo {@link CacheIdempotencia} ou, se a chave já saiu da memória, pela tabela
+ * {@link ChaveIdempotencia}, sem ler nem alterar o cliente e a empresa. Se duas repetições chegarem ao mesmo tempo,
+ * a chave primária da tabela faz a segunda falhar, e ela também recebe o resultado gravado pela primeira.
+ *
+ * Para cada tipo de operação são registradas as {@link Metricas} {@code operacao.<tipo>} (tempo de execução,
+ * incluindo as retentativas), {@code operacao.<tipo>.aceitas} e {@code operacao.<tipo>.recusadas}; as repetições
+ * respondidas pelo resultado gravado são contadas em {@code operacao.repetidas}.
+ */
+public class ExecutorAtomico {
+
+    private static final Histograma[] tempos = new Histograma[TipoOperacao.values().length];
+    private static final Contador[] aceitas = new Contador[TipoOperacao.values().length];
+    private static final Contador[] recusadas = new Contador[TipoOperacao.values().length];
+    private static final Contador repetidas = Metricas.contador("operacao.repetidas");
+
+    static {
+        for (TipoOperacao tipo : TipoOperacao.values()) {
+            String nome = "operacao." + tipo.name().toLowerCase(Locale.ROOT);
+            tempos[tipo.ordinal()] = Metricas.histograma(nome);
+            aceitas[tipo.ordinal()] = Metricas.contador(nome + ".aceitas");
+            recusadas[tipo.ordinal()] = Metricas.contador(nome + ".recusadas");
+        }
+    }
+
+    private final PoliticaRetentativa politica;
+
+    /**
+     * Construtor que utiliza a política de retentativa padrão.
+     */
+    public ExecutorAtomico() {
+        this(PoliticaRetentativa.PADRAO);
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link ExecutorAtomico}.
+     *
+     * @param politica A política aplicada quando a operação falha ao aguardar o bloqueio de uma linha.
+     */
+    public ExecutorAtomico(PoliticaRetentativa politica) {
+        this.politica = politica;
+    }
+
+    /**
+     * Executa a operação, repetindo-a se ela falhar ao aguardar o bloqueio de uma linha.
+     *
+     * @param operacao A operação a ser executada.
+     * @return {@code true} se a operação foi aplicada; {@code false} se foi recusada. Para uma chave de idempotência
+     *         já executada, o resultado da primeira execução.
+     */
+    public boolean executar(Operacao operacao) {
+        String chave = operacao.getChaveIdempotencia();
+        if (chave != null) {
+            Boolean anterior = resultadoRegistrado(chave);
+            if (anterior != null) {
+                repetidas.incrementar();
+                return anterior;
+            }
+        }
+
+        int tipo = operacao.getTipo().ordinal();
+        long inicio = System.nanoTime();
+        boolean aplicada;
+        try {
+            aplicada = politica.executar(() -> tentar(operacao));
+        } catch (PersistenceException e) {
+            // Uma repetição concorrente gravou a mesma chave primeiro
+            Boolean anterior = chave == null ? null : resultadoRegistrado(chave);
+            if (anterior == null) {
+                throw e;
+            }
+            repetidas.incrementar();
+            return anterior;
+        }
+        tempos[tipo].registrarDesde(inicio);
+        (aplicada ? aceitas : recusadas)[tipo].incrementar();
+        return aplicada;
+    }
+
+    /**
+     * Realiza uma tentativa da operação em uma transação própria.
+     */
+    private boolean tentar(Operacao operacao) {
+        // Ao fechar, a sessão desfaz a transação caso ela não tenha sido confirmada
+        try (Sessao sessao = Sessao.abrir()) {
+            // Empresas inexistentes são recusadas pelo cache, sem abrir uma transação
+            Empresa empresa = sessao.empresas().obterPorIDCache(operacao.getIdEmpresa());
+            if (empresa == null) {
+                return false;
+            }
+            long taxa = operacao.calcularTaxa(empresa.getTaxas());
+            sessao.abrirTransacao();
+
+            // A empresa é alterada primeiro, sempre na mesma ordem, para que operações concorrentes não se bloqueiem
+            boolean aplicada = sessao.empresas().somarSaldo(empresa.getId(), taxa, operacao.getValor());
+            if (aplicada && !sessao.clientes().somarSaldo(operacao.getIdCliente(), operacao.variacaoCliente(taxa))) {
+                // Cliente inexistente: a taxa já creditada à empresa é descartada junto com a transação
+                sessao.desfazer();
+                sessao.abrirTransacao();
+                aplicada = false;
+            }
+
+            String chave = operacao.getChaveIdempotencia();
+            if (chave != null) {
+                sessao.idempotencia().incluir(new ChaveIdempotencia(chave, aplicada, System.currentTimeMillis()));
+            }
+
+            sessao.confirmar();
+            if (chave != null) {
+                CacheIdempotencia.global().registrar(chave, aplicada);
+            }
+            if (aplicada) {
+                ReceitaTaxas.global().registrar(empresa.getId(), System.currentTimeMillis(), operacao.getValor(), taxa);
+            }
+            return aplicada;
+        }
+    }
+
+    /**
+     * Obtém o resultado já registrado para a chave, primeiro em memória e depois na tabela de chaves.
+     *
+     * @return O resultado registrado, ou {@code null} se a chave ainda não foi executada.
+     */
+    private static Boolean resultadoRegistrado(String chave) {
+        Boolean resultado = CacheIdempotencia.global().obter(chave);
+        if (resultado != null) {
+            return resultado;
+        }
+        // A chave pode ter acabado de ser gravada por uma repetição concorrente e ainda não ter chegado à réplica
+        try (Sessao sessao = Sessao.abrir().lerDaPrimaria()) {
+            ChaveIdempotencia registrada = sessao.idempotencia().obterPorID(chave);
+            if (registrada == null) {
+                return null;
+            }
+            CacheIdempotencia.global().registrar(chave, registrada.isAplicada());
+            return registrada.isAplicada();
+        }
+    }
+}
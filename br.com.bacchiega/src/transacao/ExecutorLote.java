@@ -0,0 +1,326 @@
+package transacao;
+
+import financeiro.Dinheiro;
+import idempotencia.CacheIdempotencia;
+import idempotencia.ChaveIdempotencia;
+import infra.DAOCliente;
+import infra.DAOEmpresa;
+import infra.DAOIdempotencia;
+import infra.Sessao;
+import relatorio.ReceitaTaxas;
+import usuarios.Empresa;
+import util.MapaLongLong;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+/**
+ * Executa grandes volumes de saques e depósitos em poucas unidades de trabalho.
+ *
+ * As operações são divididas em lotes, e cada lote é aplicado em uma única transação com os mesmos {@code UPDATE}s
+ * condicionais do {@link ExecutorAtomico}, sem carregar os clientes e as empresas. Os saldos das empresas são lidos
+ * uma única vez e as operações de cada empresa são decididas em memória, na ordem da entrada; em seguida, cada
+ * empresa recebe, em ordem crescente de identificador, um único {@code UPDATE} que soma as taxas das operações
+ * aceitas e exige o saldo que as decisões supuseram. Se o saldo da empresa tiver diminuído desde a leitura, as suas
+ * operações são aplicadas uma a uma, cada uma com a sua própria condição. Por último, cada cliente recebe, também
+ * em ordem crescente, um único {@code UPDATE} com a soma das suas variações. Como o {@link ExecutorAtomico} também
+ * altera a empresa antes do cliente, as execuções concorrentes bloqueiam as linhas na mesma ordem; as esperas que
+ * ainda assim terminam por tempo esgotado ou impasse fazem o lote inteiro ser repetido pela
+ * {@link PoliticaRetentativa}. Cada operação recebe um {@link ResultadoOperacao} indicando se foi aceita ou
+ * recusada. As operações aceitas são somadas à {@link ReceitaTaxas} global depois que a transação do lote é
+ * confirmada.
+ *
+ * Operações com chave de idempotência seguem as mesmas regras do {@link ExecutorAtomico}: a chave e o resultado são
+ * gravados na transação do lote, e uma chave já executada, em um lote anterior, por outro executor ou antes no
+ * mesmo lote, recebe o resultado registrado sem que a operação seja aplicada de novo. As chaves são incluídas depois
+ * de todos os {@code UPDATE}s, para que sejam enviadas em lotes de comandos JDBC na confirmação. Se uma execução
+ * concorrente gravar a mesma chave primeiro, a gravação do lote falha e todas as suas operações são recusadas.
+ */
+public class ExecutorLote {
+
+    /**
+     * Quantidade padrão de operações por transação.
+     */
+    public static final int TAMANHO_LOTE_PADRAO = 500;
+
+    private final int tamanhoLote;
+    private final PoliticaRetentativa politica;
+
+    /**
+     * Construtor que utiliza o tamanho de lote padrão.
+     */
+    public ExecutorLote() {
+        this(TAMANHO_LOTE_PADRAO);
+    }
+
+    /**
+     * Construtor que utiliza a política de retentativa padrão.
+     *
+     * @param tamanhoLote A quantidade de operações gravadas em cada transação.
+     * @throws IllegalArgumentException Se o tamanho do lote não for positivo.
+     */
+    public ExecutorLote(int tamanhoLote) {
+        this(tamanhoLote, PoliticaRetentativa.PADRAO);
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link ExecutorLote}.
+     *
+     * @param tamanhoLote A quantidade de operações gravadas em cada transação.
+     * @param politica A política aplicada quando a gravação de um lote falha ao aguardar o bloqueio de uma linha.
+     * @throws IllegalArgumentException Se o tamanho do lote não for positivo.
+     */
+    public ExecutorLote(int tamanhoLote, PoliticaRetentativa politica) {
+        if (tamanhoLote <= 0) {
+            throw new IllegalArgumentException("Tamanho de lote inválido");
+        }
+        this.tamanhoLote = tamanhoLote;
+        this.politica = politica;
+    }
+
+    /**
+     * Executa a lista de operações informada.
+     *
+     * @param operacoes As operações a serem executadas, na ordem em que devem ser aplicadas.
+     * @return Os resultados das operações, na mesma ordem da entrada.
+     */
+    public List<ResultadoOperacao> executar(List<Operacao> operacoes) {
+        return executar(operacoes.stream());
+    }
+
+    /**
+     * Executa as operações do fluxo informado, consumindo-o lote a lote.
+     *
+     * @param operacoes O fluxo de operações a serem executadas, na ordem em que devem ser aplicadas.
+     * @return Os resultados das operações, na mesma ordem da entrada.
+     */
+    public List<ResultadoOperacao> executar(Stream<Operacao> operacoes) {
+        List<ResultadoOperacao> resultados = new ArrayList<>();
+
+        try (Sessao sessao = Sessao.abrir()) {
+            List<Operacao> lote = new ArrayList<>(tamanhoLote);
+            Iterator<Operacao> it = operacoes.iterator();
+            while (it.hasNext()) {
+                lote.add(it.next());
+                if (lote.size() == tamanhoLote) {
+                    processarLote(lote, sessao, resultados);
+                    lote.clear();
+                }
+            }
+            if (!lote.isEmpty()) {
+                processarLote(lote, sessao, resultados);
+            }
+        }
+        return resultados;
+    }
+
+    /**
+     * Aplica um lote de operações em uma única transação, repetindo-a se ela falhar ao aguardar o bloqueio de uma
+     * linha.
+     *
+     * Se a gravação falhar de outra forma, ou se todas as tentativas falharem, todas as operações do lote são
+     * recusadas.
+     */
+    private void processarLote(List<Operacao> lote, Sessao sessao, List<ResultadoOperacao> resultados) {
+        List<ResultadoOperacao> resultadosLote;
+        try {
+            resultadosLote = politica.executar(() -> tentarLote(lote, sessao));
+        } catch (RuntimeException e) {
+            resultadosLote = new ArrayList<>(lote.size());
+            for (Operacao operacao : lote) {
+                resultadosLote.add(ResultadoOperacao.recusada(operacao, "Falha ao gravar o lote: " + e.getMessage()));
+            }
+        }
+        resultados.addAll(resultadosLote);
+    }
+
+    /**
+     * Realiza uma tentativa do lote em uma transação própria, que é desfeita se a tentativa falhar.
+     */
+    private List<ResultadoOperacao> tentarLote(List<Operacao> lote, Sessao sessao) {
+        DAOEmpresa daoEmpresa = sessao.empresas();
+        DAOCliente daoCliente = sessao.clientes();
+        DAOIdempotencia daoIdempotencia = sessao.idempotencia();
+
+        Set<Long> idsClientes = new HashSet<>();
+        Set<String> chaves = new HashSet<>();
+        // Posições das operações de cada empresa, em ordem crescente de empresa e, dentro dela, na ordem da entrada
+        TreeMap<Long, List<Integer>> porEmpresa = new TreeMap<>();
+        for (int i = 0; i < lote.size(); i++) {
+            Operacao operacao = lote.get(i);
+            if (operacao.getIdCliente() != null) {
+                idsClientes.add(operacao.getIdCliente());
+            }
+            if (operacao.getIdEmpresa() != null) {
+                porEmpresa.computeIfAbsent(operacao.getIdEmpresa(), id -> new ArrayList<>()).add(i);
+            }
+            if (operacao.getChaveIdempotencia() != null) {
+                chaves.add(operacao.getChaveIdempotencia());
+            }
+        }
+
+        ResultadoOperacao[] resultadosLote = new ResultadoOperacao[lote.size()];
+        long[] taxas = new long[lote.size()];
+        boolean[] aplicadas = new boolean[lote.size()];
+        Map<String, Boolean> novasChaves = new HashMap<>();
+        try {
+            sessao.abrirTransacao();
+
+            // Repetições de chaves já executadas recebem o resultado registrado; as demais ficam pendentes
+            Map<String, Boolean> registradas = chavesRegistradas(chaves, daoIdempotencia);
+            Map<String, Integer> primeiras = new HashMap<>();
+            boolean[] pendentes = new boolean[lote.size()];
+            int[] repeticaoDe = new int[lote.size()];
+            for (int i = 0; i < lote.size(); i++) {
+                Operacao operacao = lote.get(i);
+                String chave = operacao.getChaveIdempotencia();
+                Boolean anterior = chave == null ? null : registradas.get(chave);
+                repeticaoDe[i] = -1;
+                if (anterior != null) {
+                    resultadosLote[i] = anterior ? ResultadoOperacao.aceita(operacao)
+                            : ResultadoOperacao.recusada(operacao, "Recusada na execução anterior");
+                } else if (chave != null && primeiras.containsKey(chave)) {
+                    repeticaoDe[i] = primeiras.get(chave);
+                } else {
+                    if (chave != null) {
+                        primeiras.put(chave, i);
+                    }
+                    pendentes[i] = true;
+                }
+            }
+
+            MapaLongLong saldosClientes = new MapaLongLong(idsClientes.size());
+            daoCliente.obterSaldos(idsClientes, saldosClientes::colocar);
+            MapaLongLong saldosEmpresas = new MapaLongLong(porEmpresa.size());
+            daoEmpresa.obterSaldos(porEmpresa.keySet(), saldosEmpresas::colocar);
+
+            // As empresas são alteradas primeiro, em ordem crescente, como no ExecutorAtomico
+            MapaLongLong variacoesClientes = new MapaLongLong(idsClientes.size());
+            for (Map.Entry<Long, List<Integer>> entrada : porEmpresa.entrySet()) {
+                Long idEmpresa = entrada.getKey();
+                Empresa empresa = saldosEmpresas.contem(idEmpresa) ? daoEmpresa.obterPorIDCache(idEmpresa) : null;
+                List<Integer> aceitas = new ArrayList<>();
+                long saldo = saldosEmpresas.obter(idEmpresa, 0);
+                long credito = 0;
+                long minimo = Long.MIN_VALUE;
+                for (int i : entrada.getValue()) {
+                    if (!pendentes[i]) {
+                        continue;
+                    }
+                    Operacao operacao = lote.get(i);
+                    if (operacao.getIdCliente() == null || !saldosClientes.contem(operacao.getIdCliente())) {
+                        resultadosLote[i] = ResultadoOperacao.recusada(operacao, "Cliente não encontrado");
+                    } else if (empresa == null) {
+                        resultadosLote[i] = ResultadoOperacao.recusada(operacao, "Empresa não encontrada");
+                    } else if (operacao.getValor() > Dinheiro.somar(saldo, credito)) {
+                        resultadosLote[i] = ResultadoOperacao.recusada(operacao, "Saldo insuficiente");
+                    } else {
+                        taxas[i] = operacao.calcularTaxa(empresa.getTaxas());
+                        minimo = Math.max(minimo, Dinheiro.subtrair(operacao.getValor(), credito));
+                        credito = Dinheiro.somar(credito, taxas[i]);
+                        aceitas.add(i);
+                    }
+                }
+                if (!aceitas.isEmpty() && !daoEmpresa.somarSaldo(idEmpresa, credito, minimo)) {
+                    // O saldo diminuiu desde a leitura: cada operação passa a depender da sua própria condição
+                    for (Iterator<Integer> it = aceitas.iterator(); it.hasNext(); ) {
+                        int i = it.next();
+                        if (!daoEmpresa.somarSaldo(idEmpresa, taxas[i], lote.get(i).getValor())) {
+                            resultadosLote[i] = ResultadoOperacao.recusada(lote.get(i), "Saldo insuficiente");
+                            it.remove();
+                        }
+                    }
+                }
+                for (int i : aceitas) {
+                    Operacao operacao = lote.get(i);
+                    resultadosLote[i] = ResultadoOperacao.aceita(operacao);
+                    aplicadas[i] = true;
+                    variacoesClientes.somar(operacao.getIdCliente(), operacao.variacaoCliente(taxas[i]));
+                }
+            }
+            // Operações sem empresa não entraram no agrupamento
+            for (int i = 0; i < lote.size(); i++) {
+                if (pendentes[i] && resultadosLote[i] == null) {
+                    Operacao operacao = lote.get(i);
+                    resultadosLote[i] = operacao.getIdCliente() == null || !saldosClientes.contem(operacao.getIdCliente())
+                            ? ResultadoOperacao.recusada(operacao, "Cliente não encontrado")
+                            : ResultadoOperacao.recusada(operacao, "Empresa não encontrada");
+                }
+            }
+
+            List<Long> clientesAlterados = new ArrayList<>();
+            variacoesClientes.paraCada((id, variacao) -> {
+                if (variacao != 0) {
+                    clientesAlterados.add(id);
+                }
+            });
+            Collections.sort(clientesAlterados);
+            for (Long idCliente : clientesAlterados) {
+                if (!daoCliente.somarSaldo(idCliente, variacoesClientes.obter(idCliente, 0))) {
+                    throw new IllegalStateException("Cliente " + idCliente + " removido durante o lote");
+                }
+            }
+
+            long registro = System.currentTimeMillis();
+            for (int i = 0; i < lote.size(); i++) {
+                if (repeticaoDe[i] >= 0) {
+                    Operacao operacao = lote.get(i);
+                    resultadosLote[i] = resultadosLote[repeticaoDe[i]].isAceita() ? ResultadoOperacao.aceita(operacao)
+                            : ResultadoOperacao.recusada(operacao, "Recusada na execução anterior");
+                } else if (pendentes[i] && lote.get(i).getChaveIdempotencia() != null) {
+                    String chave = lote.get(i).getChaveIdempotencia();
+                    novasChaves.put(chave, resultadosLote[i].isAceita());
+                    daoIdempotencia.incluir(new ChaveIdempotencia(chave, resultadosLote[i].isAceita(), registro));
+                }
+            }
+
+            sessao.confirmar();
+        } catch (RuntimeException e) {
+            sessao.desfazer();
+            throw e;
+        } finally {
+            // Libera as chaves incluídas para que a memória não cresça com o volume processado
+            daoCliente.sincronizar();
+        }
+
+        novasChaves.forEach(CacheIdempotencia.global()::registrar);
+        long agora = System.currentTimeMillis();
+        for (int i = 0; i < lote.size(); i++) {
+            if (aplicadas[i]) {
+                Operacao operacao = lote.get(i);
+                ReceitaTaxas.global().registrar(operacao.getIdEmpresa(), agora, operacao.getValor(), taxas[i]);
+            }
+        }
+        return Arrays.asList(resultadosLote);
+    }
+
+    /**
+     * Obtém os resultados já registrados para as chaves, primeiro em memória e depois na tabela de chaves, dentro da
+     * transação do lote.
+     */
+    private static Map<String, Boolean> chavesRegistradas(Set<String> chaves, DAOIdempotencia daoIdempotencia) {
+        Map<String, Boolean> registradas = new HashMap<>();
+        List<String> ausentes = new ArrayList<>();
+        for (String chave : chaves) {
+            Boolean resultado = CacheIdempotencia.global().obter(chave);
+            if (resultado != null) {
+                registradas.put(chave, resultado);
+            } else {
+                ausentes.add(chave);
+            }
+        }
+        for (ChaveIdempotencia registrada : daoIdempotencia.obterPorIDs(ausentes)) {
+            registradas.put(registrada.getChave(), registrada.isAplicada());
+        }
+        return registradas;
+    }
+}
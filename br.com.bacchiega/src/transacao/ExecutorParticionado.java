@@ -0,0 +1,195 @@
+package transacao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Executa operações em partições de escritor único, escolhidas pelo identificador do cliente.
+ *
+ * Cada partição tem uma fila limitada e uma única thread que a consome. Todas as operações de um mesmo cliente
+ * caem na mesma partição e, portanto, são executadas uma de cada vez e na ordem de envio, sem disputar o registro
+ * do cliente no banco de dados; clientes de partições diferentes são processados em paralelo. Quando a fila de uma
+ * partição está cheia, {@link #enviar(Operacao)} bloqueia quem envia até haver espaço.
+ *
+ * Os envios e o encerramento são separados por uma trava de leitura e escrita: vários envios podem ocorrer ao mesmo
+ * tempo, mas o marcador de fim só é colocado nas filas depois que os envios em andamento terminam, e nenhum envio
+ * é aceito depois dele.
+ */
+public class ExecutorParticionado implements AutoCloseable {
+
+    /**
+     * Capacidade padrão da fila de cada partição.
+     */
+    public static final int CAPACIDADE_PADRAO = 10_000;
+
+    private static final Logger logger = Logger.getLogger(ExecutorParticionado.class.getName());
+
+    /**
+     * Operação na fila, com o resultado a ser completado pela partição.
+     */
+    private static final class Tarefa {
+        private final Operacao operacao;
+        private final CompletableFuture<Boolean> resultado;
+
+        private Tarefa(Operacao operacao, CompletableFuture<Boolean> resultado) {
+            this.operacao = operacao;
+            this.resultado = resultado;
+        }
+    }
+
+    /**
+     * Marcador colocado no fim de cada fila para encerrar a partição depois de esvaziá-la.
+     */
+    private static final Tarefa FIM = new Tarefa(null, null);
+
+    private final List<BlockingQueue<Tarefa>> filas;
+    private final List<Thread> particoes;
+    private final Predicate<Operacao> aplicador;
+    private final ReadWriteLock travaEncerramento = new ReentrantReadWriteLock();
+    private boolean encerrado;
+
+    /**
+     * Construtor que executa cada operação com um {@link ExecutorAtomico}, uma partição por processador.
+     */
+    public ExecutorParticionado() {
+        this(Runtime.getRuntime().availableProcessors(), CAPACIDADE_PADRAO, new ExecutorAtomico()::executar);
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link ExecutorParticionado}.
+     *
+     * @param quantidade A quantidade de partições.
+     * @param capacidade A capacidade da fila de cada partição.
+     * @param aplicador A função que executa uma operação e informa se ela foi aplicada, como
+     *                  {@link ExecutorAtomico#executar(Operacao)} ou {@link LivroRazao#aplicar(Operacao)}; com o
+     *                  livro-razão, operações com chave de idempotência completam o futuro com a exceção.
+     * @throws IllegalArgumentException Se a quantidade de partições ou a capacidade não forem positivas.
+     */
+    public ExecutorParticionado(int quantidade, int capacidade, Predicate<Operacao> aplicador) {
+        if (quantidade <= 0 || capacidade <= 0) {
+            throw new IllegalArgumentException("Configuração de partições inválida");
+        }
+        this.aplicador = aplicador;
+        this.filas = new ArrayList<>(quantidade);
+        this.particoes = new ArrayList<>(quantidade);
+
+        for (int i = 0; i < quantidade; i++) {
+            BlockingQueue<Tarefa> fila = new ArrayBlockingQueue<>(capacidade);
+            Thread particao = new Thread(() -> consumir(fila), "particao-" + i);
+            filas.add(fila);
+            particoes.add(particao);
+            particao.start();
+        }
+    }
+
+    /**
+     * Envia a operação para a partição do seu cliente, bloqueando enquanto a fila da partição estiver cheia.
+     *
+     * @param operacao A operação a ser executada.
+     * @return Um futuro completado com {@code true} se a operação foi aplicada ou {@code false} se foi recusada;
+     *         em caso de erro, o futuro é completado com a exceção.
+     * @throws IllegalStateException Se o executor já tiver sido encerrado.
+     * @throws InterruptedException Se a espera por espaço na fila for interrompida.
+     */
+    public CompletableFuture<Boolean> enviar(Operacao operacao) throws InterruptedException {
+        travaEncerramento.readLock().lockInterruptibly();
+        try {
+            if (encerrado) {
+                throw new IllegalStateException("Executor encerrado");
+            }
+            CompletableFuture<Boolean> resultado = new CompletableFuture<>();
+            filas.get(particao(operacao.getIdCliente())).put(new Tarefa(operacao, resultado));
+            return resultado;
+        } finally {
+            travaEncerramento.readLock().unlock();
+        }
+    }
+
+    /**
+     * Para de aceitar operações e aguarda as partições esvaziarem suas filas.
+     *
+     * @param tempoMaximo O tempo máximo de espera.
+     * @param unidade A unidade do tempo máximo.
+     * @return {@code true} se todas as partições terminaram dentro do tempo; {@code false} caso contrário.
+     * @throws InterruptedException Se a espera for interrompida.
+     */
+    public boolean encerrar(long tempoMaximo, TimeUnit unidade) throws InterruptedException {
+        travaEncerramento.writeLock().lockInterruptibly();
+        try {
+            if (!encerrado) {
+                encerrado = true;
+                for (BlockingQueue<Tarefa> fila : filas) {
+                    fila.put(FIM);
+                }
+            }
+        } finally {
+            travaEncerramento.writeLock().unlock();
+        }
+
+        long limite = System.nanoTime() + unidade.toNanos(tempoMaximo);
+        for (Thread particao : particoes) {
+            long restante = limite - System.nanoTime();
+            if (restante > 0) {
+                TimeUnit.NANOSECONDS.timedJoin(particao, restante);
+            }
+            if (particao.isAlive()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Encerra o executor, aguardando sem limite de tempo que todas as operações enviadas sejam executadas.
+     */
+    @Override
+    public void close() {
+        try {
+            encerrar(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Laço de uma partição: executa as operações da fila, em ordem, até encontrar o marcador de fim.
+     */
+    private void consumir(BlockingQueue<Tarefa> fila) {
+        while (true) {
+            Tarefa tarefa;
+            try {
+                tarefa = fila.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (tarefa == FIM) {
+                return;
+            }
+            try {
+                tarefa.resultado.complete(aplicador.test(tarefa.operacao));
+            } catch (Throwable e) {
+                // Nem um Error encerra a partição, que deixaria as operações seguintes sem resposta
+                logger.log(Level.SEVERE, "Erro ao executar operação na partição", e);
+                tarefa.resultado.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Escolhe a partição do cliente, espalhando identificadores sequenciais de forma uniforme.
+     */
+    private int particao(Long idCliente) {
+        long h = idCliente * 0x9E3779B97F4A7C15L;
+        return (int) ((h >>> 32) % filas.size());
+    }
+}
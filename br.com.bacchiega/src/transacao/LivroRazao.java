@@ -0,0 +1,535 @@
+package transacao;
+
+import diario.Diario;
+import diario.Saldos;
+import financeiro.CacheTabelasTaxas;
+import financeiro.Dinheiro;
+import financeiro.TabelaTaxas;
+import infra.DAOCliente;
+import infra.DAOEmpresa;
+import infra.Sessao;
+import relatorio.ReceitaTaxas;
+import usuarios.Cliente;
+import usuarios.Empresa;
+import util.MapaLongLong;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Livro-razão em memória com os saldos de clientes e empresas.
+ *
+ * As operações são aplicadas sobre contas mantidas em memória, protegidas por um conjunto fixo de travas
+ * (cada conta usa a trava correspondente ao hash do seu identificador). As contas alteradas são marcadas
+ * como pendentes e gravadas no banco de dados em lote, conforme a {@link PoliticaGravacao} escolhida. O
+ * banco de dados continua sendo o armazenamento durável; enquanto o livro-razão estiver em uso, ele deve ser
+ * o único a alterar os saldos das contas que carregou.
+ *
+ * Opcionalmente, cada operação aplicada é anexada a um {@link Diario} antes de alterar os saldos em memória, e
+ * {@link #aplicar(Operacao)} só devolve o resultado depois que o registro está descarregado em disco. Assim, as
+ * operações aplicadas entre duas gravações no banco de dados não se perdem em uma queda: os saldos podem ser
+ * reconstruídos com {@link Diario#recuperar(java.nio.file.Path)} e recarregados com {@link #restaurar(Saldos)}. A
+ * espera é feita fora das travas das contas, de modo que operações concorrentes compartilham a mesma descarga. Com o
+ * diário, um instantâneo dos saldos em memória é gravado periodicamente, o que permite ao diário descartar os
+ * segmentos antigos.
+ *
+ * As operações aplicadas também são somadas à {@link ReceitaTaxas} global.
+ */
+public class LivroRazao implements AutoCloseable {
+
+    /**
+     * Quantidade de travas compartilhadas entre as contas. Deve ser uma potência de dois.
+     */
+    private static final int QUANTIDADE_TRAVAS = 64;
+
+    /**
+     * Intervalo padrão entre os instantâneos gravados no diário, em milissegundos.
+     */
+    public static final long INTERVALO_INSTANTANEO_PADRAO_MS = 60_000;
+
+    /**
+     * Tempo durante o qual um cliente ou empresa não encontrado não é procurado de novo, em nanossegundos.
+     */
+    private static final long VALIDADE_AUSENTE_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * Quantidade de identificadores não encontrados acima da qual os vencidos são removidos.
+     */
+    private static final int LIMITE_AUSENTES = 10_000;
+
+    private static final Logger logger = Logger.getLogger(LivroRazao.class.getName());
+
+    /**
+     * Saldo de uma conta mantido em memória, protegido pela trava da conta. A tabela de taxas de uma empresa não fica
+     * na conta, e sim no {@link CacheTabelasTaxas}, que a descarta quando a empresa é alterada.
+     */
+    private static final class Conta {
+        private final int trava;
+        private long saldo;
+
+        private Conta(int trava, long saldo) {
+            this.trava = trava;
+            this.saldo = saldo;
+        }
+    }
+
+    private final ReentrantLock[] travas = new ReentrantLock[QUANTIDADE_TRAVAS];
+    private final Map<Long, Conta> clientes = new ConcurrentHashMap<>();
+    private final Map<Long, Conta> empresas = new ConcurrentHashMap<>();
+    private final Map<Long, Long> clientesAusentes = new ConcurrentHashMap<>();
+    private final Map<Long, Long> empresasAusentes = new ConcurrentHashMap<>();
+    private final Set<Long> clientesPendentes = ConcurrentHashMap.newKeySet();
+    private final Set<Long> empresasPendentes = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger alteracoesPendentes = new AtomicInteger();
+    private final ReentrantLock travaGravacao = new ReentrantLock();
+    private final PoliticaGravacao politica;
+    private final ScheduledExecutorService agendador;
+    private final Diario diario;
+
+    /**
+     * Construtor que cria um livro-razão sem diário.
+     *
+     * @param politica A política que define quando os saldos alterados são gravados no banco de dados.
+     */
+    public LivroRazao(PoliticaGravacao politica) {
+        this(politica, null);
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link LivroRazao}.
+     *
+     * @param politica A política que define quando os saldos alterados são gravados no banco de dados.
+     * @param diario O diário em que as operações aplicadas são anexadas, ou {@code null} para não usar diário.
+     */
+    public LivroRazao(PoliticaGravacao politica, Diario diario) {
+        this(politica, diario, INTERVALO_INSTANTANEO_PADRAO_MS);
+    }
+
+    /**
+     * Construtor que define o intervalo entre os instantâneos gravados no diário.
+     *
+     * @param politica A política que define quando os saldos alterados são gravados no banco de dados.
+     * @param diario O diário em que as operações aplicadas são anexadas, ou {@code null} para não usar diário.
+     * @param intervaloInstantaneoMs O intervalo entre os instantâneos, em milissegundos, ou {@code 0} para gravá-los
+     *                               apenas com {@link #gravarInstantaneo()}.
+     * @throws IllegalArgumentException Se o intervalo for negativo.
+     */
+    public LivroRazao(PoliticaGravacao politica, Diario diario, long intervaloInstantaneoMs) {
+        if (intervaloInstantaneoMs < 0) {
+            throw new IllegalArgumentException("Intervalo de instantâneos inválido");
+        }
+        this.politica = politica;
+        this.diario = diario;
+        for (int i = 0; i < QUANTIDADE_TRAVAS; i++) {
+            travas[i] = new ReentrantLock();
+        }
+
+        boolean gravacaoPeriodica = politica.getModo() == PoliticaGravacao.Modo.INTERVALO_FIXO;
+        boolean instantaneoPeriodico = diario != null && intervaloInstantaneoMs > 0;
+        if (gravacaoPeriodica || instantaneoPeriodico) {
+            agendador = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "livro-razao-gravacao");
+                t.setDaemon(true);
+                return t;
+            });
+        } else {
+            agendador = null;
+        }
+        if (gravacaoPeriodica) {
+            agendador.scheduleWithFixedDelay(this::gravarRegistrandoFalhas,
+                    politica.getIntervaloMs(), politica.getIntervaloMs(), TimeUnit.MILLISECONDS);
+        }
+        if (instantaneoPeriodico) {
+            agendador.scheduleWithFixedDelay(this::gravarInstantaneoAgendado,
+                    intervaloInstantaneoMs, intervaloInstantaneoMs, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * Aplica a operação sobre os saldos em memória, carregando as contas do banco de dados no primeiro acesso.
+     *
+     * Com o diário, aguarda a descarga do registro da operação em disco antes de devolver o resultado. Uma
+     * interrupção durante a espera não a encerra; a marca de interrupção da thread é restaurada ao final.
+     *
+     * Quando a {@link PoliticaGravacao} pede uma gravação após a operação e ela falha, a operação continua aplicada e
+     * o resultado é devolvido normalmente: a falha é registrada no log e as contas ficam pendentes para a próxima
+     * gravação.
+     *
+     * Operações com chave de idempotência não são aceitas: o resultado de uma chave precisaria ser durável junto com
+     * os saldos, que só chegam ao banco de dados na próxima gravação. Use o {@link ExecutorAtomico} para elas.
+     *
+     * @param operacao A operação a ser aplicada.
+     * @return {@code true} se a operação foi aplicada; {@code false} se foi recusada.
+     * @throws IllegalArgumentException Se a operação tiver chave de idempotência.
+     */
+    public boolean aplicar(Operacao operacao) {
+        if (operacao.getChaveIdempotencia() != null) {
+            throw new IllegalArgumentException("O livro-razão não aceita operações com chave de idempotência");
+        }
+        Conta cliente = conta(clientes, clientesAusentes, operacao.getIdCliente(), this::carregarCliente);
+        Conta empresa = conta(empresas, empresasAusentes, operacao.getIdEmpresa(), this::carregarEmpresa);
+        if (cliente == null || empresa == null) {
+            return false;
+        }
+        TabelaTaxas taxas = tabelaTaxas(operacao.getIdEmpresa());
+        if (taxas == null) {
+            return false;
+        }
+
+        // As travas são sempre adquiridas em ordem crescente para evitar impasses
+        ReentrantLock primeira = travas[Math.min(cliente.trava, empresa.trava)];
+        ReentrantLock segunda = travas[Math.max(cliente.trava, empresa.trava)];
+        primeira.lock();
+        if (segunda != primeira) {
+            segunda.lock();
+        }
+        long taxa;
+        long seq = 0;
+        try {
+            if (operacao.getValor() > empresa.saldo) {
+                return false;
+            }
+            taxa = operacao.calcularTaxa(taxas);
+            long saldoCliente = Dinheiro.somar(cliente.saldo, operacao.variacaoCliente(taxa));
+            long saldoEmpresa = Dinheiro.somar(empresa.saldo, taxa);
+            if (diario != null) {
+                seq = diario.registrar(operacao.getTipo(), operacao.getIdCliente(), operacao.getIdEmpresa(),
+                        operacao.getValor(), taxa, saldoCliente, saldoEmpresa);
+            }
+            cliente.saldo = saldoCliente;
+            empresa.saldo = saldoEmpresa;
+
+            clientesPendentes.add(operacao.getIdCliente());
+            empresasPendentes.add(operacao.getIdEmpresa());
+        } finally {
+            if (segunda != primeira) {
+                segunda.unlock();
+            }
+            primeira.unlock();
+        }
+        if (diario != null) {
+            aguardarDurabilidade(seq);
+        }
+
+        ReceitaTaxas.global().registrar(operacao.getIdEmpresa(), System.currentTimeMillis(), operacao.getValor(), taxa);
+
+        int alteracoes = alteracoesPendentes.incrementAndGet();
+        if (politica.getModo() == PoliticaGravacao.Modo.A_CADA_COMMIT
+                || (politica.getModo() == PoliticaGravacao.Modo.A_CADA_N_ALTERACOES
+                    && alteracoes >= politica.getLimiteAlteracoes())) {
+            // A operação já está aplicada em memória e, com o diário, durável; se a gravação falhar, as contas ficam
+            // pendentes para a próxima
+            gravarRegistrandoFalhas();
+        }
+        return true;
+    }
+
+    /**
+     * Obtém o saldo em memória de um cliente.
+     *
+     * @param id O identificador do cliente.
+     * @return O saldo do cliente em centavos, ou {@code null} se o cliente não existir.
+     */
+    public Long obterSaldoCliente(Long id) {
+        Conta conta = conta(clientes, clientesAusentes, id, this::carregarCliente);
+        return conta == null ? null : lerSaldo(conta);
+    }
+
+    /**
+     * Obtém o saldo em memória de uma empresa.
+     *
+     * @param id O identificador da empresa.
+     * @return O saldo da empresa em centavos, ou {@code null} se a empresa não existir.
+     */
+    public Long obterSaldoEmpresa(Long id) {
+        Conta conta = conta(empresas, empresasAusentes, id, this::carregarEmpresa);
+        return conta == null ? null : lerSaldo(conta);
+    }
+
+    /**
+     * Captura os saldos de todas as contas em memória, junto com a última sequência do diário.
+     *
+     * Todas as travas são mantidas durante a captura, de modo que o resultado reflete exatamente as operações
+     * registradas no diário até a sequência informada e pode ser gravado com {@link Diario#gravarInstantaneo(Saldos)}.
+     *
+     * @return Os saldos em memória.
+     */
+    public Saldos instantaneo() {
+        for (ReentrantLock trava : travas) {
+            trava.lock();
+        }
+        try {
+            MapaLongLong saldosClientes = new MapaLongLong(clientes.size());
+            MapaLongLong saldosEmpresas = new MapaLongLong(empresas.size());
+            clientes.forEach((id, conta) -> saldosClientes.colocar(id, conta.saldo));
+            empresas.forEach((id, conta) -> saldosEmpresas.colocar(id, conta.saldo));
+            return new Saldos(saldosClientes, saldosEmpresas, diario == null ? 0 : diario.getUltimaSequencia());
+        } finally {
+            for (int i = travas.length - 1; i >= 0; i--) {
+                travas[i].unlock();
+            }
+        }
+    }
+
+    /**
+     * Grava no diário um instantâneo dos saldos em memória, o que descarta os segmentos que ele torna
+     * desnecessários. Não tem efeito sem diário.
+     *
+     * @throws IOException Se ocorrer um erro de gravação.
+     */
+    public void gravarInstantaneo() throws IOException {
+        if (diario != null) {
+            diario.gravarInstantaneo(instantaneo());
+        }
+    }
+
+    /**
+     * Carrega saldos reconstruídos a partir do diário, substituindo os saldos em memória das contas informadas.
+     *
+     * As contas restauradas são marcadas como pendentes e gravadas no banco de dados na próxima gravação. Deve ser
+     * chamado antes de aplicar qualquer operação.
+     *
+     * @param saldos Os saldos reconstruídos, normalmente obtidos com {@link Diario#recuperar(java.nio.file.Path)}.
+     */
+    public void restaurar(Saldos saldos) {
+        saldos.getClientes().paraCada((id, saldo) -> {
+            clientes.put(id, new Conta(indiceTrava(id), saldo));
+            clientesPendentes.add(id);
+        });
+
+        // As empresas são lidas do banco de dados, o que já coloca as suas tabelas de taxas no cache
+        List<Long> idsEmpresas = new ArrayList<>(saldos.getEmpresas().tamanho());
+        saldos.getEmpresas().paraCada((id, saldo) -> idsEmpresas.add(id));
+        try (Sessao sessao = Sessao.abrir().lerDaPrimaria()) {
+            DAOEmpresa daoEmpresa = sessao.empresas();
+            for (int i = 0; i < idsEmpresas.size(); i += ExecutorLote.TAMANHO_LOTE_PADRAO) {
+                List<Long> lote = idsEmpresas.subList(i, Math.min(i + ExecutorLote.TAMANHO_LOTE_PADRAO, idsEmpresas.size()));
+                for (Empresa empresa : daoEmpresa.obterPorIDs(lote)) {
+                    long saldo = saldos.getEmpresas().obter(empresa.getId(), empresa.getSaldo());
+                    empresa.getTaxas();
+                    empresas.put(empresa.getId(), new Conta(indiceTrava(~empresa.getId()), saldo));
+                    empresasPendentes.add(empresa.getId());
+                }
+                daoEmpresa.sincronizar();
+            }
+        }
+    }
+
+    /**
+     * Grava no banco de dados, em uma única transação, os saldos de todas as contas alteradas desde a
+     * última gravação.
+     *
+     * Se a gravação falhar, as contas voltam a ser marcadas como pendentes e a exceção é propagada.
+     */
+    public void gravar() {
+        travaGravacao.lock();
+        try {
+            alteracoesPendentes.set(0);
+            List<Long> idsClientes = retirar(clientesPendentes);
+            List<Long> idsEmpresas = retirar(empresasPendentes);
+            if (idsClientes.isEmpty() && idsEmpresas.isEmpty()) {
+                return;
+            }
+
+            try (Sessao sessao = Sessao.abrir()) {
+                DAOCliente daoCliente = sessao.clientes();
+                DAOEmpresa daoEmpresa = sessao.empresas();
+                sessao.abrirTransacao();
+                for (int i = 0; i < idsClientes.size(); i += ExecutorLote.TAMANHO_LOTE_PADRAO) {
+                    List<Long> lote = idsClientes.subList(i, Math.min(i + ExecutorLote.TAMANHO_LOTE_PADRAO, idsClientes.size()));
+                    for (Cliente cliente : daoCliente.obterPorIDs(lote)) {
+                        cliente.setSaldo(lerSaldo(clientes.get(cliente.getId())));
+                    }
+                    daoCliente.sincronizar();
+                }
+                for (int i = 0; i < idsEmpresas.size(); i += ExecutorLote.TAMANHO_LOTE_PADRAO) {
+                    List<Long> lote = idsEmpresas.subList(i, Math.min(i + ExecutorLote.TAMANHO_LOTE_PADRAO, idsEmpresas.size()));
+                    for (Empresa empresa : daoEmpresa.obterPorIDs(lote)) {
+                        empresa.setSaldo(lerSaldo(empresas.get(empresa.getId())));
+                    }
+                    daoEmpresa.sincronizar();
+                }
+                sessao.confirmar();
+            } catch (RuntimeException e) {
+                clientesPendentes.addAll(idsClientes);
+                empresasPendentes.addAll(idsEmpresas);
+                throw e;
+            }
+        } finally {
+            travaGravacao.unlock();
+        }
+    }
+
+    /**
+     * Encerra a gravação periódica e a dos instantâneos e grava os saldos ainda pendentes.
+     */
+    @Override
+    public void close() {
+        if (agendador != null) {
+            agendador.shutdown();
+        }
+        gravar();
+    }
+
+    /**
+     * Grava os saldos pendentes, registrando falhas no log em vez de propagá-las. As contas de uma gravação que falhou
+     * continuam pendentes, e o agendamento da gravação periódica não é interrompido.
+     */
+    private void gravarRegistrandoFalhas() {
+        try {
+            gravar();
+        } catch (RuntimeException e) {
+            logger.log(Level.SEVERE, "Erro ao gravar o livro-razão", e);
+        }
+    }
+
+    /**
+     * Executa a gravação periódica do instantâneo, registrando falhas sem interromper o agendamento.
+     */
+    private void gravarInstantaneoAgendado() {
+        try {
+            gravarInstantaneo();
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.SEVERE, "Erro ao gravar o instantâneo do diário", e);
+        }
+    }
+
+    /**
+     * Aguarda a descarga em disco do registro do diário, sem desistir em uma interrupção.
+     */
+    private void aguardarDurabilidade(long seq) {
+        boolean interrompida = false;
+        while (true) {
+            try {
+                diario.aguardarDurabilidade(seq);
+                break;
+            } catch (InterruptedException e) {
+                interrompida = true;
+            }
+        }
+        if (interrompida) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Obtém a conta em memória, carregando-a do banco de dados caso ainda não esteja presente.
+     *
+     * A carga é feita fora do mapa, para não bloquear as outras contas do mesmo segmento durante a consulta; se duas
+     * threads carregarem a mesma conta, fica a primeira colocada no mapa. Um identificador não encontrado é lembrado
+     * por {@link #VALIDADE_AUSENTE_NANOS}, o que evita uma consulta por operação recusada.
+     */
+    private static Conta conta(Map<Long, Conta> contas, Map<Long, Long> ausentes, Long id,
+                               Function<Long, Conta> carregar) {
+        Conta conta = contas.get(id);
+        if (conta != null) {
+            return conta;
+        }
+        long agora = System.nanoTime();
+        Long venceEm = ausentes.get(id);
+        if (venceEm != null) {
+            if (venceEm - agora > 0) {
+                return null;
+            }
+            ausentes.remove(id, venceEm);
+        }
+
+        Conta carregada = carregar.apply(id);
+        if (carregada == null) {
+            if (ausentes.size() >= LIMITE_AUSENTES) {
+                ausentes.values().removeIf(vencimento -> vencimento - agora <= 0);
+            }
+            ausentes.put(id, agora + VALIDADE_AUSENTE_NANOS);
+            return null;
+        }
+        Conta anterior = contas.putIfAbsent(id, carregada);
+        return anterior != null ? anterior : carregada;
+    }
+
+    private Conta carregarCliente(Long id) {
+        // Os saldos carregados passam a ser a referência em memória, então não podem vir de uma réplica atrasada
+        try (Sessao sessao = Sessao.abrir().lerDaPrimaria()) {
+            Cliente cliente = sessao.clientes().obterPorID(id);
+            return cliente == null ? null : new Conta(indiceTrava(id), cliente.getSaldo());
+        }
+    }
+
+    private Conta carregarEmpresa(Long id) {
+        try (Sessao sessao = Sessao.abrir().lerDaPrimaria()) {
+            Empresa empresa = sessao.empresas().obterPorID(id);
+            if (empresa == null) {
+                return null;
+            }
+            // Compila a tabela de taxas e a coloca no cache, antes da primeira operação
+            registrarTaxas(empresa);
+            // Empresas usam travas deslocadas para não disputarem sempre com o cliente de mesmo id
+            return new Conta(indiceTrava(~id), empresa.getSaldo());
+        }
+    }
+
+    /**
+     * Obtém a tabela de taxas atual da empresa, lendo-a do banco de dados quando ela saiu do cache por uma alteração.
+     *
+     * @return A tabela de taxas, ou {@code null} se a empresa não existir mais.
+     */
+    private static TabelaTaxas tabelaTaxas(Long id) {
+        TabelaTaxas taxas = CacheTabelasTaxas.global().obter(id);
+        if (taxas != null) {
+            return taxas;
+        }
+        try (Sessao sessao = Sessao.abrir().lerDaPrimaria()) {
+            Empresa empresa = sessao.empresas().obterPorID(id);
+            return empresa == null ? null : registrarTaxas(empresa);
+        }
+    }
+
+    /**
+     * Coloca no cache a tabela de taxas de uma empresa recém-lida da unidade principal, fora de uma transação.
+     */
+    private static TabelaTaxas registrarTaxas(Empresa empresa) {
+        return CacheTabelasTaxas.global().registrar(empresa.getId(), empresa.getVersao(), empresa.getTaxa(),
+                empresa.getTabelaTaxas());
+    }
+
+    private long lerSaldo(Conta conta) {
+        ReentrantLock trava = travas[conta.trava];
+        trava.lock();
+        try {
+            return conta.saldo;
+        } finally {
+            trava.unlock();
+        }
+    }
+
+    private static int indiceTrava(long id) {
+        long h = id * 0x9E3779B97F4A7C15L;
+        return (int) (h >>> 32) & (QUANTIDADE_TRAVAS - 1);
+    }
+
+    /**
+     * Retira e devolve os identificadores pendentes. Marcações feitas durante a retirada ficam para a
+     * próxima gravação.
+     */
+    private static List<Long> retirar(Set<Long> pendentes) {
+        List<Long> ids = new ArrayList<>();
+        Iterator<Long> it = pendentes.iterator();
+        while (it.hasNext()) {
+            ids.add(it.next());
+            it.remove();
+        }
+        return ids;
+    }
+}
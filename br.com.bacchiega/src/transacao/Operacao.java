@@ -0,0 +1,138 @@
+package transacao;
+
+import financeiro.Dinheiro;
+import financeiro.TabelaTaxas;
+import idempotencia.ChaveIdempotencia;
+import usuarios.Empresa;
+
+/**
+ * Representa uma operação de saque ou depósito a ser executada em lote.
+ *
+ * Diferente de {@link Saque} e {@link Deposito}, esta classe não acessa o banco de dados: ela apenas
+ * descreve a operação e calcula a taxa e a variação do saldo do cliente que os executores aplicam.
+ */
+public class Operacao {
+
+    private final TipoOperacao tipo;
+    private final long valor;
+    private final Long id_cliente;
+    private final Long id_empresa;
+    private final String chaveIdempotencia;
+
+    /**
+     * Construtor que cria uma operação sem chave de idempotência.
+     *
+     * @param tipo O tipo da operação.
+     * @param valor O valor da operação, em centavos.
+     * @param id_cliente O identificador do cliente envolvido.
+     * @param id_empresa O identificador da empresa envolvida.
+     * @throws IllegalArgumentException Se o valor não for positivo.
+     */
+    public Operacao(TipoOperacao tipo, long valor, Long id_cliente, Long id_empresa) {
+        this(tipo, valor, id_cliente, id_empresa, null);
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link Operacao}.
+     *
+     * @param tipo O tipo da operação.
+     * @param valor O valor da operação, em centavos.
+     * @param id_cliente O identificador do cliente envolvido.
+     * @param id_empresa O identificador da empresa envolvida.
+     * @param chaveIdempotencia A chave que identifica a operação entre repetições do mesmo pedido, ou {@code null}.
+     * @throws IllegalArgumentException Se o valor não for positivo, ou se a chave estiver vazia ou for maior que
+     *                                  {@value idempotencia.ChaveIdempotencia#TAMANHO_MAXIMO} caracteres.
+     */
+    public Operacao(TipoOperacao tipo, long valor, Long id_cliente, Long id_empresa, String chaveIdempotencia) {
+        if (valor <= 0) {
+            throw new IllegalArgumentException("Valor deve ser positivo");
+        }
+        if (chaveIdempotencia != null
+                && (chaveIdempotencia.isBlank() || chaveIdempotencia.length() > ChaveIdempotencia.TAMANHO_MAXIMO)) {
+            throw new IllegalArgumentException("Chave de idempotência inválida");
+        }
+        this.tipo = tipo;
+        this.valor = valor;
+        this.id_cliente = id_cliente;
+        this.id_empresa = id_empresa;
+        this.chaveIdempotencia = chaveIdempotencia;
+    }
+
+    /**
+     * Obtém o tipo da operação.
+     *
+     * @return O tipo da operação.
+     */
+    public TipoOperacao getTipo() {
+        return tipo;
+    }
+
+    /**
+     * Obtém o valor da operação.
+     *
+     * @return O valor da operação, em centavos.
+     */
+    public long getValor() {
+        return valor;
+    }
+
+    /**
+     * Obtém o identificador do cliente envolvido.
+     *
+     * @return O identificador do cliente.
+     */
+    public Long getIdCliente() {
+        return id_cliente;
+    }
+
+    /**
+     * Obtém o identificador da empresa envolvida.
+     *
+     * @return O identificador da empresa.
+     */
+    public Long getIdEmpresa() {
+        return id_empresa;
+    }
+
+    /**
+     * Obtém a chave de idempotência da operação.
+     *
+     * @return A chave de idempotência, ou {@code null} se a operação não tiver chave.
+     */
+    public String getChaveIdempotencia() {
+        return chaveIdempotencia;
+    }
+
+    /**
+     * Calcula a taxa cobrada pela empresa sobre o valor da operação.
+     *
+     * @param taxaEmpresa A taxa associada à empresa, em pontos-base.
+     * @return O valor da taxa em centavos, que é creditado no saldo da empresa.
+     */
+    public long calcularTaxa(int taxaEmpresa) {
+        return Dinheiro.taxa(valor, taxaEmpresa);
+    }
+
+    /**
+     * Calcula a taxa cobrada sobre o valor da operação por uma tabela de taxas.
+     *
+     * @param taxas A tabela de taxas da empresa, obtida de {@link Empresa#getTaxas()}.
+     * @return O valor da taxa em centavos, que é creditado no saldo da empresa.
+     */
+    public long calcularTaxa(TabelaTaxas taxas) {
+        return taxas.calcular(valor);
+    }
+
+    /**
+     * Calcula a variação no saldo do cliente, já descontada a taxa.
+     *
+     * O saque diminui o saldo do cliente com o valor líquido e o depósito o aumenta.
+     *
+     * @param taxa O valor da taxa calculado por {@link #calcularTaxa(TabelaTaxas)}.
+     * @return A variação, em centavos, a ser somada ao saldo do cliente.
+     */
+    public long variacaoCliente(long taxa) {
+        long valorComTaxa = Dinheiro.subtrair(valor, taxa);
+        return tipo == TipoOperacao.SAQUE ? -valorComTaxa : valorComTaxa;
+    }
+}
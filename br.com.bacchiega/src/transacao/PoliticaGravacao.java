@@ -0,0 +1,102 @@
+package transacao;
+
+/**
+ * Define quando o {@link LivroRazao} grava no banco de dados os saldos alterados em memória.
+ */
+public class PoliticaGravacao {
+
+    /**
+     * Modos de gravação suportados.
+     */
+    public enum Modo {
+        /**
+         * Grava a cada operação aplicada, antes de devolver o resultado. Se a gravação falhar, as contas ficam
+         * pendentes para a gravação seguinte.
+         */
+        A_CADA_COMMIT,
+
+        /**
+         * Grava periodicamente, em intervalos fixos de tempo.
+         */
+        INTERVALO_FIXO,
+
+        /**
+         * Grava sempre que um número fixo de operações tiver sido aplicado.
+         */
+        A_CADA_N_ALTERACOES
+    }
+
+    private final Modo modo;
+    private final long intervaloMs;
+    private final int limiteAlteracoes;
+
+    private PoliticaGravacao(Modo modo, long intervaloMs, int limiteAlteracoes) {
+        this.modo = modo;
+        this.intervaloMs = intervaloMs;
+        this.limiteAlteracoes = limiteAlteracoes;
+    }
+
+    /**
+     * Cria uma política que grava a cada operação aplicada.
+     *
+     * @return A política criada.
+     */
+    public static PoliticaGravacao aCadaCommit() {
+        return new PoliticaGravacao(Modo.A_CADA_COMMIT, 0, 1);
+    }
+
+    /**
+     * Cria uma política que grava periodicamente.
+     *
+     * @param intervaloMs O intervalo entre gravações, em milissegundos.
+     * @return A política criada.
+     * @throws IllegalArgumentException Se o intervalo não for positivo.
+     */
+    public static PoliticaGravacao aCadaIntervalo(long intervaloMs) {
+        if (intervaloMs <= 0) {
+            throw new IllegalArgumentException("Intervalo inválido");
+        }
+        return new PoliticaGravacao(Modo.INTERVALO_FIXO, intervaloMs, 0);
+    }
+
+    /**
+     * Cria uma política que grava após um número fixo de operações.
+     *
+     * @param limiteAlteracoes A quantidade de operações entre gravações.
+     * @return A política criada.
+     * @throws IllegalArgumentException Se o limite não for positivo.
+     */
+    public static PoliticaGravacao aCadaAlteracoes(int limiteAlteracoes) {
+        if (limiteAlteracoes <= 0) {
+            throw new IllegalArgumentException("Limite de alterações inválido");
+        }
+        return new PoliticaGravacao(Modo.A_CADA_N_ALTERACOES, 0, limiteAlteracoes);
+    }
+
+    /**
+     * Obtém o modo de gravação.
+     *
+     * @return O modo de gravação.
+     */
+    public Modo getModo() {
+        return modo;
+    }
+
+    /**
+     * Obtém o intervalo entre gravações, usado no modo {@link Modo#INTERVALO_FIXO}.
+     *
+     * @return O intervalo em milissegundos.
+     */
+    public long getIntervaloMs() {
+        return intervaloMs;
+    }
+
+    /**
+     * Obtém a quantidade de operações entre gravações, usada no modo {@link Modo#A_CADA_N_ALTERACOES}.
+     *
+     * @return O limite de alterações.
+     */
+    public int getLimiteAlteracoes() {
+        return limiteAlteracoes;
+    }
+}
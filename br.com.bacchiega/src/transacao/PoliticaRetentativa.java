@@ -0,0 +1,105 @@
+package transacao;
+
+import org.hibernate.exception.LockAcquisitionException;
+
+import javax.persistence.LockTimeoutException;
+import javax.persistence.PessimisticLockException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Política de novas tentativas para operações que falham ao aguardar o bloqueio de uma linha.
+ *
+ * Os saldos são alterados por {@code UPDATE}s que bloqueiam a linha até o fim da transação, de modo que execuções
+ * concorrentes sobre o mesmo cliente ou empresa aguardam umas às outras em vez de falhar. A espera ainda pode
+ * terminar em erro, quando o tempo limite de bloqueio do banco de dados se esgota ou quando ele desfaz uma transação
+ * para resolver um impasse; o provedor JPA informa esses casos com {@link PessimisticLockException} ou
+ * {@link LockTimeoutException}, e o Hibernate com {@link LockAcquisitionException}. Esta política repete a operação
+ * inteira após uma espera exponencial com variação aleatória, para que as execuções concorrentes não colidam
+ * novamente no mesmo instante.
+ */
+public class PoliticaRetentativa {
+
+    /**
+     * Política padrão: até 5 tentativas, com espera inicial de 5 ms e máxima de 200 ms.
+     */
+    public static final PoliticaRetentativa PADRAO = new PoliticaRetentativa(5, 5, 200);
+
+    private final int maxTentativas;
+    private final long esperaInicialMs;
+    private final long esperaMaximaMs;
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link PoliticaRetentativa}.
+     *
+     * @param maxTentativas A quantidade máxima de tentativas, incluindo a primeira.
+     * @param esperaInicialMs A espera, em milissegundos, antes da segunda tentativa.
+     * @param esperaMaximaMs O limite, em milissegundos, para a espera entre tentativas.
+     * @throws IllegalArgumentException Se algum dos parâmetros for inválido.
+     */
+    public PoliticaRetentativa(int maxTentativas, long esperaInicialMs, long esperaMaximaMs) {
+        if (maxTentativas < 1 || esperaInicialMs < 0 || esperaMaximaMs < esperaInicialMs) {
+            throw new IllegalArgumentException("Política de retentativa inválida");
+        }
+        this.maxTentativas = maxTentativas;
+        this.esperaInicialMs = esperaInicialMs;
+        this.esperaMaximaMs = esperaMaximaMs;
+    }
+
+    /**
+     * Executa a ação informada, repetindo-a enquanto falhar ao aguardar o bloqueio de uma linha.
+     *
+     * A ação deve ser autocontida: cada tentativa precisa abrir sua própria transação e recarregar as
+     * entidades, pois o estado da tentativa anterior foi descartado.
+     *
+     * @param acao A ação a ser executada.
+     * @param <T> O tipo do resultado da ação.
+     * @return O resultado da primeira tentativa bem-sucedida.
+     * @throws javax.persistence.PersistenceException Se todas as tentativas falharem ao aguardar o bloqueio.
+     */
+    public <T> T executar(Supplier<T> acao) {
+        long espera = esperaInicialMs;
+        for (int tentativa = 1; ; tentativa++) {
+            try {
+                return acao.get();
+            } catch (RuntimeException e) {
+                if (tentativa >= maxTentativas || !falhaDeBloqueio(e)) {
+                    throw e;
+                }
+            }
+            aguardar(espera);
+            espera = Math.min(espera * 2, esperaMaximaMs);
+        }
+    }
+
+    /**
+     * Verifica se a exceção, ou alguma de suas causas, é uma falha ao aguardar o bloqueio de uma linha.
+     *
+     * A exceção do Hibernate pode chegar embrulhada em uma {@link javax.persistence.PersistenceException} ou, no
+     * momento do commit, em uma {@link javax.persistence.RollbackException}.
+     */
+    private static boolean falhaDeBloqueio(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t instanceof PessimisticLockException || t instanceof LockTimeoutException
+                    || t instanceof LockAcquisitionException || t instanceof org.hibernate.PessimisticLockException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Aguarda um tempo aleatório entre zero e o limite informado.
+     */
+    private static void aguardar(long limiteMs) {
+        if (limiteMs <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextLong(limiteMs + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Retentativa interrompida", e);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+package transacao;
+
+/**
+ * Resultado da execução de uma {@link Operacao} pelo {@link ExecutorLote}.
+ */
+public class ResultadoOperacao {
+
+    private final Operacao operacao;
+    private final boolean aceita;
+    private final String motivo;
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link ResultadoOperacao}.
+     *
+     * @param operacao A operação executada.
+     * @param aceita Indica se a operação foi aplicada.
+     * @param motivo O motivo da recusa, ou {@code null} se a operação foi aceita.
+     */
+    public ResultadoOperacao(Operacao operacao, boolean aceita, String motivo) {
+        this.operacao = operacao;
+        this.aceita = aceita;
+        this.motivo = motivo;
+    }
+
+    /**
+     * Cria o resultado de uma operação aceita.
+     *
+     * @param operacao A operação executada.
+     * @return O resultado da operação.
+     */
+    public static ResultadoOperacao aceita(Operacao operacao) {
+        return new ResultadoOperacao(operacao, true, null);
+    }
+
+    /**
+     * Cria o resultado de uma operação recusada.
+     *
+     * @param operacao A operação recusada.
+     * @param motivo O motivo da recusa.
+     * @return O resultado da operação.
+     */
+    public static ResultadoOperacao recusada(Operacao operacao, String motivo) {
+        return new ResultadoOperacao(operacao, false, motivo);
+    }
+
+    /**
+     * Obtém a operação executada.
+     *
+     * @return A operação executada.
+     */
+    public Operacao getOperacao() {
+        return operacao;
+    }
+
+    /**
+     * Indica se a operação foi aplicada.
+     *
+     * @return {@code true} se a operação foi aceita; {@code false} caso contrário.
+     */
+    public boolean isAceita() {
+        return aceita;
+    }
+
+    /**
+     * Obtém o motivo da recusa.
+     *
+     * @return O motivo da recusa, ou {@code null} se a operação foi aceita.
+     */
+    public String getMotivo() {
+        return motivo;
+    }
+}
@@ -1,10 +1,5 @@
 package transacao;
 
-import infra.DAOCliente;
-import infra.DAOEmpresa;
-import usuarios.Cliente;
-import usuarios.Empresa;
-
 /**
  * Representa uma operação de saque entre um cliente e uma empresa.
  *
@@ -12,91 +7,71 @@ import usuarios.Empresa;
  */
 public class Saque {
 
-    private double valor;
+    private long valor;
     private Long id_cliente;
     private Long id_empresa;
-    private DAOCliente daoCliente = new DAOCliente();
-    private DAOEmpresa daoEmpresa = new DAOEmpresa();
+    private String chaveIdempotencia;
+    private ExecutorAtomico executor = new ExecutorAtomico();
 
     /**
      * Construtor para a criação de uma nova instância da classe {@link Saque}.
      *
-     * @param valor O valor a ser sacado.
+     * @param valor O valor a ser sacado, em centavos.
      * @param id_cliente O identificador do cliente que está realizando o saque.
      * @param id_empresa O identificador da empresa que receberá a taxa do saque.
      */
-    public Saque(double valor, Long id_cliente, Long id_empresa) {
+    public Saque(long valor, Long id_cliente, Long id_empresa) {
         this.valor = valor;
         this.id_cliente = id_cliente;
         this.id_empresa = id_empresa;
     }
 
     /**
-     * Obtém a instância da empresa com base no identificador fornecido.
+     * Construtor que associa uma chave de idempotência ao saque.
      *
-     * @return A instância da {@link Empresa} correspondente ao identificador.
-     */
-    private Empresa obterEmpresa() {
-        return daoEmpresa.obterPorID(id_empresa);
-    }
-
-    /**
-     * Obtém a instância do cliente com base no identificador fornecido.
+     * Execuções repetidas com a mesma chave, inclusive em instâncias diferentes, aplicam o saque apenas uma vez e
+     * devolvem o resultado da primeira execução.
      *
-     * @return A instância da {@link Cliente} correspondente ao identificador.
+     * @param valor O valor a ser sacado, em centavos.
+     * @param id_cliente O identificador do cliente.
+     * @param id_empresa O identificador da empresa.
+     * @param chaveIdempotencia A chave que identifica o pedido entre repetições.
      */
-    private Cliente obterCliente() {
-        return daoCliente.obterPorID(id_cliente);
+    public Saque(long valor, Long id_cliente, Long id_empresa, String chaveIdempotencia) {
+        this(valor, id_cliente, id_empresa);
+        this.chaveIdempotencia = chaveIdempotencia;
     }
 
     /**
      * Obtém o valor do saque.
      *
-     * @return O valor do saque.
+     * @return O valor do saque, em centavos.
      */
-    public double getValor() {
+    public long getValor() {
         return valor;
     }
 
     /**
      * Define o valor do saque.
      *
-     * @param valor O valor a ser definido para o saque.
+     * @param valor O valor a ser definido para o saque, em centavos.
      */
-    public void setValor(double valor) {
+    public void setValor(long valor) {
         this.valor = valor;
     }
 
-    /**
-     * Valida se o saque pode ser realizado.
-     *
-     * Verifica se o valor do saque não excede o saldo disponível da empresa.
-     *
-     * @return {@code true} se o saque for válido; {@code false} caso contrário.
-     */
-    private boolean validate() {
-        return valor <= obterEmpresa().getSaldo();
-    }
-
     /**
      * Executa o saque, transferindo o valor da empresa para o cliente, aplicando a taxa.
      *
      * Se o saque for válido, o saldo do cliente é diminuído com o valor líquido e o saldo da empresa é aumentado com a taxa.
-     * As transações são abertas e fechadas para garantir a integridade dos dados.
+     * As duas alterações são gravadas na mesma transação. Execuções concorrentes sobre o mesmo cliente ou a mesma
+     * empresa aguardam o bloqueio da linha, e a operação é repetida automaticamente se essa espera falhar por tempo
+     * esgotado ou impasse, conforme a {@link PoliticaRetentativa}.
+     *
+     * @return {@code true} se o saque foi realizado; {@code false} se foi recusado.
+     * @throws IllegalArgumentException Se o valor não for positivo.
      */
-    public void exec() {
-        if (validate()) {
-            double taxa = valor * obterEmpresa().getTaxa();
-            double valorComTaxa = valor - taxa;
-
-            Cliente cliente = obterCliente();
-            Empresa empresa = obterEmpresa();
-
-            cliente.setSaldo(cliente.getSaldo() - valorComTaxa);
-            empresa.setSaldo(empresa.getSaldo() + taxa);
-
-            daoCliente.abrirTransacao().modificar(cliente).fecharTransacao().fechar();
-            daoEmpresa.abrirTransacao().modificar(empresa).fecharTransacao().fechar();
-        }
+    public boolean exec() {
+        return executor.executar(new Operacao(TipoOperacao.SAQUE, valor, id_cliente, id_empresa, chaveIdempotencia));
     }
 }
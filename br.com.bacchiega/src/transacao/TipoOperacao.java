@@ -0,0 +1,17 @@
+package transacao;
+
+/**
+ * Tipos de operação financeira suportados entre um cliente e uma empresa.
+ */
+public enum TipoOperacao {
+
+    /**
+     * Retirada de valor da conta do cliente, conforme {@link Saque}.
+     */
+    SAQUE,
+
+    /**
+     * Crédito de valor na conta do cliente, conforme {@link Deposito}.
+     */
+    DEPOSITO
+}
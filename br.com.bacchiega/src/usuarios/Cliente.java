@@ -1,6 +1,7 @@
 package usuarios;
 
 import Validator.Cpf;
+import infra.ConversorCentavos;
 
 import javax.persistence.*;
 
@@ -13,18 +14,23 @@ import javax.persistence.*;
  * - id: Identificador único do cliente.
  * - nome: Nome completo do cliente.
  * - cpf: CPF do cliente, deve ser válido.
- * - saldo: Saldo disponível do cliente, com precisão de até duas casas decimais.
+ * - saldo: Saldo disponível do cliente, em centavos.
+ * - versao: Versão do registro, usada no controle de concorrência otimista.
  */
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_cliente_cpf", columnNames = "cpf"))
 public class Cliente {
 
     /**
      * Identificador único do cliente.
      *
-     * É a chave primária da entidade e é gerado automaticamente pelo banco de dados.
+     * É a chave primária da entidade e é gerado a partir da sequência {@code cliente_seq}. Os identificadores são
+     * reservados em blocos de 100, o que evita uma consulta à sequência por inclusão e permite que as inclusões
+     * sejam agrupadas em lotes JDBC (o que não é possível com {@link GenerationType#IDENTITY}).
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "cliente_seq")
+    @SequenceGenerator(name = "cliente_seq", sequenceName = "cliente_seq", allocationSize = 100)
     private Long id;
 
     /**
@@ -38,18 +44,30 @@ public class Cliente {
     /**
      * CPF do cliente.
      *
-     * Não pode ser nulo.
+     * Não pode ser nulo e é único, garantido pela restrição {@code uk_cliente_cpf}, que também serve de índice
+     * para as buscas por CPF. Os clientes criados pelo construtor guardam apenas os 11 dígitos, de modo que a
+     * restrição também recuse o mesmo CPF escrito com outra formatação.
      */
-    @Column(nullable = false)
+    @Column(nullable = false, length = 14)
     private String cpf;
 
     /**
-     * Saldo disponível do cliente.
+     * Saldo disponível do cliente, em centavos.
+     *
+     * Não pode ser nulo e é gravado como decimal com precisão de 13 dígitos no total, com 2 casas decimais.
+     */
+    @Convert(converter = ConversorCentavos.class)
+    @Column(nullable = false, precision = 13, scale = 2)
+    private long saldo;
+
+    /**
+     * Versão do registro do cliente, usada no controle de concorrência otimista.
      *
-     * Não pode ser nulo e tem precisão de 11 dígitos no total, com 2 casas decimais.
+     * É incrementada automaticamente a cada atualização. Uma atualização feita sobre uma versão
+     * desatualizada é recusada com {@link OptimisticLockException}.
      */
-    @Column(nullable = false, precision = 11, scale = 2)
-    private Double saldo;
+    @Version
+    private Long versao;
 
     /**
      * Construtor padrão para a criação de instâncias da entidade {@link Cliente}.
@@ -61,18 +79,18 @@ public class Cliente {
      * Construtor para a criação de uma nova instância da entidade {@link Cliente}.
      *
      * @param nome O nome completo do cliente.
-     * @param cpf O CPF do cliente, deve ser válido.
-     * @param saldo O saldo disponível do cliente.
+     * @param cpf O CPF do cliente, deve ser válido; é guardado sem formatação.
+     * @param saldo O saldo disponível do cliente, em centavos.
      *
      * @throws IllegalArgumentException Se o CPF fornecido for inválido.
      */
-    public Cliente(String nome, String cpf, Double saldo) {
+    public Cliente(String nome, String cpf, long saldo) {
         Cpf validar = new Cpf(cpf);
         if (!validar.validateFinal()) {
             throw new IllegalArgumentException("CPF inválido");
         }
         this.nome = nome;
-        this.cpf = cpf;
+        this.cpf = String.format("%011d", Cpf.numero(cpf));
         this.saldo = saldo;
     }
 
@@ -133,18 +151,27 @@ public class Cliente {
     /**
      * Obtém o saldo disponível do cliente.
      *
-     * @return O saldo disponível do cliente.
+     * @return O saldo disponível do cliente, em centavos.
      */
-    public Double getSaldo() {
+    public long getSaldo() {
         return saldo;
     }
 
     /**
      * Define o saldo disponível do cliente.
      *
-     * @param saldo O saldo disponível do cliente.
+     * @param saldo O saldo disponível do cliente, em centavos.
      */
-    public void setSaldo(Double saldo) {
+    public void setSaldo(long saldo) {
         this.saldo = saldo;
     }
+
+    /**
+     * Obtém a versão do registro do cliente.
+     *
+     * @return A versão atual do registro.
+     */
+    public Long getVersao() {
+        return versao;
+    }
 }
@@ -1,6 +1,9 @@
 package usuarios;
 
 import Validator.Cnpj;
+import financeiro.CacheTabelasTaxas;
+import financeiro.TabelaTaxas;
+import infra.ConversorCentavos;
 
 import javax.persistence.*;
 
@@ -13,19 +16,25 @@ import javax.persistence.*;
  * - id: Identificador único da empresa.
  * - nome: Nome da empresa.
  * - cnpj: CNPJ da empresa, deve ser válido.
- * - taxa: Taxa associada à empresa.
- * - saldo: Saldo disponível da empresa.
+ * - taxa: Taxa associada à empresa, em pontos-base.
+ * - tabelaTaxas: Tabela de taxas por faixa de valor, que substitui a taxa quando definida.
+ * - saldo: Saldo disponível da empresa, em centavos.
+ * - versao: Versão do registro, usada no controle de concorrência otimista.
  */
 @Entity
+@Table(uniqueConstraints = @UniqueConstraint(name = "uk_empresa_cnpj", columnNames = "cnpj"))
 public class Empresa {
 
     /**
      * Identificador único da empresa.
      *
-     * É a chave primária da entidade e é gerado automaticamente pelo banco de dados.
+     * É a chave primária da entidade e é gerado a partir da sequência {@code empresa_seq}. Os identificadores são
+     * reservados em blocos de 100, o que evita uma consulta à sequência por inclusão e permite que as inclusões
+     * sejam agrupadas em lotes JDBC (o que não é possível com {@link GenerationType#IDENTITY}).
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "empresa_seq")
+    @SequenceGenerator(name = "empresa_seq", sequenceName = "empresa_seq", allocationSize = 100)
     private Long id;
 
     /**
@@ -39,26 +48,47 @@ public class Empresa {
     /**
      * CNPJ da empresa.
      *
-     * Não pode ser nulo e deve ser um CNPJ válido.
+     * Não pode ser nulo, deve ser um CNPJ válido e é único, garantido pela restrição {@code uk_empresa_cnpj}, que
+     * também serve de índice para as buscas por CNPJ. As empresas criadas pelo construtor guardam apenas os 14
+     * dígitos, de modo que a restrição também recuse o mesmo CNPJ escrito com outra formatação.
      */
-    @Column(nullable = false)
+    @Column(nullable = false, length = 18)
     private String cnpj;
 
     /**
-     * Taxa associada à empresa.
+     * Taxa associada à empresa, em pontos-base (100 pontos-base = 1%).
      *
      * Não pode ser nulo.
      */
     @Column(nullable = false)
-    private Double taxa;
+    private int taxa;
 
     /**
-     * Saldo disponível da empresa.
+     * Definição da tabela de taxas por faixa de valor, com taxas mínima e máxima, no formato de
+     * {@link TabelaTaxas}.
      *
-     * Não pode ser nulo.
+     * Pode ser nula, caso em que a {@link #taxa} é aplicada a todos os valores.
      */
-    @Column(nullable = false)
-    private Double saldo;
+    @Column(length = 1000)
+    private String tabelaTaxas;
+
+    /**
+     * Saldo disponível da empresa, em centavos.
+     *
+     * Não pode ser nulo e é gravado como decimal com precisão de 13 dígitos no total, com 2 casas decimais.
+     */
+    @Convert(converter = ConversorCentavos.class)
+    @Column(nullable = false, precision = 13, scale = 2)
+    private long saldo;
+
+    /**
+     * Versão do registro da empresa, usada no controle de concorrência otimista.
+     *
+     * É incrementada automaticamente a cada atualização. Uma atualização feita sobre uma versão
+     * desatualizada é recusada com {@link OptimisticLockException}.
+     */
+    @Version
+    private Long versao;
 
     /**
      * Construtor padrão para a criação de instâncias da entidade {@link Empresa}.
@@ -66,22 +96,37 @@ public class Empresa {
     public Empresa() {
     }
 
+    /**
+     * Construtor de cópia, que cria uma instância desligada do contexto de persistência com os mesmos dados.
+     *
+     * @param outra A empresa a ser copiada.
+     */
+    public Empresa(Empresa outra) {
+        this.id = outra.id;
+        this.nome = outra.nome;
+        this.cnpj = outra.cnpj;
+        this.taxa = outra.taxa;
+        this.tabelaTaxas = outra.tabelaTaxas;
+        this.saldo = outra.saldo;
+        this.versao = outra.versao;
+    }
+
     /**
      * Construtor para a criação de uma nova instância da entidade {@link Empresa}.
      *
      * @param nome O nome da empresa.
-     * @param cnpj O CNPJ da empresa, deve ser válido.
-     * @param taxa A taxa associada à empresa.
-     * @param saldo O saldo disponível da empresa.
+     * @param cnpj O CNPJ da empresa, deve ser válido; é guardado sem formatação.
+     * @param taxa A taxa associada à empresa, em pontos-base.
+     * @param saldo O saldo disponível da empresa, em centavos.
      *
      * @throws IllegalArgumentException Se o CNPJ fornecido for inválido.
      */
-    public Empresa(String nome, String cnpj, Double taxa, Double saldo) {
+    public Empresa(String nome, String cnpj, int taxa, long saldo) {
         if (!Cnpj.isCNPJ(cnpj)) {
             throw new IllegalArgumentException("CNPJ inválido");
         }
         this.nome = nome;
-        this.cnpj = cnpj;
+        this.cnpj = String.format("%014d", Cnpj.numero(cnpj));
         this.taxa = taxa;
         this.saldo = saldo;
     }
@@ -143,36 +188,82 @@ public class Empresa {
     /**
      * Obtém a taxa associada à empresa.
      *
-     * @return A taxa associada à empresa.
+     * @return A taxa associada à empresa, em pontos-base.
      */
-    public Double getTaxa() {
+    public int getTaxa() {
         return taxa;
     }
 
     /**
      * Define a taxa associada à empresa.
      *
-     * @param taxa A taxa associada à empresa.
+     * @param taxa A taxa associada à empresa, em pontos-base.
      */
-    public void setTaxa(Double taxa) {
+    public void setTaxa(int taxa) {
         this.taxa = taxa;
     }
 
+    /**
+     * Obtém a definição da tabela de taxas da empresa.
+     *
+     * @return A definição da tabela de taxas, ou {@code null} se a empresa usa apenas a taxa fixa.
+     */
+    public String getTabelaTaxas() {
+        return tabelaTaxas;
+    }
+
+    /**
+     * Define a tabela de taxas da empresa.
+     *
+     * @param tabelaTaxas A definição da tabela de taxas, no formato de {@link TabelaTaxas}, ou {@code null} para
+     *                    usar apenas a taxa fixa.
+     * @throws IllegalArgumentException Se a definição for inválida.
+     */
+    public void setTabelaTaxas(String tabelaTaxas) {
+        if (tabelaTaxas != null) {
+            TabelaTaxas.compilar(tabelaTaxas);
+        }
+        this.tabelaTaxas = tabelaTaxas;
+    }
+
+    /**
+     * Obtém a tabela de taxas compilada da empresa, a partir da tabela de taxas ou, se ela não estiver definida,
+     * da taxa fixa.
+     *
+     * A tabela de uma empresa já gravada vem do {@link CacheTabelasTaxas} quando a taxa e a tabela são as da versão
+     * em cache; caso contrário, é compilada sem entrar no cache.
+     *
+     * @return A tabela de taxas compilada.
+     */
+    public TabelaTaxas getTaxas() {
+        CacheTabelasTaxas cache = CacheTabelasTaxas.global();
+        return id == null ? cache.compilar(taxa, tabelaTaxas) : cache.obter(id, taxa, tabelaTaxas);
+    }
+
     /**
      * Obtém o saldo disponível da empresa.
      *
-     * @return O saldo disponível da empresa.
+     * @return O saldo disponível da empresa, em centavos.
      */
-    public Double getSaldo() {
+    public long getSaldo() {
         return saldo;
     }
 
     /**
      * Define o saldo disponível da empresa.
      *
-     * @param saldo O saldo disponível da empresa.
+     * @param saldo O saldo disponível da empresa, em centavos.
      */
-    public void setSaldo(Double saldo) {
+    public void setSaldo(long saldo) {
         this.saldo = saldo;
     }
+
+    /**
+     * Obtém a versão do registro da empresa.
+     *
+     * @return A versão atual do registro.
+     */
+    public Long getVersao() {
+        return versao;
+    }
 }
@@ -0,0 +1,69 @@
+package util;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.AccessDeniedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Gravação de arquivos que sobrevive a uma queda do sistema.
+ *
+ * Escrever ao lado e renomear ao final impede que uma gravação interrompida substitua um arquivo completo, mas só
+ * se o conteúdo já estiver em disco antes da troca de nomes: caso contrário, a troca pode sobreviver à queda e o
+ * conteúdo não. A troca de nomes, por sua vez, só é durável depois que o diretório também é descarregado.
+ */
+public final class Arquivos {
+
+    /**
+     * Função que escreve o conteúdo de um arquivo.
+     */
+    @FunctionalInterface
+    public interface Escritor {
+        void escrever(DataOutputStream saida) throws IOException;
+    }
+
+    private Arquivos() {
+    }
+
+    /**
+     * Substitui o conteúdo de um arquivo. O conteúdo é escrito em um arquivo ao lado, descarregado em disco e
+     * renomeado sobre o destino, e o diretório é descarregado em seguida.
+     *
+     * @param arquivo O arquivo de destino.
+     * @param escritor A função que escreve o novo conteúdo.
+     * @throws IOException Se ocorrer um erro de gravação.
+     */
+    public static void substituir(Path arquivo, Escritor escritor) throws IOException {
+        Path temporario = arquivo.resolveSibling(arquivo.getFileName() + ".tmp");
+        try (FileChannel canal = FileChannel.open(temporario, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            DataOutputStream saida = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(canal)));
+            escritor.escrever(saida);
+            saida.flush();
+            canal.force(true);
+        }
+        Files.move(temporario, arquivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        sincronizarDiretorio(arquivo.toAbsolutePath().getParent());
+    }
+
+    /**
+     * Descarrega em disco as entradas de um diretório, tornando duráveis os arquivos criados, renomeados ou removidos
+     * nele.
+     *
+     * @param diretorio O diretório.
+     * @throws IOException Se ocorrer um erro ao descarregar o diretório.
+     */
+    public static void sincronizarDiretorio(Path diretorio) throws IOException {
+        try (FileChannel canal = FileChannel.open(diretorio, StandardOpenOption.READ)) {
+            canal.force(true);
+        } catch (AccessDeniedException e) {
+            // Sistemas como o Windows não permitem abrir um diretório; neles não há como descarregá-lo
+        }
+    }
+}
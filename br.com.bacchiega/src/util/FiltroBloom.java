@@ -0,0 +1,246 @@
+package util;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Filtro de Bloom sobre chaves {@code long}, sem objetos por chave.
+ *
+ * Responde se uma chave com certeza não foi adicionada ou se talvez tenha sido, com a taxa de falsos positivos
+ * escolhida na criação. O tamanho do vetor de bits e a quantidade de funções de espalhamento são calculados a
+ * partir da quantidade de chaves esperada e dessa taxa; passar da quantidade esperada aumenta a taxa real, que pode
+ * ser acompanhada por {@link #taxaFalsoPositivoEstimada()}. As posições de cada chave são derivadas de dois
+ * espalhamentos de 64 bits, por espalhamento duplo. Adições e consultas podem ser feitas de forma concorrente.
+ *
+ * O filtro pode ser gravado em um arquivo compacto, com apenas o cabeçalho e o vetor de bits, e lido de volta. O
+ * cabeçalho guarda também uma referência livre, definida por quem cria o filtro, que identifica o conjunto de chaves
+ * que ele representa; é por ela que se decide se um filtro lido de um arquivo ainda pode ser usado.
+ */
+public class FiltroBloom {
+
+    /**
+     * Identificação do formato do arquivo do filtro.
+     */
+    private static final int MARCA = 0x424C4F32;
+
+    private final AtomicLongArray bits;
+    private final long quantidadeBits;
+    private final int funcoes;
+    private final AtomicLong adicionadas;
+    private volatile long[] referencia = new long[0];
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link FiltroBloom}.
+     *
+     * @param esperadas A quantidade de chaves esperada.
+     * @param taxaFalsoPositivo A taxa de falsos positivos desejada para a quantidade esperada, entre 0 e 1.
+     * @throws IllegalArgumentException Se a quantidade não for positiva, se a taxa não estiver entre 0 e 1 ou se o
+     *                                  filtro resultante for grande demais.
+     */
+    public FiltroBloom(long esperadas, double taxaFalsoPositivo) {
+        if (esperadas <= 0 || !(taxaFalsoPositivo > 0 && taxaFalsoPositivo < 1)) {
+            throw new IllegalArgumentException("Configuração de filtro inválida");
+        }
+        double ln2 = Math.log(2);
+        long tamanho = (long) Math.ceil(-esperadas * Math.log(taxaFalsoPositivo) / (ln2 * ln2));
+        long palavras = (tamanho + 63) / 64;
+        if (palavras > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Filtro grande demais");
+        }
+        this.bits = new AtomicLongArray((int) palavras);
+        this.quantidadeBits = palavras * 64;
+        this.funcoes = (int) Math.max(1, Math.round((double) quantidadeBits / esperadas * ln2));
+        this.adicionadas = new AtomicLong();
+    }
+
+    /**
+     * Construtor usado na leitura de um filtro gravado.
+     */
+    private FiltroBloom(AtomicLongArray bits, int funcoes, long adicionadas) {
+        this.bits = bits;
+        this.quantidadeBits = (long) bits.length() * 64;
+        this.funcoes = funcoes;
+        this.adicionadas = new AtomicLong(adicionadas);
+    }
+
+    /**
+     * Adiciona a chave ao filtro.
+     *
+     * @param chave A chave.
+     */
+    public void adicionar(long chave) {
+        long h1 = espalhar(chave);
+        long h2 = espalhar(h1) | 1;
+        for (int i = 0; i < funcoes; i++) {
+            long bit = posicao(h1 + i * h2);
+            int palavra = (int) (bit >>> 6);
+            long mascara = 1L << bit;
+            long atual = bits.get(palavra);
+            while ((atual & mascara) == 0 && !bits.compareAndSet(palavra, atual, atual | mascara)) {
+                atual = bits.get(palavra);
+            }
+        }
+        adicionadas.incrementAndGet();
+    }
+
+    /**
+     * Verifica se a chave talvez tenha sido adicionada.
+     *
+     * @param chave A chave.
+     * @return {@code false} se a chave com certeza não foi adicionada; {@code true} se ela talvez tenha sido.
+     */
+    public boolean talvezContenha(long chave) {
+        long h1 = espalhar(chave);
+        long h2 = espalhar(h1) | 1;
+        for (int i = 0; i < funcoes; i++) {
+            long bit = posicao(h1 + i * h2);
+            if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Estima a taxa de falsos positivos atual, a partir da fração de bits ligados.
+     *
+     * Percorre todo o vetor de bits; adequado para acompanhamento, não para cada consulta.
+     *
+     * @return A taxa de falsos positivos estimada, entre 0 e 1.
+     */
+    public double taxaFalsoPositivoEstimada() {
+        long ligados = 0;
+        for (int i = 0; i < bits.length(); i++) {
+            ligados += Long.bitCount(bits.get(i));
+        }
+        return Math.pow((double) ligados / quantidadeBits, funcoes);
+    }
+
+    /**
+     * Obtém a quantidade de bits do filtro.
+     *
+     * @return A quantidade de bits.
+     */
+    public long getQuantidadeBits() {
+        return quantidadeBits;
+    }
+
+    /**
+     * Obtém a quantidade de funções de espalhamento, isto é, de bits ligados por chave.
+     *
+     * @return A quantidade de funções.
+     */
+    public int getFuncoes() {
+        return funcoes;
+    }
+
+    /**
+     * Obtém a quantidade de adições feitas, incluindo chaves repetidas.
+     *
+     * @return A quantidade de adições.
+     */
+    public long getAdicionadas() {
+        return adicionadas.get();
+    }
+
+    /**
+     * Obtém a referência gravada junto do filtro.
+     *
+     * @return Uma cópia da referência, vazia se nenhuma foi definida.
+     */
+    public long[] getReferencia() {
+        return referencia.clone();
+    }
+
+    /**
+     * Define a referência gravada junto do filtro, que identifica o conjunto de chaves que ele representa.
+     *
+     * @param referencia Os valores da referência.
+     */
+    public void setReferencia(long... referencia) {
+        this.referencia = referencia.clone();
+    }
+
+    /**
+     * Grava o filtro em um arquivo por {@link Arquivos#substituir(Path, Arquivos.Escritor)}, de modo que uma gravação
+     * interrompida no meio, mesmo por uma queda do sistema, nunca substitui um filtro completo. Adições concorrentes
+     * à gravação podem ou não ser incluídas.
+     *
+     * @param arquivo O arquivo de destino.
+     * @throws IOException Se ocorrer um erro de gravação.
+     */
+    public void gravar(Path arquivo) throws IOException {
+        Arquivos.substituir(arquivo, saida -> {
+            saida.writeInt(MARCA);
+            saida.writeInt(funcoes);
+            saida.writeInt(bits.length());
+            saida.writeLong(adicionadas.get());
+            long[] atual = referencia;
+            saida.writeInt(atual.length);
+            for (long valor : atual) {
+                saida.writeLong(valor);
+            }
+            for (int i = 0; i < bits.length(); i++) {
+                saida.writeLong(bits.get(i));
+            }
+        });
+    }
+
+    /**
+     * Lê um filtro gravado por {@link #gravar(Path)}.
+     *
+     * @param arquivo O arquivo do filtro.
+     * @return O filtro lido.
+     * @throws IOException Se ocorrer um erro de leitura ou o arquivo não for um filtro.
+     */
+    public static FiltroBloom ler(Path arquivo) throws IOException {
+        try (DataInputStream entrada = new DataInputStream(new BufferedInputStream(Files.newInputStream(arquivo)))) {
+            if (entrada.readInt() != MARCA) {
+                throw new IOException("Arquivo de filtro inválido: " + arquivo);
+            }
+            int funcoes = entrada.readInt();
+            int palavras = entrada.readInt();
+            long adicionadas = entrada.readLong();
+            int tamanhoReferencia = entrada.readInt();
+            if (funcoes <= 0 || palavras <= 0 || tamanhoReferencia < 0 || tamanhoReferencia > 16) {
+                throw new IOException("Arquivo de filtro inválido: " + arquivo);
+            }
+            long[] referencia = new long[tamanhoReferencia];
+            for (int i = 0; i < tamanhoReferencia; i++) {
+                referencia[i] = entrada.readLong();
+            }
+            AtomicLongArray bits = new AtomicLongArray(palavras);
+            for (int i = 0; i < palavras; i++) {
+                bits.set(i, entrada.readLong());
+            }
+            FiltroBloom filtro = new FiltroBloom(bits, funcoes, adicionadas);
+            filtro.referencia = referencia;
+            return filtro;
+        }
+    }
+
+    /**
+     * Converte um espalhamento na posição de um bit.
+     */
+    private long posicao(long espalhamento) {
+        return (espalhamento >>> 1) % quantidadeBits;
+    }
+
+    /**
+     * Espalha os bits da chave (finalizador de 64 bits do MurmurHash3).
+     */
+    private static long espalhar(long chave) {
+        long h = chave;
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
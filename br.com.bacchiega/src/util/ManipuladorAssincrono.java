@@ -0,0 +1,213 @@
+package util;
+
+import metricas.Contador;
+import metricas.Metricas;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.ErrorManager;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.SimpleFormatter;
+import java.util.logging.StreamHandler;
+
+/**
+ * {@link Handler} que entrega os registros de log a outro {@link Handler} em uma thread de fundo.
+ *
+ * Quem registra uma mensagem apenas a coloca em uma fila circular de capacidade fixa; a thread de fundo retira os
+ * registros em lotes de até {@value #TAMANHO_LOTE}, repassa-os ao destino e descarrega o destino uma vez por lote.
+ * Assim, a escrita em arquivo não acontece na thread de quem registra. Quando a fila está cheia, o registro é
+ * descartado ou quem registra aguarda espaço, conforme a {@link Politica}; os descartes são contados na métrica
+ * {@code log.descartados}.
+ *
+ * A classe e o método de origem de cada registro são identificados ainda na thread de quem registra, pois não podem
+ * ser descobertos depois, na thread de fundo.
+ */
+public class ManipuladorAssincrono extends Handler {
+
+    /**
+     * Comportamento quando a fila está cheia.
+     */
+    public enum Politica {
+        /**
+         * O registro é descartado e quem registra segue sem esperar.
+         */
+        DESCARTAR,
+
+        /**
+         * Quem registra aguarda até haver espaço na fila.
+         */
+        BLOQUEAR
+    }
+
+    /**
+     * Capacidade padrão da fila, em registros.
+     */
+    public static final int CAPACIDADE_PADRAO = 8192;
+
+    /**
+     * Quantidade máxima de registros repassados ao destino entre duas descargas.
+     */
+    public static final int TAMANHO_LOTE = 256;
+
+    /**
+     * Tempo máximo de espera pela thread de fundo ao fechar, em milissegundos.
+     */
+    private static final long ESPERA_FECHAMENTO_MS = 5_000;
+
+    /**
+     * Marcador colocado na fila para encerrar a thread de fundo depois de esvaziá-la.
+     */
+    private static final LogRecord FIM = new LogRecord(Level.OFF, null);
+
+    private static final Contador descartados = Metricas.contador("log.descartados");
+
+    private final Handler destino;
+    private final Politica politica;
+    private final BlockingQueue<LogRecord> fila;
+    private final Thread escritor;
+    private volatile boolean fechado;
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link ManipuladorAssincrono}.
+     *
+     * @param destino O {@link Handler} que efetivamente escreve os registros; passa a ser usado apenas pela thread
+     *                de fundo e é fechado junto com este.
+     * @param capacidade A capacidade da fila, em registros.
+     * @param politica O comportamento quando a fila está cheia.
+     * @throws IllegalArgumentException Se a capacidade não for positiva.
+     */
+    public ManipuladorAssincrono(Handler destino, int capacidade, Politica politica) {
+        if (capacidade <= 0) {
+            throw new IllegalArgumentException("Capacidade inválida");
+        }
+        this.destino = destino;
+        this.politica = politica;
+        this.fila = new ArrayBlockingQueue<>(capacidade);
+        this.escritor = new Thread(this::escrever, "log-assincrono");
+        escritor.setDaemon(true);
+        escritor.start();
+    }
+
+    /**
+     * Cria um manipulador que acrescenta os registros ao final de um arquivo, no formato de {@link SimpleFormatter}.
+     *
+     * Diferente de {@link java.util.logging.FileHandler}, o arquivo é escrito por um fluxo com buffer, descarregado
+     * uma vez por lote, e não a cada registro.
+     *
+     * @param arquivo O arquivo de log, criado se não existir.
+     * @param capacidade A capacidade da fila, em registros.
+     * @param politica O comportamento quando a fila está cheia.
+     * @return O manipulador.
+     * @throws IOException Se não for possível abrir o arquivo.
+     */
+    public static ManipuladorAssincrono arquivo(Path arquivo, int capacidade, Politica politica) throws IOException {
+        StreamHandler destino = new StreamHandler(new BufferedOutputStream(Files.newOutputStream(arquivo,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND, StandardOpenOption.WRITE)), new SimpleFormatter());
+        destino.setLevel(Level.ALL);
+        return new ManipuladorAssincrono(destino, capacidade, politica);
+    }
+
+    /**
+     * Coloca o registro na fila, conforme a {@link Politica} quando ela estiver cheia.
+     *
+     * @param registro O registro de log.
+     */
+    @Override
+    public void publish(LogRecord registro) {
+        if (fechado || !isLoggable(registro)) {
+            return;
+        }
+        // Força a identificação da origem enquanto ainda estamos na thread de quem registrou
+        registro.getSourceClassName();
+
+        if (politica == Politica.BLOQUEAR) {
+            try {
+                fila.put(registro);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                descartados.incrementar();
+            }
+        } else if (!fila.offer(registro)) {
+            descartados.incrementar();
+        }
+    }
+
+    /**
+     * Descarrega o destino. Registros ainda na fila são escritos pela thread de fundo no próximo lote.
+     */
+    @Override
+    public void flush() {
+        destino.flush();
+    }
+
+    /**
+     * Para de aceitar registros, aguarda a thread de fundo escrever os que estão na fila e fecha o destino.
+     */
+    @Override
+    public void close() {
+        if (fechado) {
+            return;
+        }
+        fechado = true;
+        try {
+            if (fila.offer(FIM, ESPERA_FECHAMENTO_MS, TimeUnit.MILLISECONDS)) {
+                escritor.join(ESPERA_FECHAMENTO_MS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        destino.close();
+    }
+
+    /**
+     * Obtém a quantidade de registros aguardando na fila.
+     *
+     * @return A quantidade de registros na fila.
+     */
+    public int getPendentes() {
+        return fila.size();
+    }
+
+    /**
+     * Laço da thread de fundo: retira lotes da fila, repassa-os ao destino e descarrega o destino.
+     */
+    private void escrever() {
+        List<LogRecord> lote = new ArrayList<>(TAMANHO_LOTE);
+        while (true) {
+            try {
+                lote.add(fila.take());
+            } catch (InterruptedException e) {
+                return;
+            }
+            fila.drainTo(lote, TAMANHO_LOTE - 1);
+
+            boolean fim = false;
+            for (LogRecord registro : lote) {
+                if (registro == FIM) {
+                    fim = true;
+                } else {
+                    try {
+                        destino.publish(registro);
+                    } catch (RuntimeException e) {
+                        reportError("Erro ao escrever registro de log", e, ErrorManager.WRITE_FAILURE);
+                    }
+                }
+            }
+            lote.clear();
+            destino.flush();
+            if (fim) {
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,258 @@
+package util;
+
+import java.util.Arrays;
+
+/**
+ * Mapa de {@code long} para {@code long} com endereçamento aberto, sem objetos por entrada.
+ *
+ * As chaves e os valores ficam em dois vetores primitivos e as colisões são resolvidas por sondagem linear, de modo
+ * que nenhuma operação cria {@link Long}. A capacidade dobra quando o mapa passa de metade da ocupação. A classe não
+ * é segura para uso concorrente.
+ */
+public class MapaLongLong {
+
+    /**
+     * Função que recebe uma chave e um valor primitivos.
+     */
+    @FunctionalInterface
+    public interface Consumidor {
+        void aceitar(long chave, long valor);
+    }
+
+    /**
+     * Chave usada para marcar posições livres. A chave real {@code 0} é guardada à parte.
+     */
+    private static final long LIVRE = 0;
+
+    private long[] chaves;
+    private long[] valores;
+    private int mascara;
+    private int tamanho;
+
+    private boolean temZero;
+    private long valorZero;
+
+    /**
+     * Construtor que cria um mapa com capacidade inicial para 16 entradas.
+     */
+    public MapaLongLong() {
+        this(16);
+    }
+
+    /**
+     * Construtor para a criação de uma nova instância da classe {@link MapaLongLong}.
+     *
+     * @param capacidadeEsperada A quantidade de entradas esperada, usada para evitar redimensionamentos.
+     */
+    public MapaLongLong(int capacidadeEsperada) {
+        int capacidade = Integer.highestOneBit(Math.max(4, capacidadeEsperada * 2 - 1)) << 1;
+        chaves = new long[capacidade];
+        valores = new long[capacidade];
+        mascara = capacidade - 1;
+    }
+
+    /**
+     * Obtém o valor associado à chave.
+     *
+     * @param chave A chave procurada.
+     * @param padrao O valor devolvido se a chave não estiver presente.
+     * @return O valor associado, ou {@code padrao} se a chave não estiver presente.
+     */
+    public long obter(long chave, long padrao) {
+        if (chave == LIVRE) {
+            return temZero ? valorZero : padrao;
+        }
+        int i = posicao(chave);
+        while (true) {
+            long atual = chaves[i];
+            if (atual == chave) {
+                return valores[i];
+            }
+            if (atual == LIVRE) {
+                return padrao;
+            }
+            i = (i + 1) & mascara;
+        }
+    }
+
+    /**
+     * Verifica se a chave está presente.
+     *
+     * @param chave A chave procurada.
+     * @return {@code true} se a chave estiver presente; {@code false} caso contrário.
+     */
+    public boolean contem(long chave) {
+        if (chave == LIVRE) {
+            return temZero;
+        }
+        int i = posicao(chave);
+        while (true) {
+            long atual = chaves[i];
+            if (atual == chave) {
+                return true;
+            }
+            if (atual == LIVRE) {
+                return false;
+            }
+            i = (i + 1) & mascara;
+        }
+    }
+
+    /**
+     * Associa o valor à chave, substituindo o valor anterior.
+     *
+     * @param chave A chave.
+     * @param valor O valor.
+     */
+    public void colocar(long chave, long valor) {
+        if (chave == LIVRE) {
+            if (!temZero) {
+                temZero = true;
+                tamanho++;
+            }
+            valorZero = valor;
+            return;
+        }
+        int i = posicao(chave);
+        while (true) {
+            long atual = chaves[i];
+            if (atual == chave) {
+                valores[i] = valor;
+                return;
+            }
+            if (atual == LIVRE) {
+                chaves[i] = chave;
+                valores[i] = valor;
+                if (++tamanho * 2 > chaves.length) {
+                    crescer();
+                }
+                return;
+            }
+            i = (i + 1) & mascara;
+        }
+    }
+
+    /**
+     * Remove a chave, se presente.
+     *
+     * As entradas seguintes da mesma sequência de sondagem são deslocadas para trás, de modo que a remoção não
+     * deixa marcas que alonguem as buscas.
+     *
+     * @param chave A chave a ser removida.
+     * @return {@code true} se a chave estava presente; {@code false} caso contrário.
+     */
+    public boolean remover(long chave) {
+        if (chave == LIVRE) {
+            if (!temZero) {
+                return false;
+            }
+            temZero = false;
+            tamanho--;
+            return true;
+        }
+        int livre = posicao(chave);
+        while (chaves[livre] != chave) {
+            if (chaves[livre] == LIVRE) {
+                return false;
+            }
+            livre = (livre + 1) & mascara;
+        }
+
+        int i = livre;
+        while (true) {
+            i = (i + 1) & mascara;
+            long atual = chaves[i];
+            if (atual == LIVRE) {
+                break;
+            }
+            // A entrada só pode ocupar a posição livre se ela estiver entre a sua posição inicial e a atual
+            int inicial = posicao(atual);
+            if (((i - inicial) & mascara) >= ((i - livre) & mascara)) {
+                chaves[livre] = atual;
+                valores[livre] = valores[i];
+                livre = i;
+            }
+        }
+        chaves[livre] = LIVRE;
+        tamanho--;
+        return true;
+    }
+
+    /**
+     * Soma a parcela ao valor da chave, considerando zero quando a chave não estiver presente.
+     *
+     * @param chave A chave.
+     * @param parcela O valor a ser somado.
+     * @return O novo valor associado à chave.
+     */
+    public long somar(long chave, long parcela) {
+        long novo = obter(chave, 0) + parcela;
+        colocar(chave, novo);
+        return novo;
+    }
+
+    /**
+     * Obtém a quantidade de entradas.
+     *
+     * @return A quantidade de entradas.
+     */
+    public int tamanho() {
+        return tamanho;
+    }
+
+    /**
+     * Remove todas as entradas, mantendo a capacidade atual.
+     */
+    public void limpar() {
+        Arrays.fill(chaves, LIVRE);
+        temZero = false;
+        tamanho = 0;
+    }
+
+    /**
+     * Percorre todas as entradas, em ordem indefinida.
+     *
+     * @param consumidor A função chamada para cada entrada.
+     */
+    public void paraCada(Consumidor consumidor) {
+        if (temZero) {
+            consumidor.aceitar(0, valorZero);
+        }
+        for (int i = 0; i < chaves.length; i++) {
+            if (chaves[i] != LIVRE) {
+                consumidor.aceitar(chaves[i], valores[i]);
+            }
+        }
+    }
+
+    /**
+     * Dobra a capacidade e reinsere as entradas.
+     */
+    private void crescer() {
+        long[] chavesAntigas = chaves;
+        long[] valoresAntigos = valores;
+        chaves = new long[chavesAntigas.length * 2];
+        valores = new long[valoresAntigos.length * 2];
+        mascara = chaves.length - 1;
+
+        for (int j = 0; j < chavesAntigas.length; j++) {
+            long chave = chavesAntigas[j];
+            if (chave != LIVRE) {
+                int i = posicao(chave);
+                while (chaves[i] != LIVRE) {
+                    i = (i + 1) & mascara;
+                }
+                chaves[i] = chave;
+                valores[i] = valoresAntigos[j];
+            }
+        }
+    }
+
+    /**
+     * Calcula a posição inicial da chave, espalhando os bits para evitar agrupamentos de chaves sequenciais.
+     */
+    private int posicao(long chave) {
+        long h = chave * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mascara;
+    }
+}
@@ -0,0 +1,34 @@
+package financeiro;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TabelaTaxasTest {
+
+    private final TabelaTaxas tabela = TabelaTaxas.compilar("0=150;100000=120;1000000=90;min=200;max=50000");
+
+    @Test
+    void aplicaATaxaDaFaixaDoValor() {
+        assertEquals(1500, tabela.calcular(99_999));
+        assertEquals(1200, tabela.calcular(100_000));
+        assertEquals(9000, tabela.calcular(1_000_000));
+    }
+
+    @Test
+    void limitaAsTaxasMinimaEMaxima() {
+        assertEquals(200, tabela.calcular(1_000));
+        assertEquals(50_000, tabela.calcular(100_000_000));
+    }
+
+    @Test
+    void naoCobraMaisQueOValorQuandoEleEMenorQueATaxaMinima() {
+        assertEquals(150, tabela.calcular(150));
+        assertEquals(1, tabela.calcular(1));
+    }
+
+    @Test
+    void tabelaFixaEquivaleATaxaSobreOValor() {
+        assertEquals(Dinheiro.taxa(12_345, 250), TabelaTaxas.fixa(250).calcular(12_345));
+    }
+}